@@ -0,0 +1,59 @@
+package com.fradantim.graphql2jpa.config;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import graphql.Scalars;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLObjectType;
+import net.bytebuddy.ByteBuddy;
+
+/** {@code ComplexTypes.nextAvailableName} with many types already named {@code Book}, {@code Book_2}, ... */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComplexTypesBenchmark {
+
+	@Param({ "1", "10", "100", "1000" })
+	public int collisions;
+
+	private ComplexTypes complexTypes;
+
+	@Setup
+	public void setup() {
+		complexTypes = new ComplexTypes();
+		for (int i = 0; i < collisions; i++) {
+			// types are registered by class, each collision needs its own
+			Class<?> type = new ByteBuddy().subclass(Object.class).make()
+					.load(getClass().getClassLoader()).getLoaded();
+			complexTypes.addOutputType(type,
+					GraphQLObjectType.newObject().name(complexTypes.nextAvailableName("Book"))
+							.field(GraphQLFieldDefinition.newFieldDefinition().name("id").type(Scalars.GraphQLID))
+							.build());
+		}
+	}
+
+	@Benchmark
+	public String nextAvailableName() {
+		return complexTypes.nextAvailableName("Book");
+	}
+
+	@Benchmark
+	public String nextAvailableNameNoCollision() {
+		return complexTypes.nextAvailableName("Quote");
+	}
+}
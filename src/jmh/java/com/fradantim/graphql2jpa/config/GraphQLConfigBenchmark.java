@@ -0,0 +1,51 @@
+package com.fradantim.graphql2jpa.config;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+
+import graphql.schema.GraphQLSchema;
+
+/**
+ * Schema generation as done at startup (cold, a fresh jvm each time) and once warm, against loading the build-time
+ * schema.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GraphQLConfigBenchmark {
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 0)
+	@Measurement(iterations = 1)
+	@Fork(5)
+	public GraphQLSchema generateSchemaCold() {
+		return new GraphQLConfig().generateSchema();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@Warmup(iterations = 3, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	@Fork(1)
+	public GraphQLSchema generateSchemaWarm() {
+		return new GraphQLConfig().generateSchema();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 0)
+	@Measurement(iterations = 1)
+	@Fork(5)
+	public String loadGeneratedSchemaCold() throws IOException {
+		return new ClassPathResource(GraphQLConfig.GENERATED_SCHEMA).getContentAsString(StandardCharsets.UTF_8);
+	}
+}
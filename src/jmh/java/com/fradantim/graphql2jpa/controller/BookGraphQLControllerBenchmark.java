@@ -0,0 +1,104 @@
+package com.fradantim.graphql2jpa.controller;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.graphql.ExecutionGraphQlResponse;
+import org.springframework.graphql.ExecutionGraphQlService;
+import org.springframework.graphql.support.DefaultExecutionGraphQlRequest;
+
+import com.fradantim.graphql2jpa.GraphQL2JPAApplication;
+
+/**
+ * End to end {@code findBookById} and {@code findBookByIds}, from the graphql document to the response data, against
+ * the application's in-memory h2, for every fetch mode and collection strategy, and data sizes ({@code -p books=1000000}
+ * on the jmh command line).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookGraphQLControllerBenchmark {
+
+	private static final String FIND_BOOK_BY_ID = """
+			{ findBookById(id:1) {
+				id name isbn
+				author { id name country {id name} }
+				quotes { id text }
+				reviewers { id name country {id name} }
+			} }
+			""";
+
+	private static final String FIND_BOOK_BY_IDS = """
+			{ findBookByIds(ids:[1, 2, 3, 4, 5]) {
+				id name
+				author { id country {id} }
+				quotes { id }
+				reviewers { id country {name} }
+			} }
+			""";
+
+	@Param({ "JOIN_FETCH", "PROJECTION", "ENTITY_GRAPH", "DATA_LOADER" })
+	public String fetchMode;
+
+	@Param({ "JOIN", "BATCH" })
+	public String collectionStrategy;
+
+	/** Books in the database, synthetic ones generated past the five of the seed, see SampleDataLoader. */
+	@Param({ "5" })
+	public int books;
+
+	private ConfigurableApplicationContext context;
+	private ExecutionGraphQlService graphQlService;
+
+	@Setup
+	public void setup() {
+		// command line arguments, to take precedence over application.properties
+		context = new SpringApplicationBuilder(GraphQL2JPAApplication.class).web(WebApplicationType.NONE).run(
+				"--graphql2jpa.fetch-mode=" + fetchMode, "--graphql2jpa.collection-strategy=" + collectionStrategy,
+				"--graphql2jpa.data.books=" + books, "--graphql2jpa.data.people=" + Math.max(books / 10, 4),
+				"--graphql2jpa.data.countries=" + Math.max(books / 10000, 3), "--spring.jpa.show-sql=false",
+				"--logging.level.com.fradantim=INFO",
+				"--spring.devtools.restart.enabled=false");
+		graphQlService = context.getBean(ExecutionGraphQlService.class);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public Object findBookById() {
+		return execute(FIND_BOOK_BY_ID);
+	}
+
+	@Benchmark
+	public Object findBookByIds() {
+		return execute(FIND_BOOK_BY_IDS);
+	}
+
+	private Object execute(String document) {
+		ExecutionGraphQlResponse response = graphQlService
+				.execute(new DefaultExecutionGraphQlRequest(document, null, null, null, "benchmark", null)).block();
+		if (response == null || !response.getErrors().isEmpty())
+			throw new IllegalStateException("Query failed: " + (response == null ? null : response.getErrors()));
+		return response.getData();
+	}
+}
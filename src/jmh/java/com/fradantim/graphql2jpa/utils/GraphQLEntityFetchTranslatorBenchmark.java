@@ -0,0 +1,81 @@
+package com.fradantim.graphql2jpa.utils;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fradantim.graphql2jpa.config.GraphQLConfig;
+
+import graphql.execution.CoercedVariables;
+import graphql.normalized.ExecutableNormalizedField;
+import graphql.normalized.ExecutableNormalizedOperation;
+import graphql.normalized.ExecutableNormalizedOperationFactory;
+import graphql.parser.Parser;
+import graphql.schema.DataFetchingFieldSelectionSet;
+import graphql.schema.DataFetchingFieldSelectionSetImpl;
+import graphql.schema.GraphQLSchema;
+
+/** {@code buildFetch} and {@code buildShapeKey} over selection sets of different depth and width. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphQLEntityFetchTranslatorBenchmark {
+
+	private static final Map<String, String> QUERIES = Map.of( // @formatter:off
+			"NARROW", "{ findBookById(id:1) { id } }",
+			"WIDE", "{ findBookById(id:1) { id name isbn author {id name} quotes {id text} reviewers {id name} } }",
+			"DEEP", "{ findBookById(id:1) { author { country {id} } reviewers { country {id} } } }",
+			"FULL", """
+					{ findBookById(id:1) {
+						id name isbn
+						author { id name country {id name} }
+						quotes { id text }
+						reviewers { id name country {id name} }
+					} }
+					"""); // @formatter:on
+
+	@Param({ "NARROW", "WIDE", "DEEP", "FULL" })
+	public String shape;
+
+	private DataFetchingFieldSelectionSet selectionSet;
+
+	@Setup
+	public void setup() {
+		selectionSet = selectionSet(new GraphQLConfig().generateSchema(), QUERIES.get(shape));
+		// the selection set is computed lazily once, leave that out of the measurement
+		selectionSet.getFields();
+	}
+
+	@Benchmark
+	public String buildFetch() {
+		return GraphQLEntityFetchTranslator.buildFetch("b", selectionSet);
+	}
+
+	@Benchmark
+	public String buildShapeKey() {
+		return GraphQLEntityFetchTranslator.buildShapeKey(selectionSet, true);
+	}
+
+	/** Selection set of the first root field of {@code query}, as graphql-java hands it to a data fetcher. */
+	static DataFetchingFieldSelectionSet selectionSet(GraphQLSchema schema, String query) {
+		ExecutableNormalizedOperation operation = ExecutableNormalizedOperationFactory
+				.createExecutableNormalizedOperation(schema, Parser.parse(query), null,
+						CoercedVariables.emptyVariables());
+		ExecutableNormalizedField root = operation.getTopLevelFields().get(0);
+		return DataFetchingFieldSelectionSetImpl.newCollector(schema, root.getType(schema), () -> root);
+	}
+}
@@ -0,0 +1,113 @@
+package com.fradantim.graphql2jpa.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import graphql.ExecutionInput;
+import graphql.ParseAndValidate;
+import graphql.ParseAndValidateResult;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+import graphql.schema.GraphQLSchema;
+
+/**
+ * Bounded, least recently used, cache of parsed and validated documents keyed by the query text, so repeated
+ * documents skip parsing and validation whatever their variable values. Documents of {@link PersistedQueries} are
+ * looked up there first, so they are never evicted from here.
+ */
+public class DocumentCache implements PreparsedDocumentProvider {
+
+	private final int maxSize;
+	private final Map<String, PreparsedDocumentEntry> documents;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private volatile PersistedQueries persistedQueries;
+
+	/** @param maxSize {@code 0} disables caching */
+	public DocumentCache(int maxSize) {
+		this.maxSize = maxSize;
+		this.documents = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparsedDocumentEntry> eldest) {
+				return size() > DocumentCache.this.maxSize;
+			}
+		};
+	}
+
+	public void setPersistedQueries(PersistedQueries persistedQueries) {
+		this.persistedQueries = persistedQueries;
+	}
+
+	@Override
+	public CompletableFuture<PreparsedDocumentEntry> getDocumentAsync(ExecutionInput executionInput,
+			Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction) {
+		return CompletableFuture.completedFuture(getOrParse(executionInput, parseAndValidateFunction));
+	}
+
+	/** Still abstract in graphql-java 21, which calls {@link #getDocumentAsync} instead. */
+	@Override
+	@Deprecated
+	public PreparsedDocumentEntry getDocument(ExecutionInput executionInput,
+			Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction) {
+		return getOrParse(executionInput, parseAndValidateFunction);
+	}
+
+	/** The document of {@code executionInput}, parsed and validated against {@code schema} if not cached. */
+	public PreparsedDocumentEntry getDocument(ExecutionInput executionInput, GraphQLSchema schema) {
+		return getOrParse(executionInput, input -> {
+			ParseAndValidateResult result = ParseAndValidate.parseAndValidate(schema, input);
+			return result.isFailure() ? new PreparsedDocumentEntry(result.getErrors())
+					: new PreparsedDocumentEntry(result.getDocument());
+		});
+	}
+
+	private PreparsedDocumentEntry getOrParse(ExecutionInput executionInput,
+			Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction) {
+		String query = executionInput.getQuery();
+		PreparsedDocumentEntry entry = persistedQueries == null ? null : persistedQueries.getDocument(query);
+		if (entry == null)
+			synchronized (documents) {
+				entry = documents.get(query);
+			}
+		if (entry != null) {
+			hits.incrementAndGet();
+			return entry;
+		}
+
+		misses.incrementAndGet();
+		entry = parseAndValidateFunction.apply(executionInput);
+		synchronized (documents) {
+			documents.put(query, entry);
+		}
+		return entry;
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public int size() {
+		synchronized (documents) {
+			return documents.size();
+		}
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void clear() {
+		synchronized (documents) {
+			documents.clear();
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package com.fradantim.graphql2jpa.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.graphql.execution.GraphQlSource;
+
+import com.fradantim.graphql2jpa.utils.FetchPlanner;
+
+import graphql.ExecutionInput;
+import graphql.GraphQLException;
+import graphql.ParseAndValidate;
+import graphql.ParseAndValidateResult;
+import graphql.execution.CoercedVariables;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.language.OperationDefinition;
+import graphql.normalized.ExecutableNormalizedField;
+import graphql.normalized.ExecutableNormalizedOperation;
+import graphql.normalized.ExecutableNormalizedOperationFactory;
+import graphql.schema.DataFetchingFieldSelectionSetImpl;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLTypeUtil;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.metamodel.EntityType;
+
+/**
+ * Automatic persisted queries: documents registered by their sha-256 hash, either by clients sending the hash along
+ * with the query text or from a manifest at startup. Each registered entry holds its document, parsed and validated,
+ * which the {@link DocumentCache} looks up first, and the {@link FetchPlanner fetch plans} of its root fields, pinned
+ * in the plan cache while registered: a request by hash skips parsing, validation and jpql building whatever the size
+ * of either cache. Manifest documents are kept for good, only client registered ones are evicted.
+ */
+public class PersistedQueries {
+
+	private static final Logger logger = LoggerFactory.getLogger(PersistedQueries.class);
+
+	/** A registered query, with its document and the keys of its pinned fetch plans. */
+	private record Entry(String query, PreparsedDocumentEntry document, List<String> planKeys) {
+	}
+
+	private final int maxSize;
+	private final Map<String, Entry> manifest = new ConcurrentHashMap<>();
+	/* guarded by itself, as well as byQuery of client registered entries */
+	private final Map<String, Entry> queries;
+	private final Map<String, Entry> byQuery = new ConcurrentHashMap<>();
+	private final GraphQlSource graphQlSource;
+	private final FetchPlanner fetchPlanner;
+	private final EntityManager entityManager;
+	private final Map<String, Class<?>> entityTypes;
+
+	/** @param maxSize least recently used client registered documents kept */
+	public PersistedQueries(int maxSize, GraphQlSource graphQlSource, FetchPlanner fetchPlanner,
+			EntityManager entityManager) {
+		this.maxSize = maxSize;
+		this.queries = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() <= PersistedQueries.this.maxSize)
+					return false;
+				unregister(eldest.getValue());
+				return true;
+			}
+		};
+		this.graphQlSource = graphQlSource;
+		this.fetchPlanner = fetchPlanner;
+		this.entityManager = entityManager;
+		this.entityTypes = entityManager.getMetamodel().getEntities().stream()
+				.collect(Collectors.toMap(EntityType::getName, EntityType::getJavaType));
+	}
+
+	public Optional<String> get(String hash) {
+		Entry entry = manifest.get(hash);
+		if (entry == null)
+			synchronized (queries) {
+				entry = queries.get(hash);
+			}
+		return Optional.ofNullable(entry).map(Entry::query);
+	}
+
+	/** @return the document of {@code query} if registered, {@code null} otherwise */
+	public PreparsedDocumentEntry getDocument(String query) {
+		Entry entry = byQuery.get(query);
+		return entry == null ? null : entry.document();
+	}
+
+	/**
+	 * Parses, validates and compiles {@code query} sent by a client, registering it if valid.
+	 *
+	 * @return whether it was registered
+	 */
+	public boolean register(String query) {
+		String hash = hash(query);
+		if (manifest.containsKey(hash))
+			return true;
+		synchronized (queries) {
+			if (queries.containsKey(hash))
+				return true;
+		}
+		Entry entry = compile(hash, query);
+		if (entry == null)
+			return false;
+		synchronized (queries) {
+			if (queries.containsKey(hash)) {
+				// registered meanwhile by another request
+				unpin(entry);
+				return true;
+			}
+			queries.put(hash, entry);
+			byQuery.put(query, entry);
+		}
+		return true;
+	}
+
+	/**
+	 * Parses, validates and compiles {@code query} from the manifest, registering it for good if valid.
+	 *
+	 * @return whether it was registered
+	 */
+	public boolean registerManifest(String query) {
+		String hash = hash(query);
+		if (manifest.containsKey(hash))
+			return true;
+		Entry entry = compile(hash, query);
+		if (entry == null)
+			return false;
+		if (manifest.putIfAbsent(hash, entry) != null)
+			unpin(entry);
+		else
+			byQuery.put(query, entry);
+		return true;
+	}
+
+	/* evicted client registered entry, unless also in the manifest */
+	private void unregister(Entry entry) {
+		byQuery.remove(entry.query(), entry);
+		unpin(entry);
+	}
+
+	private void unpin(Entry entry) {
+		entry.planKeys().forEach(fetchPlanner::unpinPlan);
+	}
+
+	/** @return {@code null} if {@code query} is not valid */
+	private Entry compile(String hash, String query) {
+		GraphQLSchema schema = graphQlSource.schema();
+		ParseAndValidateResult result = ParseAndValidate.parseAndValidate(schema,
+				ExecutionInput.newExecutionInput(query).build());
+		if (result.isFailure()) {
+			logger.debug("persisted query {} not registered: {}", hash, result.getErrors());
+			return null;
+		}
+		List<String> planKeys = new ArrayList<>();
+		compileFetchPlans(schema, result, planKeys);
+		logger.debug("persisted query {} registered", hash);
+		return new Entry(query, new PreparsedDocumentEntry(result.getDocument()), List.copyOf(planKeys));
+	}
+
+	/*
+	 * best effort: without the request variables operations depending on them, e.g. @include(if: $nonNull), can not
+	 * be normalized, their plans are built by the first request instead
+	 */
+	private void compileFetchPlans(GraphQLSchema schema, ParseAndValidateResult result, List<String> planKeys) {
+		for (OperationDefinition definition : result.getDocument().getDefinitionsOfType(OperationDefinition.class)) {
+			ExecutableNormalizedOperation operation;
+			try {
+				operation = ExecutableNormalizedOperationFactory.createExecutableNormalizedOperation(schema,
+						result.getDocument(), definition.getName(), CoercedVariables.emptyVariables());
+			} catch (GraphQLException e) {
+				logger.debug("fetch plans of operation {} not precompiled: {}", definition.getName(), e.getMessage());
+				continue;
+			}
+			compileFetchPlans(schema, operation, planKeys);
+		}
+	}
+
+	/* root fields returning entities, or connections of entities through edges/node */
+	private void compileFetchPlans(GraphQLSchema schema, ExecutableNormalizedOperation operation,
+			List<String> planKeys) {
+		for (ExecutableNormalizedField root : operation.getTopLevelFields()) {
+			ExecutableNormalizedField field = root;
+			if (getEntityType(schema, field) == null)
+				field = root.getChildren().stream().filter(edges -> edges.getName().equals("edges"))
+						.flatMap(edges -> edges.getChildren().stream()).filter(node -> node.getName().equals("node"))
+						.findFirst().orElse(null);
+			Class<?> entityType = field == null ? null : getEntityType(schema, field);
+			if (entityType == null)
+				continue;
+
+			ExecutableNormalizedField selected = field;
+			planKeys.add(fetchPlanner.pinPlan(entityManager, entityType,
+					DataFetchingFieldSelectionSetImpl.newCollector(schema, selected.getType(schema), () -> selected)));
+		}
+	}
+
+	private Class<?> getEntityType(GraphQLSchema schema, ExecutableNormalizedField field) {
+		return entityTypes.get(GraphQLTypeUtil.unwrapAll(field.getType(schema)).getName());
+	}
+
+	public int size() {
+		synchronized (queries) {
+			return manifest.size() + queries.size();
+		}
+	}
+
+	public static String hash(String query) {
+		try {
+			return HexFormat.of()
+					.formatHex(MessageDigest.getInstance("SHA-256").digest(query.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
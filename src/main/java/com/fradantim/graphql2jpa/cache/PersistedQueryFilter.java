@@ -0,0 +1,219 @@
+package com.fradantim.graphql2jpa.cache;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Automatic persisted queries protocol over http: requests carrying
+ * {@code extensions.persistedQuery.sha256Hash} register their query text, or have it filled in from the
+ * {@link PersistedQueries} when sent without it. Unknown hashes are answered with a {@code PersistedQueryNotFound}
+ * error so the client retries with the full text. Bodies are buffered up to {@code maxBodySize} bytes, larger ones
+ * are rejected.
+ */
+public class PersistedQueryFilter extends OncePerRequestFilter implements Ordered {
+
+	static final String NOT_FOUND = "PersistedQueryNotFound";
+	static final String HASH_MISMATCH = "provided sha does not match query";
+	static final String MALFORMED = "malformed request body";
+	static final String TOO_LARGE = "request body too large";
+
+	private static final byte[] EXTENSION = "persistedQuery".getBytes(StandardCharsets.UTF_8);
+
+	private final String path;
+	private final PersistedQueries persistedQueries;
+	private final ObjectMapper objectMapper;
+	private final int maxBodySize;
+
+	public PersistedQueryFilter(String path, PersistedQueries persistedQueries, ObjectMapper objectMapper,
+			int maxBodySize) {
+		this.path = path;
+		this.persistedQueries = persistedQueries;
+		this.objectMapper = objectMapper;
+		this.maxBodySize = maxBodySize;
+	}
+
+	/** Before the other filters reading the query, e.g. the incremental delivery one. */
+	@Override
+	public int getOrder() {
+		return Ordered.LOWEST_PRECEDENCE - 10;
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return !HttpMethod.POST.matches(request.getMethod())
+				|| !path.equals(request.getRequestURI().substring(request.getContextPath().length()));
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		if (request.getContentLengthLong() > maxBodySize) {
+			writeError(response, HttpStatus.PAYLOAD_TOO_LARGE, TOO_LARGE, "PAYLOAD_TOO_LARGE");
+			return;
+		}
+		byte[] body = read(request.getInputStream());
+		if (body == null) {
+			writeError(response, HttpStatus.PAYLOAD_TOO_LARGE, TOO_LARGE, "PAYLOAD_TOO_LARGE");
+			return;
+		}
+		// most requests are not persisted queries, leave them unparsed
+		if (indexOf(body, EXTENSION) < 0) {
+			filterChain.doFilter(new BodyRequest(request, body), response);
+			return;
+		}
+
+		Map<String, Object> payload;
+		try {
+			payload = objectMapper.readValue(body, new TypeReference<LinkedHashMap<String, Object>>() {
+			});
+		} catch (JsonProcessingException e) {
+			writeError(response, HttpStatus.BAD_REQUEST, MALFORMED, "BAD_REQUEST");
+			return;
+		}
+		String hash = getHash(payload);
+		if (hash == null) {
+			filterChain.doFilter(new BodyRequest(request, body), response);
+			return;
+		}
+
+		if (payload.get("query") instanceof String query && !query.isBlank()) {
+			if (!PersistedQueries.hash(query).equals(hash)) {
+				writeError(response, HttpStatus.BAD_REQUEST, HASH_MISMATCH, "BAD_REQUEST");
+				return;
+			}
+			persistedQueries.register(query);
+			filterChain.doFilter(new BodyRequest(request, body), response);
+			return;
+		}
+
+		Optional<String> query = persistedQueries.get(hash);
+		if (query.isEmpty()) {
+			writeError(response, HttpStatus.OK, NOT_FOUND, "PERSISTED_QUERY_NOT_FOUND");
+			return;
+		}
+		payload.put("query", query.get());
+		filterChain.doFilter(new BodyRequest(request, objectMapper.writeValueAsBytes(payload)), response);
+	}
+
+	/** @return {@code null} if longer than {@code maxBodySize} */
+	private byte[] read(InputStream input) throws IOException {
+		byte[] body = input.readNBytes(maxBodySize + 1);
+		return body.length > maxBodySize ? null : body;
+	}
+
+	private static String getHash(Map<String, Object> payload) {
+		if (payload.get("extensions") instanceof Map<?, ?> extensions
+				&& extensions.get("persistedQuery") instanceof Map<?, ?> persistedQuery
+				&& persistedQuery.get("sha256Hash") instanceof String hash)
+			return hash.toLowerCase();
+		return null;
+	}
+
+	private void writeError(HttpServletResponse response, HttpStatus status, String message, String code)
+			throws IOException {
+		response.setStatus(status.value());
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		objectMapper.writeValue(response.getOutputStream(),
+				Map.of("errors", List.of(Map.of("message", message, "extensions", Map.of("code", code)))));
+	}
+
+	private static int indexOf(byte[] bytes, byte[] part) {
+		outer: for (int i = 0; i <= bytes.length - part.length; i++) {
+			for (int j = 0; j < part.length; j++)
+				if (bytes[i + j] != part[j])
+					continue outer;
+			return i;
+		}
+		return -1;
+	}
+
+	/** Request replaying an already read body. */
+	private static class BodyRequest extends HttpServletRequestWrapper {
+
+		private final byte[] body;
+
+		BodyRequest(HttpServletRequest request, byte[] body) {
+			super(request);
+			this.body = body;
+		}
+
+		@Override
+		public int getContentLength() {
+			return body.length;
+		}
+
+		@Override
+		public long getContentLengthLong() {
+			return body.length;
+		}
+
+		@Override
+		public BufferedReader getReader() {
+			return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public ServletInputStream getInputStream() {
+			ByteArrayInputStream input = new ByteArrayInputStream(body);
+			return new ServletInputStream() {
+				@Override
+				public int read() {
+					return input.read();
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) {
+					return input.read(b, off, len);
+				}
+
+				@Override
+				public boolean isFinished() {
+					return input.available() == 0;
+				}
+
+				@Override
+				public boolean isReady() {
+					return true;
+				}
+
+				/* the whole body is already there, no need to wait for it */
+				@Override
+				public void setReadListener(ReadListener readListener) {
+					try {
+						if (!isFinished())
+							readListener.onDataAvailable();
+						readListener.onAllDataRead();
+					} catch (IOException | RuntimeException e) {
+						readListener.onError(e);
+					}
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package com.fradantim.graphql2jpa.cache;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded, least recently used, cache of serialized graphql response data with a time to live. Every entry is tagged
+ * with the entities present in its response, so a write to an entity only evicts the responses containing it.
+ * Invalidations are versioned: a response computed since a {@link #getVersion() version} is not cached if any of its
+ * entities was invalidated after it, as it may have been read before the write was committed.
+ */
+public class ResponseCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+
+	/**
+	 * An entity present in a cached response, {@code id} {@code null} for responses depending on every entity of the
+	 * type, such as collection counts.
+	 */
+	public record EntityTag(Class<?> type, Object id) {
+	}
+
+	private record Entry(byte[] data, long expiresAt, Set<EntityTag> tags) {
+	}
+
+	private final int maxSize;
+	private final long ttlNanos;
+	private final Map<String, Entry> entries;
+	private final Map<EntityTag, Set<String>> keysByTag = new HashMap<>();
+	/* version of the last invalidation of an entity, of any entity of a type, and of every entity of a type */
+	private final Map<EntityTag, Long> entityVersions;
+	private final Map<Class<?>, Long> anyEntityVersions = new HashMap<>();
+	private final Map<Class<?>, Long> typeVersions = new HashMap<>();
+	/* versions up to this one may have been forgotten by entityVersions */
+	private long forgottenVersion;
+	private long version;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public ResponseCache(int maxSize, Duration ttl) {
+		this.maxSize = maxSize;
+		this.ttlNanos = ttl.toNanos();
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() <= ResponseCache.this.maxSize)
+					return false;
+				untag(eldest.getKey(), eldest.getValue());
+				return true;
+			}
+		};
+		this.entityVersions = new LinkedHashMap<>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<EntityTag, Long> eldest) {
+				if (size() <= ResponseCache.this.maxSize)
+					return false;
+				forgottenVersion = eldest.getValue();
+				return true;
+			}
+		};
+	}
+
+	/** Current invalidation version, taken before computing a response to {@link #put(String, byte[], Set, long)}. */
+	public long getVersion() {
+		synchronized (entries) {
+			return version;
+		}
+	}
+
+	/** @return the cached response data as json, {@code null} if absent or expired */
+	public byte[] get(String key) {
+		synchronized (entries) {
+			Entry entry = entries.get(key);
+			if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+				hits.incrementAndGet();
+				return entry.data;
+			}
+			if (entry != null)
+				remove(key);
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	public void put(String key, byte[] data, Set<EntityTag> tags) {
+		put(key, data, tags, getVersion());
+	}
+
+	/**
+	 * @param since version taken before computing the response
+	 * @return whether it was cached, not if any of its entities was invalidated since
+	 */
+	public boolean put(String key, byte[] data, Set<EntityTag> tags, long since) {
+		Entry entry = new Entry(data, System.nanoTime() + ttlNanos, Set.copyOf(tags));
+		synchronized (entries) {
+			if (isInvalidatedSince(entry.tags, since)) {
+				logger.debug("response cache: {} not cached, invalidated while computed", key);
+				return false;
+			}
+			remove(key);
+			entries.put(key, entry);
+			if (entries.get(key) == entry)
+				for (EntityTag tag : entry.tags)
+					keysByTag.computeIfAbsent(tag, k -> new HashSet<>()).add(key);
+		}
+		return true;
+	}
+
+	/* callers hold the entries lock */
+	private boolean isInvalidatedSince(Set<EntityTag> tags, long since) {
+		if (since == version)
+			return false;
+		if (since < forgottenVersion)
+			return true;
+		for (EntityTag tag : tags) {
+			long tagVersion = Math.max(typeVersions.getOrDefault(tag.type(), 0L), tag.id() == null
+					? anyEntityVersions.getOrDefault(tag.type(), 0L)
+					: entityVersions.getOrDefault(tag, 0L));
+			if (tagVersion > since)
+				return true;
+		}
+		return false;
+	}
+
+	/** Evicts the responses containing the given entity, or depending on every entity of its type, returns how many. */
+	public int invalidate(Class<?> type, Object id) {
+		synchronized (entries) {
+			version++;
+			EntityTag tag = new EntityTag(type, id);
+			entityVersions.remove(tag);
+			entityVersions.put(tag, version);
+			anyEntityVersions.put(type, version);
+			return evict(List.of(new EntityTag(type, id), new EntityTag(type, null)));
+		}
+	}
+
+	/** Evicts the responses containing any entity of the given type, returns how many. */
+	public int invalidate(Class<?> type) {
+		synchronized (entries) {
+			typeVersions.put(type, ++version);
+			return evict(keysByTag.keySet().stream().filter(tag -> tag.type().equals(type)).toList());
+		}
+	}
+
+	/* callers hold the entries lock */
+	private int evict(List<EntityTag> tags) {
+		int evicted = 0;
+		for (EntityTag tag : tags)
+			for (String key : List.copyOf(keysByTag.getOrDefault(tag, Set.of())))
+				evicted += remove(key) ? 1 : 0;
+		if (evicted > 0)
+			logger.debug("response cache: {} entries invalidated by {}", evicted, tags);
+		return evicted;
+	}
+
+	/* callers hold the entries lock */
+	private boolean remove(String key) {
+		Entry entry = entries.remove(key);
+		if (entry != null)
+			untag(key, entry);
+		return entry != null;
+	}
+
+	private void untag(String key, Entry entry) {
+		for (EntityTag tag : entry.tags) {
+			Set<String> keys = keysByTag.get(tag);
+			if (keys != null && keys.remove(key) && keys.isEmpty())
+				keysByTag.remove(tag);
+		}
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/** Evicts every response, responses being computed are not cached either. */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+			keysByTag.clear();
+			entityVersions.clear();
+			anyEntityVersions.clear();
+			typeVersions.clear();
+			forgottenVersion = ++version;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.fradantim.graphql2jpa.cache;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Collectors;
+
+import org.hibernate.proxy.HibernateProxy;
+
+import com.fradantim.graphql2jpa.cache.ResponseCache.EntityTag;
+import com.fradantim.graphql2jpa.utils.CollectionAggregate;
+import com.fradantim.graphql2jpa.utils.EntityMetadata;
+
+import graphql.execution.DataFetcherResult;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.GraphQLNamedType;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnitUtil;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.Metamodel;
+
+/**
+ * Records, for the {@link ResponseCacheInterceptor}, the entities returned by every data fetcher of a cacheable
+ * request, i.e. the entities present in its response. {@link CollectionAggregate} fields depend on every entity of
+ * the collection type instead, so that inserting a quote evicts the quote counts.
+ */
+public class ResponseCacheInstrumentation extends SimplePerformantInstrumentation {
+
+	private final Set<Class<?>> entityTypes;
+	private final PersistenceUnitUtil persistenceUnitUtil;
+	private final Metamodel metamodel;
+	private final Map<String, Class<?>> entityTypesByName;
+
+	public ResponseCacheInstrumentation(EntityManagerFactory entityManagerFactory) {
+		this.metamodel = entityManagerFactory.getMetamodel();
+		this.entityTypesByName = metamodel.getEntities().stream()
+				.collect(Collectors.toMap(EntityType::getName, EntityType::getJavaType));
+		this.entityTypes = entityManagerFactory.getMetamodel().getEntities().stream().map(EntityType::getJavaType)
+				.collect(Collectors.toSet());
+		this.persistenceUnitUtil = entityManagerFactory.getPersistenceUnitUtil();
+	}
+
+	@Override
+	public DataFetcher<?> instrumentDataFetcher(DataFetcher<?> dataFetcher,
+			InstrumentationFieldFetchParameters parameters, InstrumentationState state) {
+		Set<EntityTag> tags = parameters.getEnvironment().getGraphQlContext().get(ResponseCacheInterceptor.TAGS);
+		if (tags == null)
+			return dataFetcher;
+		Class<?> aggregated = getAggregatedType(parameters.getEnvironment());
+		if (aggregated != null)
+			tags.add(new EntityTag(aggregated, null));
+		return env -> {
+			Object value = dataFetcher.get(env);
+			if (value instanceof CompletionStage<?> stage)
+				return stage.thenApply(result -> record(tags, result));
+			return record(tags, value);
+		};
+	}
+
+	/** @return element type of the collection aggregated by the field, {@code null} if not an aggregate */
+	private Class<?> getAggregatedType(DataFetchingEnvironment env) {
+		Class<?> entityType = env.getParentType() instanceof GraphQLNamedType parentType
+				? entityTypesByName.get(parentType.getName())
+				: null;
+		if (entityType == null)
+			return null;
+		EntityMetadata metadata = EntityMetadata.of(metamodel, entityType);
+		CollectionAggregate aggregate = CollectionAggregate.parse(metadata, env.getField().getName());
+		return aggregate == null ? null : metadata.getAttribute(aggregate.collection()).getTargetType();
+	}
+
+	private Object record(Set<EntityTag> tags, Object value) {
+		Object unwrapped = value instanceof DataFetcherResult<?> result ? result.getData() : value;
+		if (unwrapped instanceof Iterable<?> values)
+			values.forEach(v -> tag(tags, v));
+		else
+			tag(tags, unwrapped);
+		return value;
+	}
+
+	private void tag(Set<EntityTag> tags, Object value) {
+		if (value == null)
+			return;
+		Class<?> type = value instanceof HibernateProxy proxy
+				? proxy.getHibernateLazyInitializer().getPersistentClass()
+				: value.getClass();
+		if (entityTypes.contains(type))
+			tags.add(new EntityTag(type, persistenceUnitUtil.getIdentifier(value)));
+	}
+}
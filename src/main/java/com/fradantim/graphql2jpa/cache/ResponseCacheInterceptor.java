@@ -0,0 +1,127 @@
+package com.fradantim.graphql2jpa.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.graphql.execution.GraphQlSource;
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.graphql.support.DefaultExecutionGraphQlResponse;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.fradantim.graphql2jpa.cache.ResponseCache.EntityTag;
+
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.language.AstPrinter;
+import graphql.language.Document;
+import graphql.language.OperationDefinition;
+import graphql.language.OperationDefinition.Operation;
+import reactor.core.publisher.Mono;
+
+/**
+ * Serves queries from the {@link ResponseCache}, before validation and execution. Entries are keyed by the normalized
+ * document (comments and formatting dropped), operation name and variables, and tagged with the entities recorded by
+ * {@link ResponseCacheInstrumentation}. Documents come from the {@link DocumentCache}, so repeated ones are not parsed
+ * again. Only successful query responses are cached, and only if none of their entities was invalidated while they
+ * were computed.
+ */
+public class ResponseCacheInterceptor implements WebGraphQlInterceptor {
+
+	/** {@code HIT} or {@code MISS}, absent for requests not cacheable. */
+	public static final String CACHE_HEADER = "X-Response-Cache";
+
+	/** Graphql context key of the concurrent {@code Set<EntityTag>} filled while executing. */
+	public static final String TAGS = ResponseCacheInterceptor.class.getName() + ".tags";
+
+	private final ResponseCache responseCache;
+	private final GraphQlSource graphQlSource;
+	private final DocumentCache documentCache;
+	private final ObjectMapper objectMapper;
+	/* variables in the key regardless of their order */
+	private final ObjectMapper keyObjectMapper;
+
+	public ResponseCacheInterceptor(ResponseCache responseCache, GraphQlSource graphQlSource,
+			DocumentCache documentCache, ObjectMapper objectMapper) {
+		this.responseCache = responseCache;
+		this.graphQlSource = graphQlSource;
+		this.documentCache = documentCache;
+		this.objectMapper = objectMapper;
+		this.keyObjectMapper = objectMapper.copy().enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+	}
+
+	@Override
+	public Mono<WebGraphQlResponse> intercept(WebGraphQlRequest request, Chain chain) {
+		String key = buildKey(request);
+		if (key == null)
+			return chain.next(request);
+
+		byte[] data = responseCache.get(key);
+		if (data != null) {
+			ExecutionResult result = ExecutionResult.newExecutionResult()
+					.data(new RawValue(new String(data, StandardCharsets.UTF_8))).build();
+			WebGraphQlResponse response = new WebGraphQlResponse(
+					new DefaultExecutionGraphQlResponse(request.toExecutionInput(), result));
+			response.getResponseHeaders().set(CACHE_HEADER, "HIT");
+			return Mono.just(response);
+		}
+
+		long version = responseCache.getVersion();
+		Set<EntityTag> tags = ConcurrentHashMap.newKeySet();
+		request.configureExecutionInput((input, builder) -> {
+			input.getGraphQLContext().put(TAGS, tags);
+			return input;
+		});
+		return chain.next(request).doOnNext(response -> {
+			if (response.isValid() && response.getErrors().isEmpty()) {
+				responseCache.put(key, serialize(objectMapper, response.getData()), Set.copyOf(tags), version);
+				response.getResponseHeaders().set(CACHE_HEADER, "MISS");
+			}
+		});
+	}
+
+	/** @return {@code null} for anything but a query, or invalid documents */
+	private String buildKey(WebGraphQlRequest request) {
+		PreparsedDocumentEntry entry = documentCache
+				.getDocument(ExecutionInput.newExecutionInput(request.getDocument()).build(), graphQlSource.schema());
+		if (entry.hasErrors())
+			return null;
+		Document document = entry.getDocument();
+		OperationDefinition operation = document.getDefinitionsOfType(OperationDefinition.class).stream()
+				.filter(o -> request.getOperationName() == null || request.getOperationName().equals(o.getName()))
+				.findFirst().orElse(null);
+		if (operation == null || operation.getOperation() != Operation.QUERY)
+			return null;
+
+		String variables = new String(serialize(keyObjectMapper, request.getVariables()), StandardCharsets.UTF_8);
+		return sha256(AstPrinter.printAstCompact(document) + "\n" + Objects.toString(request.getOperationName(), "")
+				+ "\n" + variables);
+	}
+
+	private static byte[] serialize(ObjectMapper objectMapper, Object value) {
+		try {
+			return objectMapper.writeValueAsBytes(value);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Could not serialize " + value, e);
+		}
+	}
+
+	private static String sha256(String value) {
+		try {
+			return HexFormat.of().formatHex(
+					MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
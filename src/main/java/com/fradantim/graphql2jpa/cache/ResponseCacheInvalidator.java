@@ -0,0 +1,29 @@
+package com.fradantim.graphql2jpa.cache;
+
+import java.util.function.Consumer;
+
+import com.fradantim.graphql2jpa.subscription.ChangeEvent;
+import com.fradantim.graphql2jpa.subscription.ChangeEventBus;
+
+/**
+ * Evicts from the {@link ResponseCache} the responses containing an entity once an update or delete of it, or a
+ * change of one of its collections, is committed. Inserts evict every response with that entity type. Subscribed to
+ * the {@link ChangeEventBus}.
+ */
+public class ResponseCacheInvalidator implements Consumer<ChangeEvent> {
+
+	private final ResponseCache responseCache;
+
+	public ResponseCacheInvalidator(ResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+
+	@Override
+	public void accept(ChangeEvent event) {
+		if (event.type() == ChangeEvent.Type.INSERT)
+			// not in any cached response yet, but it may belong to a cached list of its type
+			responseCache.invalidate(event.entityType());
+		else
+			responseCache.invalidate(event.entityType(), event.id());
+	}
+}
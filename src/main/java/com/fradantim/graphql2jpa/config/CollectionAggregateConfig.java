@@ -0,0 +1,60 @@
+package com.fradantim.graphql2jpa.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.graphql.execution.BatchLoaderRegistry;
+import org.springframework.graphql.execution.RuntimeWiringConfigurer;
+
+import com.fradantim.graphql2jpa.repository.AssociationRepository;
+import com.fradantim.graphql2jpa.utils.CollectionAggregate;
+import com.fradantim.graphql2jpa.utils.EntityMetadata;
+import com.fradantim.graphql2jpa.utils.EntityMetadata.AttributeMetadata;
+
+import graphql.schema.DataFetcher;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.metamodel.EntityType;
+import reactor.core.publisher.Mono;
+
+/**
+ * Data fetchers of the {@link CollectionAggregate} fields generated for every entity collection: the entities of an
+ * execution level get their collection counted with a single grouped query, shared by the count and the existence
+ * check of the same collection, see {@link AssociationRepository#countToMany}.
+ */
+@Configuration
+public class CollectionAggregateConfig {
+
+	@Bean
+	public RuntimeWiringConfigurer collectionAggregateWiring(EntityManagerFactory entityManagerFactory,
+			BatchLoaderRegistry batchLoaderRegistry, AssociationRepository associationRepository) {
+		Map<String, Map<String, DataFetcher<?>>> dataFetchers = new HashMap<>();
+		for (EntityType<?> entityType : entityManagerFactory.getMetamodel().getEntities()) {
+			EntityMetadata metadata = EntityMetadata.of(entityManagerFactory.getMetamodel(), entityType.getJavaType());
+			for (AttributeMetadata attribute : metadata.getAttributes().values()) {
+				if (!attribute.isCollection())
+					continue;
+				String loader = metadata.getEntityName() + "." + attribute.getName() + "Count";
+				registerCounter(batchLoaderRegistry, associationRepository, entityType.getJavaType(), attribute.getName(),
+						loader);
+				for (CollectionAggregate aggregate : CollectionAggregate.of(attribute.getName()))
+					if (metadata.getAttribute(aggregate.getFieldName()) == null)
+						dataFetchers.computeIfAbsent(metadata.getEntityName(), k -> new HashMap<>())
+								.put(aggregate.getFieldName(), env -> env.<Object, Long>getDataLoader(loader)
+										.load(env.getSource()).thenApply(aggregate::getValue));
+			}
+		}
+		return builder -> dataFetchers.forEach((typeName, fetchers) -> builder.type(typeName, type -> {
+			fetchers.forEach(type::dataFetcher);
+			return type;
+		}));
+	}
+
+	private static <S> void registerCounter(BatchLoaderRegistry batchLoaderRegistry,
+			AssociationRepository associationRepository, Class<S> type, String collection, String loader) {
+		batchLoaderRegistry.<S, Long>forName(loader).registerMappedBatchLoader((sources, env) -> Mono
+				.fromSupplier(() -> associationRepository.countToMany(type, collection, new ArrayList<>(sources))));
+	}
+}
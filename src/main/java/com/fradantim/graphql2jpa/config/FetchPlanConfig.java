@@ -0,0 +1,27 @@
+package com.fradantim.graphql2jpa.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fradantim.graphql2jpa.utils.CollectionStrategy;
+import com.fradantim.graphql2jpa.utils.FetchMode;
+import com.fradantim.graphql2jpa.utils.FetchPlanCache;
+import com.fradantim.graphql2jpa.utils.FetchPlanner;
+
+@Configuration
+public class FetchPlanConfig {
+
+	@Bean
+	public FetchPlanCache fetchPlanCache(@Value("${graphql2jpa.plan-cache.size:256}") int size) {
+		return new FetchPlanCache(size);
+	}
+
+	@Bean
+	public FetchPlanner fetchPlanner(@Value("${graphql2jpa.fetch-mode:JOIN_FETCH}") FetchMode fetchMode,
+			@Value("${graphql2jpa.collection-strategy:JOIN}") CollectionStrategy collectionStrategy,
+			FetchPlanCache fetchPlanCache,
+			@Value("${graphql2jpa.second-level-cache.enabled:false}") boolean secondLevelCache) {
+		return new FetchPlanner(fetchMode, collectionStrategy, fetchPlanCache, secondLevelCache);
+	}
+}
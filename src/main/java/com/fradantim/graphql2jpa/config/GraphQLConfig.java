@@ -14,23 +14,34 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.graphql.GraphQlSourceBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.type.filter.RegexPatternTypeFilter;
 import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.data.method.annotation.SubscriptionMapping;
 import org.springframework.graphql.execution.GraphQlSource;
 import org.springframework.stereotype.Component;
 
+import com.fradantim.graphql2jpa.cache.DocumentCache;
+import com.fradantim.graphql2jpa.incremental.IncrementalPlanner;
+import com.fradantim.graphql2jpa.utils.CollectionAggregate;
+
 import graphql.Scalars;
 import graphql.schema.GraphQLArgument;
 import graphql.schema.GraphQLEnumType;
@@ -46,7 +57,11 @@ import graphql.schema.GraphQLScalarType;
 import graphql.schema.GraphQLSchema;
 import graphql.schema.GraphQLType;
 import graphql.schema.idl.SchemaPrinter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import jakarta.annotation.Nullable;
+import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 
 @Configuration
@@ -54,55 +69,118 @@ public class GraphQLConfig {
 
 	private static final Logger logger = LoggerFactory.getLogger(GraphQLConfig.class);
 
+	/** Written at build time by {@link SchemaGenerator}, relative to the classpath. */
+	public static final String GENERATED_SCHEMA = "META-INF/graphql2jpa/schema.graphqls";
+
+	@Bean
+	public GraphQlSourceBuilderCustomizer buildCustomizer(Resource graphQLSchema, DocumentCache documentCache) {
+		return (GraphQlSource.SchemaResourceBuilder builder) -> builder.schemaResources(graphQLSchema)
+				.configureGraphQl(graphQl -> graphQl.preparsedDocumentProvider(documentCache));
+	}
+
+	/** Parsed and validated documents, by query text. */
+	@Bean
+	public DocumentCache documentCache(@Value("${graphql2jpa.document-cache.size:512}") int size) {
+		return new DocumentCache(size);
+	}
+
 	@Bean
-	public GraphQlSourceBuilderCustomizer buildCustomizer(Resource graphQLSchema) {
-		return (GraphQlSource.SchemaResourceBuilder builder) -> builder.schemaResources(graphQLSchema);
+	public MeterBinder documentCacheMetrics(DocumentCache documentCache) {
+		return registry -> {
+			FunctionCounter.builder("graphql2jpa.document.cache.hits", documentCache, DocumentCache::getHitCount)
+					.register(registry);
+			FunctionCounter.builder("graphql2jpa.document.cache.misses", documentCache, DocumentCache::getMissCount)
+					.register(registry);
+			Gauge.builder("graphql2jpa.document.cache.size", documentCache, DocumentCache::size).register(registry);
+		};
 	}
 
+	/**
+	 * The build-time schema if present, unless {@code graphql2jpa.schema.reflective} asks to generate it at startup
+	 * (useful while developing, when controllers change without a maven build).
+	 */
 	@Bean
-	public Resource graphQLSchema() {
-		String printedSchema = new SchemaPrinter().print(generateSchema());
+	public Resource graphQLSchema(@Value("${graphql2jpa.schema.reflective:false}") boolean reflective) {
+		Resource generated = new ClassPathResource(GENERATED_SCHEMA);
+		if (!reflective && generated.exists()) {
+			logger.debug("Using build-time graphql schema {}", GENERATED_SCHEMA);
+			return generated;
+		}
+		String printedSchema = printSchema();
 		logger.debug("Auto-generated graphql schema:\n{}", printedSchema);
 		return new ByteArrayResource(printedSchema.getBytes());
 	}
 
+	public String printSchema() {
+		return new SchemaPrinter().print(generateSchema());
+	}
+
 	public GraphQLSchema generateSchema() {
 		ComplexTypes complexTypes = new ComplexTypes();
-		List<GraphQLFieldDefinition> queryFields = new ArrayList<>();
 
+		GraphQLObjectType.Builder queryBuilder = GraphQLObjectType.newObject().name("Query");
+		findMappedMethods(QueryMapping.class).forEach(method -> queryBuilder.field(buildField(complexTypes, method)));
+		GraphQLSchema.Builder schemaBuilder = GraphQLSchema.newSchema().query(queryBuilder)
+				.additionalDirective(IncrementalPlanner.DEFER).additionalDirective(IncrementalPlanner.STREAM);
+
+		List<Method> mutationMethods = findMappedMethods(MutationMapping.class).toList();
+		if (!mutationMethods.isEmpty()) {
+			GraphQLObjectType.Builder mutationBuilder = GraphQLObjectType.newObject().name("Mutation");
+			mutationMethods.forEach(method -> mutationBuilder.field(buildField(complexTypes, method)));
+			schemaBuilder.mutation(mutationBuilder);
+		}
+
+		List<Method> subscriptionMethods = findMappedMethods(SubscriptionMapping.class).toList();
+		if (!subscriptionMethods.isEmpty()) {
+			GraphQLObjectType.Builder subscriptionBuilder = GraphQLObjectType.newObject().name("Subscription");
+			subscriptionMethods.forEach(method -> subscriptionBuilder.field(buildField(complexTypes, method)));
+			schemaBuilder.subscription(subscriptionBuilder);
+		}
+		return schemaBuilder.build();
+	}
+
+	private GraphQLFieldDefinition buildField(ComplexTypes complexTypes, Method method) {
+		logger.debug("Including {} : {}", method.getDeclaringClass().getName(), method.getName());
+		String queryName = getQueryName(method);
+
+		GraphQLOutputType type;
+		Class<?> returnType = method.getReturnType();
+		if (Publisher.class.isAssignableFrom(returnType)) {
+			// subscriptions, a field of the published type
+			returnType = (Class<?>) ((ParameterizedType) method.getGenericReturnType()).getActualTypeArguments()[0];
+			type = getOrBuildOutputType(complexTypes, returnType, null);
+		} else if (Collection.class.isAssignableFrom(returnType)) {
+			returnType = (Class<?>) ((ParameterizedType) method.getGenericReturnType()).getActualTypeArguments()[0];
+			type = GraphQLList.list(getOrBuildOutputType(complexTypes, returnType, null));
+		} else {
+			type = getOrBuildOutputType(complexTypes, returnType, null);
+		}
+
+		List<GraphQLArgument> arguments = getArguments(complexTypes, method);
+
+		GraphQLFieldDefinition.Builder builder = GraphQLFieldDefinition.newFieldDefinition().name(queryName)
+				.type(type);
+		arguments.forEach(builder::argument);
+		return builder.build();
+	}
+
+	private Stream<Method> findMappedMethods(Class<? extends Annotation> mapping) {
 		String pkgName = GraphQLConfig.class.getPackageName().substring(0,
 				GraphQLConfig.class.getPackageName().lastIndexOf("."));
 
-		getPackageClasses(pkgName).filter(this::classIsComponentAnotated)
+		return getPackageClasses(pkgName).filter(this::classIsComponentAnotated)
 				.flatMap(clazz -> Arrays.stream(clazz.getDeclaredMethods()))
-				.filter(m -> m.isAnnotationPresent(QueryMapping.class)).forEach(method -> {
-					logger.debug("Including {} : {}", method.getDeclaringClass().getName(), method.getName());
-					String queryName = method.getAnnotation(QueryMapping.class).name();
-					if (queryName.isBlank())
-						queryName = method.getName();
-
-					GraphQLOutputType type;
-					Class<?> returnType = method.getReturnType();
-					if (Collection.class.isAssignableFrom(returnType)) {
-						returnType = (Class<?>) ((ParameterizedType) method.getGenericReturnType())
-								.getActualTypeArguments()[0];
-						type = GraphQLList.list(getOrBuildOutputType(complexTypes, returnType, null));
-					} else {
-						type = getOrBuildOutputType(complexTypes, returnType, null);
-					}
-
-					List<GraphQLArgument> arguments = getArguments(complexTypes, method);
-
-					GraphQLFieldDefinition.Builder builder = GraphQLFieldDefinition.newFieldDefinition().name(queryName)
-							.type(type);
-					arguments.forEach(builder::argument);
-
-					queryFields.add(builder.build());
-				});
-
-		GraphQLObjectType.Builder builder = GraphQLObjectType.newObject().name("Query");
-		queryFields.forEach(builder::field);
-		return GraphQLSchema.newSchema().query(builder).build();
+				.filter(m -> m.isAnnotationPresent(mapping));
+	}
+
+	/** Query, mutation or subscription name. */
+	private static String getQueryName(Method method) {
+		QueryMapping queryMapping = method.getAnnotation(QueryMapping.class);
+		MutationMapping mutationMapping = method.getAnnotation(MutationMapping.class);
+		String queryName = queryMapping != null ? queryMapping.name()
+				: mutationMapping != null ? mutationMapping.name()
+						: method.getAnnotation(SubscriptionMapping.class).name();
+		return queryName.isBlank() ? method.getName() : queryName;
 	}
 
 	private List<GraphQLArgument> getArguments(ComplexTypes complexTypes, Method method) {
@@ -179,7 +257,8 @@ public class GraphQLConfig {
 		if (scalar.isPresent())
 			return scalar.get();
 
-		List<GraphQLFieldDefinition> fieldsDefinitions = Arrays.stream(type.getDeclaredFields()).map(f -> {
+		List<GraphQLFieldDefinition> fieldsDefinitions = new ArrayList<>();
+		Arrays.stream(type.getDeclaredFields()).map(f -> {
 			GraphQLOutputType fieldType;
 			if (Collection.class.isAssignableFrom(f.getType())) {
 				Class<?> nonGenericType = (Class<?>) ((ParameterizedType) f.getGenericType())
@@ -189,7 +268,9 @@ public class GraphQLConfig {
 				fieldType = getOrBuildOutputType(complexTypes, f.getType(), Attribute.of(f));
 			}
 			return GraphQLFieldDefinition.newFieldDefinition().name(f.getName()).type(fieldType).build();
-		}).toList();
+		}).forEach(fieldsDefinitions::add);
+		if (type.isAnnotationPresent(Entity.class))
+			fieldsDefinitions.addAll(buildAggregateFields(type));
 
 		String name = complexTypes.nextAvailableName(type.getSimpleName());
 		GraphQLObjectType.Builder builder = GraphQLObjectType.newObject().name(name);
@@ -199,6 +280,19 @@ public class GraphQLConfig {
 		return complexType;
 	}
 
+	/** {@link CollectionAggregate}s of the collections of an entity, unless clashing with its own fields. */
+	private static List<GraphQLFieldDefinition> buildAggregateFields(Class<?> entity) {
+		Set<String> names = Arrays.stream(entity.getDeclaredFields()).map(Field::getName).collect(Collectors.toSet());
+		return Arrays.stream(entity.getDeclaredFields()).filter(f -> Collection.class.isAssignableFrom(f.getType()))
+				.flatMap(f -> CollectionAggregate.of(f.getName()).stream())
+				.filter(aggregate -> !names.contains(aggregate.getFieldName()))
+				.map(aggregate -> GraphQLFieldDefinition.newFieldDefinition().name(aggregate.getFieldName())
+						.type(aggregate.kind() == CollectionAggregate.Kind.COUNT ? Scalars.GraphQLInt
+								: Scalars.GraphQLBoolean)
+						.build())
+				.toList();
+	}
+
 	private GraphQLInputType getOrBuildInputType(ComplexTypes complexTypes, Class<?> type,
 			@Nullable Attribute attribute) {
 		Optional<GraphQLInputType> complexTypeOpt = complexTypes.getInputType(type);
@@ -325,4 +419,4 @@ interface Attribute {
 			}
 		};
 	}// @formatter:on
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.fradantim.graphql2jpa.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.graphql.execution.GraphQlSource;
+import org.springframework.graphql.server.WebGraphQlHandler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fradantim.graphql2jpa.cache.DocumentCache;
+import com.fradantim.graphql2jpa.incremental.IncrementalDeliveryFilter;
+import com.fradantim.graphql2jpa.incremental.IncrementalExecutor;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/** {@code @defer} and {@code @stream} over multipart http and server-sent events, see {@link IncrementalExecutor}. */
+@Configuration
+@ConditionalOnProperty(name = "graphql2jpa.incremental.enabled", havingValue = "true", matchIfMissing = true)
+public class IncrementalDeliveryConfig {
+
+	@Bean
+	public IncrementalExecutor incrementalExecutor(WebGraphQlHandler webGraphQlHandler, GraphQlSource graphQlSource,
+			DocumentCache documentCache) {
+		return new IncrementalExecutor(webGraphQlHandler, graphQlSource, documentCache);
+	}
+
+	@Bean
+	public IncrementalDeliveryFilter incrementalDeliveryFilter(@Value("${spring.graphql.path:/graphql}") String path,
+			IncrementalExecutor incrementalExecutor, EntityManagerFactory entityManagerFactory,
+			ObjectMapper objectMapper) {
+		return new IncrementalDeliveryFilter(path, incrementalExecutor, entityManagerFactory, objectMapper);
+	}
+}
@@ -0,0 +1,79 @@
+package com.fradantim.graphql2jpa.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.graphql.execution.GraphQlSource;
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fradantim.graphql2jpa.cache.DocumentCache;
+import com.fradantim.graphql2jpa.cache.PersistedQueries;
+import com.fradantim.graphql2jpa.cache.PersistedQueryFilter;
+import com.fradantim.graphql2jpa.utils.FetchPlanner;
+
+import jakarta.persistence.EntityManager;
+
+/** Automatic persisted queries, see {@link PersistedQueryFilter}. */
+@Configuration
+@ConditionalOnProperty(name = "graphql2jpa.persisted-queries.enabled", havingValue = "true", matchIfMissing = true)
+public class PersistedQueryConfig {
+
+	private static final Logger logger = LoggerFactory.getLogger(PersistedQueryConfig.class);
+
+	@Bean
+	public PersistedQueries persistedQueries(@Value("${graphql2jpa.persisted-queries.size:1000}") int size,
+			GraphQlSource graphQlSource, DocumentCache documentCache, FetchPlanner fetchPlanner,
+			EntityManager entityManager) {
+		PersistedQueries persistedQueries = new PersistedQueries(size, graphQlSource, fetchPlanner, entityManager);
+		documentCache.setPersistedQueries(persistedQueries);
+		return persistedQueries;
+	}
+
+	@Bean
+	public PersistedQueryFilter persistedQueryFilter(@Value("${spring.graphql.path:/graphql}") String path,
+			@Value("${graphql2jpa.persisted-queries.max-body-size:1048576}") int maxBodySize,
+			PersistedQueries persistedQueries, ObjectMapper objectMapper) {
+		return new PersistedQueryFilter(path, persistedQueries, objectMapper, maxBodySize);
+	}
+
+	/**
+	 * Registers the operations of an apollo persisted query manifest,
+	 * {@code {"operations": [{"id": "<sha-256>", "body": "<query>"}]}}, at startup.
+	 */
+	@Bean
+	public ApplicationRunner persistedQueryManifest(
+			@Value("${graphql2jpa.persisted-queries.manifest:}") String manifest, PersistedQueries persistedQueries,
+			ObjectMapper objectMapper) {
+		return args -> {
+			if (!StringUtils.hasText(manifest))
+				return;
+			Resource resource = new DefaultResourceLoader().getResource(manifest);
+			JsonNode operations;
+			try (InputStream input = resource.getInputStream()) {
+				operations = objectMapper.readTree(input).path("operations");
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not read persisted query manifest " + manifest, e);
+			}
+			int registered = 0;
+			for (JsonNode operation : operations) {
+				String body = operation.path("body").asText();
+				if (operation.hasNonNull("id") && !operation.get("id").asText().equals(PersistedQueries.hash(body)))
+					logger.warn("persisted query {} id does not match its body hash, registered by body hash",
+							operation.get("id").asText());
+				registered += persistedQueries.registerManifest(body) ? 1 : 0;
+			}
+			logger.info("{} of {} persisted queries registered from {}", registered, operations.size(), manifest);
+		};
+	}
+}
@@ -0,0 +1,53 @@
+package com.fradantim.graphql2jpa.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import com.fradantim.graphql2jpa.repository.BookRepository;
+import com.fradantim.graphql2jpa.repository.IdListLoader;
+import com.fradantim.graphql2jpa.repository.SelectionAwareRepositoryFactoryBean;
+import com.fradantim.graphql2jpa.repository.SingleFlight;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+
+@Configuration
+@EnableJpaRepositories(basePackageClasses = BookRepository.class,
+		repositoryFactoryBeanClass = SelectionAwareRepositoryFactoryBean.class)
+public class RepositoryConfig {
+
+	@Bean
+	public IdListLoader idListLoader(EntityManagerFactory entityManagerFactory,
+			@Value("${graphql2jpa.id-list.chunk-size:256}") int chunkSize,
+			@Value("${graphql2jpa.id-list.parallelism:1}") int parallelism) {
+		return new IdListLoader(entityManagerFactory, chunkSize, parallelism);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "graphql2jpa.single-flight.enabled", havingValue = "true")
+	public SingleFlight singleFlight(@Value("${graphql2jpa.single-flight.timeout:5s}") Duration timeout) {
+		return new SingleFlight(timeout);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "graphql2jpa.single-flight.enabled", havingValue = "true")
+	public MeterBinder singleFlightMetrics(SingleFlight singleFlight) {
+		return registry -> {
+			FunctionCounter.builder("graphql2jpa.single-flight.loads", singleFlight, SingleFlight::getLoadCount)
+					.register(registry);
+			FunctionCounter.builder("graphql2jpa.single-flight.coalesced", singleFlight,
+					SingleFlight::getCoalescedCount).register(registry);
+			FunctionCounter.builder("graphql2jpa.single-flight.timeouts", singleFlight, SingleFlight::getTimeoutCount)
+					.register(registry);
+			Gauge.builder("graphql2jpa.single-flight.in-flight", singleFlight, SingleFlight::getInFlightCount)
+					.register(registry);
+		};
+	}
+}
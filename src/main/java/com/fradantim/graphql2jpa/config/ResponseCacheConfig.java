@@ -0,0 +1,64 @@
+package com.fradantim.graphql2jpa.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.graphql.execution.GraphQlSource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fradantim.graphql2jpa.cache.DocumentCache;
+import com.fradantim.graphql2jpa.cache.ResponseCache;
+import com.fradantim.graphql2jpa.cache.ResponseCacheInstrumentation;
+import com.fradantim.graphql2jpa.cache.ResponseCacheInterceptor;
+import com.fradantim.graphql2jpa.cache.ResponseCacheInvalidator;
+import com.fradantim.graphql2jpa.subscription.ChangeEventBus;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+
+/** Optional graphql response cache, see {@link ResponseCacheInterceptor}. */
+@Configuration
+@ConditionalOnProperty(name = "graphql2jpa.response-cache.enabled", havingValue = "true")
+public class ResponseCacheConfig {
+
+	@Bean
+	public ResponseCache responseCache(@Value("${graphql2jpa.response-cache.size:1000}") int size,
+			@Value("${graphql2jpa.response-cache.ttl:1m}") Duration ttl) {
+		return new ResponseCache(size, ttl);
+	}
+
+	@Bean
+	public ResponseCacheInterceptor responseCacheInterceptor(ResponseCache responseCache, GraphQlSource graphQlSource,
+			DocumentCache documentCache, ObjectMapper objectMapper) {
+		return new ResponseCacheInterceptor(responseCache, graphQlSource, documentCache, objectMapper);
+	}
+
+	@Bean
+	public ResponseCacheInstrumentation responseCacheInstrumentation(EntityManagerFactory entityManagerFactory) {
+		return new ResponseCacheInstrumentation(entityManagerFactory);
+	}
+
+	@Bean
+	public ResponseCacheInvalidator responseCacheInvalidator(ResponseCache responseCache,
+			ChangeEventBus changeEventBus) {
+		ResponseCacheInvalidator invalidator = new ResponseCacheInvalidator(responseCache);
+		changeEventBus.addListener(invalidator);
+		return invalidator;
+	}
+
+	@Bean
+	public MeterBinder responseCacheMetrics(ResponseCache responseCache) {
+		return registry -> {
+			FunctionCounter.builder("graphql2jpa.response.cache.hits", responseCache, ResponseCache::getHitCount)
+					.register(registry);
+			FunctionCounter.builder("graphql2jpa.response.cache.misses", responseCache, ResponseCache::getMissCount)
+					.register(registry);
+			Gauge.builder("graphql2jpa.response.cache.size", responseCache, ResponseCache::size).register(registry);
+		};
+	}
+}
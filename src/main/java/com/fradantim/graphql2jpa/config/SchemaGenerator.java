@@ -0,0 +1,22 @@
+package com.fradantim.graphql2jpa.config;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the graphql schema into the build output, so startup does not scan the classpath nor reflect on controllers
+ * and entities. Run by the exec-maven-plugin after compilation, with the classes output directory as argument.
+ */
+public class SchemaGenerator {
+
+	public static void main(String[] args) throws IOException {
+		Path outputDirectory = Path.of(args.length > 0 ? args[0] : "target/classes");
+		write(outputDirectory.resolve(GraphQLConfig.GENERATED_SCHEMA), new GraphQLConfig().printSchema());
+	}
+
+	private static void write(Path path, String content) throws IOException {
+		Files.createDirectories(path.getParent());
+		Files.writeString(path, content);
+	}
+}
@@ -0,0 +1,105 @@
+package com.fradantim.graphql2jpa.config;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Opt-in hibernate second-level cache (ehcache through jcache) for the read-mostly entities and collections, each
+ * region sized and expired by {@code graphql2jpa.second-level-cache.<region>.size|ttl}. Regions live in a cache
+ * manager of this context's own, closed with it, never in the jvm-wide default one other contexts may have configured.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+	/** Regions declared with {@code @Cache} in the entities. */
+	public static final List<String> REGIONS = List.of("country", "person", "book.reviewers");
+
+	@Bean
+	public HibernatePropertiesCustomizer secondLevelCacheCustomizer(
+			@Value("${graphql2jpa.second-level-cache.enabled:false}") boolean enabled,
+			ObjectProvider<CacheManager> secondLevelCacheManager) {
+		return properties -> {
+			properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, enabled);
+			if (enabled) {
+				properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+				properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager.getObject());
+			}
+		};
+	}
+
+	/** Closed with the context, after the entity manager factory using it. */
+	@Bean
+	@ConditionalOnProperty(name = "graphql2jpa.second-level-cache.enabled", havingValue = "true")
+	public CacheManager secondLevelCacheManager(Environment environment) {
+		EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching
+				.getCachingProvider(EhcacheCachingProvider.class.getName());
+		ClassLoader classLoader = getClass().getClassLoader();
+		CacheManager cacheManager = provider.getCacheManager(
+				URI.create("urn:graphql2jpa:second-level-cache:" + UUID.randomUUID()),
+				ConfigurationBuilder.newConfigurationBuilder().withClassLoader(classLoader).build());
+		for (String region : REGIONS) {
+			String prefix = "graphql2jpa.second-level-cache." + region;
+			long size = environment.getProperty(prefix + ".size", Long.class, 1000L);
+			Duration ttl = environment.getProperty(prefix + ".ttl", Duration.class, Duration.ofMinutes(10));
+			cacheManager.createCache(region, Eh107Configuration.fromEhcacheCacheConfiguration(CacheConfigurationBuilder
+					.newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(size))
+					.withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(ttl))));
+		}
+		return cacheManager;
+	}
+
+	@Bean
+	public MeterBinder secondLevelCacheMetrics(
+			@Value("${graphql2jpa.second-level-cache.enabled:false}") boolean enabled,
+			EntityManagerFactory entityManagerFactory) {
+		return registry -> {
+			if (!enabled)
+				return;
+			Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+			for (String region : REGIONS) {
+				FunctionCounter.builder("graphql2jpa.cache.hits", statistics,
+						s -> regionStatistics(s, region).getHitCount()).tag("region", region).register(registry);
+				FunctionCounter.builder("graphql2jpa.cache.misses", statistics,
+						s -> regionStatistics(s, region).getMissCount()).tag("region", region).register(registry);
+				Gauge.builder("graphql2jpa.cache.hit.ratio", statistics, s -> {
+					CacheRegionStatistics regionStatistics = regionStatistics(s, region);
+					long requests = regionStatistics.getHitCount() + regionStatistics.getMissCount();
+					return requests == 0 ? 0 : (double) regionStatistics.getHitCount() / requests;
+				}).tag("region", region).register(registry);
+			}
+		};
+	}
+
+	private static CacheRegionStatistics regionStatistics(Statistics statistics, String region) {
+		return statistics.getDomainDataRegionStatistics(region);
+	}
+}
@@ -0,0 +1,41 @@
+package com.fradantim.graphql2jpa.config;
+
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.graphql.execution.GraphQlSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.fradantim.graphql2jpa.cache.DocumentCache;
+import com.fradantim.graphql2jpa.instrumentation.QueryCostInstrumentation;
+import com.fradantim.graphql2jpa.sqljson.SqlJsonCompiler;
+import com.fradantim.graphql2jpa.sqljson.SqlJsonInterceptor;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Optional sql/json execution of supported queries, see {@link SqlJsonInterceptor}. The generated statements are only
+ * understood by H2 and PostgreSQL 16 or later, startup fails when enabled on any other database.
+ */
+@Configuration
+@ConditionalOnProperty(name = "graphql2jpa.sql-json.enabled", havingValue = "true")
+public class SqlJsonConfig {
+
+	@Bean
+	public SqlJsonCompiler sqlJsonCompiler(EntityManagerFactory entityManagerFactory,
+			@Value("${graphql2jpa.sql-json.fields:findBookById,findBookByIds,findPersonByIds}") Set<String> fields,
+			@Value("${graphql2jpa.sql-json.max-ids:${graphql2jpa.id-list.chunk-size:256}}") int maxIds) {
+		return new SqlJsonCompiler(entityManagerFactory, fields, maxIds);
+	}
+
+	@Bean
+	public SqlJsonInterceptor sqlJsonInterceptor(GraphQlSource graphQlSource, DocumentCache documentCache,
+			SqlJsonCompiler sqlJsonCompiler, JdbcTemplate jdbcTemplate,
+			QueryCostInstrumentation queryCostInstrumentation) {
+		return new SqlJsonInterceptor(graphQlSource, documentCache, sqlJsonCompiler, jdbcTemplate,
+				queryCostInstrumentation);
+	}
+}
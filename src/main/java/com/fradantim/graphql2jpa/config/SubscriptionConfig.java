@@ -0,0 +1,45 @@
+package com.fradantim.graphql2jpa.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fradantim.graphql2jpa.subscription.ChangeEventBus;
+import com.fradantim.graphql2jpa.subscription.SubscriptionFanOut;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import reactor.core.scheduler.Schedulers;
+
+/** Change-notification subscriptions, see {@link SubscriptionFanOut}. */
+@Configuration
+public class SubscriptionConfig {
+
+	@Bean
+	public ChangeEventBus changeEventBus(EntityManagerFactory entityManagerFactory) {
+		ChangeEventBus changeEventBus = new ChangeEventBus(entityManagerFactory);
+		changeEventBus.register();
+		return changeEventBus;
+	}
+
+	@Bean
+	public SubscriptionFanOut subscriptionFanOut(@Value("${graphql2jpa.subscription.buffer-size:256}") int bufferSize) {
+		return new SubscriptionFanOut(bufferSize, Schedulers.boundedElastic());
+	}
+
+	@Bean
+	public MeterBinder subscriptionMetrics(SubscriptionFanOut subscriptionFanOut) {
+		return registry -> {
+			FunctionCounter.builder("graphql2jpa.subscription.loads", subscriptionFanOut,
+					SubscriptionFanOut::getLoadCount).register(registry);
+			FunctionCounter.builder("graphql2jpa.subscription.dropped", subscriptionFanOut,
+					SubscriptionFanOut::getDroppedCount).register(registry);
+			Gauge.builder("graphql2jpa.subscription.topics", subscriptionFanOut, SubscriptionFanOut::getTopicCount)
+					.register(registry);
+			Gauge.builder("graphql2jpa.subscription.subscribers", subscriptionFanOut,
+					SubscriptionFanOut::getSubscriberCount).register(registry);
+		};
+	}
+}
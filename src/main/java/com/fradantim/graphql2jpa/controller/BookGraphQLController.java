@@ -1,28 +1,66 @@
 package com.fradantim.graphql2jpa.controller;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
+import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
 import org.springframework.graphql.execution.DataFetcherExceptionResolverAdapter;
 import org.springframework.graphql.execution.ErrorType;
 import org.springframework.stereotype.Controller;
 
 import com.fradantim.graphql2jpa.entity.Book;
+import com.fradantim.graphql2jpa.entity.Country;
+import com.fradantim.graphql2jpa.entity.Person;
+import com.fradantim.graphql2jpa.entity.Quote;
+import com.fradantim.graphql2jpa.model.BookConnection;
+import com.fradantim.graphql2jpa.model.BookFilter;
+import com.fradantim.graphql2jpa.model.BookEdge;
+import com.fradantim.graphql2jpa.model.BookInput;
 import com.fradantim.graphql2jpa.model.Cover;
+import com.fradantim.graphql2jpa.model.PageInfo;
+import com.fradantim.graphql2jpa.model.QuoteInput;
+import com.fradantim.graphql2jpa.repository.AssociationRepository;
 import com.fradantim.graphql2jpa.repository.BookRepository;
+import com.fradantim.graphql2jpa.repository.BulkWriteRepository;
+import com.fradantim.graphql2jpa.utils.EntityFilterTranslator.InvalidFilter;
 
 import graphql.GraphQLError;
 import graphql.GraphqlErrorBuilder;
+import graphql.Scalars;
 import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.DataFetchingFieldSelectionSet;
+import graphql.schema.DataFetchingFieldSelectionSetImpl;
+import graphql.schema.SelectedField;
 
 @Controller
 public class BookGraphQLController extends DataFetcherExceptionResolverAdapter {
 
 	private final BookRepository bookRepository;
+	private final AssociationRepository associationRepository;
+	private final BulkWriteRepository bulkWriteRepository;
+	private final int defaultPageSize;
+	private final int maxPageSize;
 
-	public BookGraphQLController(BookRepository bookRepository) {
+	public BookGraphQLController(BookRepository bookRepository, AssociationRepository associationRepository,
+			BulkWriteRepository bulkWriteRepository, @Value("${graphql2jpa.page-size.default:20}") int defaultPageSize,
+			@Value("${graphql2jpa.page-size.max:100}") int maxPageSize) {
 		this.bookRepository = bookRepository;
+		this.associationRepository = associationRepository;
+		this.bulkWriteRepository = bulkWriteRepository;
+		this.defaultPageSize = defaultPageSize;
+		this.maxPageSize = maxPageSize;
 	}
 
 	@QueryMapping
@@ -35,6 +73,41 @@ public class BookGraphQLController extends DataFetcherExceptionResolverAdapter {
 		return bookRepository.findByIdIn(ids, env.getSelectionSet());
 	}
 
+	@QueryMapping
+	public BookConnection books(DataFetchingEnvironment env, @Argument Integer first, @Argument String after,
+			@Argument BookFilter filter) {
+		int size = first == null ? defaultPageSize : first;
+		if (size < 0 || size > maxPageSize)
+			throw new InvalidPageSize(size, maxPageSize);
+
+		List<SelectedField> nodes = env.getSelectionSet().getFields("edges/node");
+		DataFetchingFieldSelectionSet nodeSelectionSet = nodes.isEmpty()
+				// leaf types have an empty selection set
+				? DataFetchingFieldSelectionSetImpl.newCollector(env.getGraphQLSchema(), Scalars.GraphQLID, () -> null)
+				: nodes.get(0).getSelectionSet();
+
+		// one extra row tells whether there is a next page
+		List<Book> books = bookRepository.findPage(after == null ? null : decodeCursor(after), size + 1, filter,
+				nodeSelectionSet);
+		List<BookEdge> edges = books.stream().limit(size).map(b -> new BookEdge(encodeCursor(b.getId()), b))
+				.toList();
+		String endCursor = edges.isEmpty() ? null : edges.get(edges.size() - 1).cursor();
+		return new BookConnection(edges, new PageInfo(books.size() > size, endCursor));
+	}
+
+	private static String encodeCursor(Integer id) {
+		return Base64.getUrlEncoder().encodeToString(("Book:" + id).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static Integer decodeCursor(String cursor) {
+		try {
+			String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			return Integer.valueOf(decoded.substring(decoded.indexOf(':') + 1));
+		} catch (IllegalArgumentException e) {
+			throw new InvalidCursor(cursor);
+		}
+	}
+
 	@QueryMapping
 	public Book findBookByPojo(DataFetchingEnvironment env, @Argument Book pojo) {
 		return findBookById(env, pojo.getId());
@@ -45,6 +118,95 @@ public class BookGraphQLController extends DataFetcherExceptionResolverAdapter {
 		return cover;
 	}
 
+	/*
+	 * Bulk inserts, batched. Referenced entities are loaded first, missing ones failing the mutation. The created
+	 * entities are returned as they are, so their own attributes are not read back; selected associations are loaded
+	 * as for queries.
+	 */
+
+	@MutationMapping
+	public List<Book> createBooks(@Argument List<BookInput> books) {
+		Set<Integer> personIds = new HashSet<>();
+		for (BookInput input : books) {
+			personIds.add(input.authorId());
+			if (input.reviewerIds() != null)
+				personIds.addAll(input.reviewerIds());
+		}
+		Map<Object, Person> people = requireExisting(Person.class, personIds);
+
+		List<Book> entities = new ArrayList<>(books.size());
+		for (BookInput input : books) {
+			Book book = new Book();
+			book.setId(requireId(input.id(), "Book"));
+			book.setName(input.name());
+			book.setIsbn(input.isbn());
+			book.setAuthor(people.get(input.authorId()));
+			book.setQuotes(new HashSet<>());
+			Set<Person> reviewers = new HashSet<>();
+			if (input.reviewerIds() != null)
+				input.reviewerIds().forEach(id -> reviewers.add(people.get(id)));
+			book.setReviewers(reviewers);
+			entities.add(book);
+		}
+		return bulkWriteRepository.insertAll(entities);
+	}
+
+	@MutationMapping
+	public List<Quote> addQuotes(@Argument List<QuoteInput> quotes) {
+		requireExisting(Book.class, quotes.stream().map(QuoteInput::bookId).toList());
+
+		List<Quote> entities = new ArrayList<>(quotes.size());
+		for (QuoteInput input : quotes) {
+			Quote quote = new Quote();
+			quote.setId(requireId(input.id(), "Quote"));
+			quote.setBookId(input.bookId());
+			quote.setText(input.text());
+			entities.add(quote);
+		}
+		return bulkWriteRepository.insertAll(entities);
+	}
+
+	/** @return the entities of {@code ids}, by id */
+	private <T> Map<Object, T> requireExisting(Class<T> type, Collection<Integer> ids) {
+		Map<Object, T> found = bulkWriteRepository.findAllById(type, ids);
+		Set<Integer> missing = new LinkedHashSet<>(ids);
+		missing.removeIf(id -> id == null || found.containsKey(id));
+		if (!missing.isEmpty())
+			throw new InvalidInput("No " + type.getSimpleName() + " found for ids " + missing);
+		return found;
+	}
+
+	private static Integer requireId(Integer id, String type) {
+		if (id == null)
+			throw new InvalidInput(type + " id is required");
+		return id;
+	}
+
+	/*
+	 * Associations not loaded by the root query (graphql2jpa.fetch-mode=DATA_LOADER) are loaded for every entity of
+	 * the same execution level with a single query. Already loaded ones are returned as they are.
+	 */
+
+	@BatchMapping
+	public Map<Book, Person> author(List<Book> books) {
+		return associationRepository.findToOne(Book.class, "author", books, Book::getAuthor);
+	}
+
+	@BatchMapping
+	public Map<Book, Set<Quote>> quotes(List<Book> books) {
+		return associationRepository.findToMany(Book.class, "quotes", books, Book::getQuotes);
+	}
+
+	@BatchMapping
+	public Map<Book, Set<Person>> reviewers(List<Book> books) {
+		return associationRepository.findToMany(Book.class, "reviewers", books, Book::getReviewers);
+	}
+
+	@BatchMapping
+	public Map<Person, Country> country(List<Person> people) {
+		return associationRepository.findToOne(Person.class, "country", people, Person::getCountry);
+	}
+
 	@Override
 	protected GraphQLError resolveToSingleError(Throwable ex, DataFetchingEnvironment env) {
 		if (ex instanceof BookNotFound bnf) {
@@ -52,6 +214,17 @@ public class BookGraphQLController extends DataFetcherExceptionResolverAdapter {
 					.message("No book found for id " + bnf.id).path(env.getExecutionStepInfo().getPath())
 					.location(env.getField().getSourceLocation()).build();
 		}
+		if (ex instanceof InvalidPageSize || ex instanceof InvalidCursor || ex instanceof InvalidFilter
+				|| ex instanceof InvalidInput) {
+			return GraphqlErrorBuilder.newError().errorType(ErrorType.BAD_REQUEST).message(ex.getMessage())
+					.path(env.getExecutionStepInfo().getPath()).location(env.getField().getSourceLocation()).build();
+		}
+		if (ex instanceof DataIntegrityViolationException dive) {
+			// e.g. ids already taken, the whole mutation is rolled back
+			return GraphqlErrorBuilder.newError().errorType(ErrorType.BAD_REQUEST)
+					.message("Could not write: " + dive.getMostSpecificCause().getMessage())
+					.path(env.getExecutionStepInfo().getPath()).location(env.getField().getSourceLocation()).build();
+		}
 		return GraphqlErrorBuilder.newError().errorType(ErrorType.INTERNAL_ERROR).message(ex.getMessage())
 				.path(env.getExecutionStepInfo().getPath()).location(env.getField().getSourceLocation()).build();
 	}
@@ -67,3 +240,30 @@ class BookNotFound extends RuntimeException {
 		this.id = id;
 	}
 }
+
+class InvalidPageSize extends RuntimeException {
+
+	private static final long serialVersionUID = 3405213410950618023L;
+
+	public InvalidPageSize(int size, int maxPageSize) {
+		super("Page size must be between 0 and " + maxPageSize + ", got " + size);
+	}
+}
+
+class InvalidCursor extends RuntimeException {
+
+	private static final long serialVersionUID = -1880306416526848516L;
+
+	public InvalidCursor(String cursor) {
+		super("Invalid cursor " + cursor);
+	}
+}
+
+class InvalidInput extends RuntimeException {
+
+	private static final long serialVersionUID = 2519622861478364127L;
+
+	public InvalidInput(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,71 @@
+package com.fradantim.graphql2jpa.controller;
+
+import java.util.List;
+
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.SubscriptionMapping;
+import org.springframework.stereotype.Controller;
+
+import com.fradantim.graphql2jpa.entity.Book;
+import com.fradantim.graphql2jpa.entity.Quote;
+import com.fradantim.graphql2jpa.repository.BookRepository;
+import com.fradantim.graphql2jpa.repository.QuoteRepository;
+import com.fradantim.graphql2jpa.subscription.ChangeEvent;
+import com.fradantim.graphql2jpa.subscription.ChangeEventBus;
+import com.fradantim.graphql2jpa.subscription.SubscriptionFanOut;
+
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.DataFetchingFieldSelectionSet;
+import jakarta.annotation.PostConstruct;
+import reactor.core.publisher.Flux;
+
+/**
+ * Change notifications instead of polling. Committed changes are routed to the {@link SubscriptionFanOut}, which
+ * loads them once per selection shape with the same fetch plans as queries.
+ */
+@Controller
+public class BookSubscriptionController {
+
+	private final BookRepository bookRepository;
+	private final QuoteRepository quoteRepository;
+	private final SubscriptionFanOut fanOut;
+	private final ChangeEventBus changeEventBus;
+
+	public BookSubscriptionController(BookRepository bookRepository, QuoteRepository quoteRepository,
+			SubscriptionFanOut fanOut, ChangeEventBus changeEventBus) {
+		this.bookRepository = bookRepository;
+		this.quoteRepository = quoteRepository;
+		this.fanOut = fanOut;
+		this.changeEventBus = changeEventBus;
+	}
+
+	@PostConstruct
+	void subscribe() {
+		changeEventBus.addListener(this::route);
+	}
+
+	/** The book once its row, its quotes or its reviewers change; nothing once deleted. */
+	@SubscriptionMapping
+	public Flux<Book> bookChanged(DataFetchingEnvironment env, @Argument Integer id) {
+		DataFetchingFieldSelectionSet selection = env.getSelectionSet();
+		return fanOut.subscribe("bookChanged", id, selection,
+				(List<Integer> ids) -> bookRepository.findByIdIn(ids, selection));
+	}
+
+	@SubscriptionMapping
+	public Flux<Quote> quoteAdded(DataFetchingEnvironment env, @Argument Integer bookId) {
+		DataFetchingFieldSelectionSet selection = env.getSelectionSet();
+		return fanOut.subscribe("quoteAdded", bookId, selection,
+				(List<Integer> ids) -> quoteRepository.findByIdIn(ids, selection));
+	}
+
+	private void route(ChangeEvent event) {
+		if (event.entity() instanceof Book) {
+			fanOut.publish("bookChanged", event.id(), event.id());
+		} else if (event.entity() instanceof Quote quote && quote.getBookId() != null) {
+			fanOut.publish("bookChanged", quote.getBookId(), quote.getBookId());
+			if (event.type() == ChangeEvent.Type.INSERT)
+				fanOut.publish("quoteAdded", quote.getBookId(), quote.getId());
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package com.fradantim.graphql2jpa.controller;
+
+import java.util.List;
+
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.stereotype.Controller;
+
+import com.fradantim.graphql2jpa.entity.Person;
+import com.fradantim.graphql2jpa.repository.PersonRepository;
+
+import graphql.schema.DataFetchingEnvironment;
+
+@Controller
+public class PersonGraphQLController {
+
+	private final PersonRepository personRepository;
+
+	public PersonGraphQLController(PersonRepository personRepository) {
+		this.personRepository = personRepository;
+	}
+
+	@QueryMapping
+	public List<Person> findPersonByIds(DataFetchingEnvironment env, @Argument List<Integer> ids) {
+		return personRepository.findByIdIn(ids, env.getSelectionSet());
+	}
+}
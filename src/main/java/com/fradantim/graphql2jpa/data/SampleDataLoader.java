@@ -0,0 +1,270 @@
+package com.fradantim.graphql2jpa.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the schema, inserts the hand written seed data into empty tables and fills the tables up to the configured
+ * sizes with synthetic rows, inserted with jdbc batches. Authors and countries are drawn from a Zipf distribution, low
+ * ids being the popular ones, and reviewers from the same one reversed, high ids reviewing the most, so, as in real
+ * data, a few people write most books and a few others review them. Every step is idempotent: tables already seeded or
+ * at their size are left as they are, so restarts over the same database neither add nor overwrite anything.
+ */
+@Component
+public class SampleDataLoader {
+
+	private static final Logger logger = LoggerFactory.getLogger(SampleDataLoader.class);
+
+	private static final List<String> SCHEMA = List.of(
+			"create table if not exists country (id int not null, name varchar(31), primary key (id))",
+			"create table if not exists person (id int not null, name varchar(31), country_id int, primary key (id))",
+			"create table if not exists book (author_id bigint, id int not null, isbn varchar(31), name varchar(31), primary key (id))",
+			"create table if not exists book_reviewer (person_id int not null, book_id int not null, primary key (person_id, book_id))",
+			"create table if not exists quote (book_id bigint, id int not null, text varchar(127), primary key (id))");
+
+	private static final Map<String, List<String>> SEED = Map.of(
+			"country", List.of(
+					"insert into country (id, name) values (1, 'U.S.')",
+					"insert into country (id, name) values (2, 'India')",
+					"insert into country (id, name) values (3, 'Argentina')"),
+			"person", List.of(
+					"insert into person (id, name, country_id) values (1, 'Stephen King', 1)",
+					"insert into person (id, name, country_id) values (2, 'Not Fradantim, he does not read', 3)",
+					"insert into person (id, name, country_id) values (3, 'George Orwell', 2)",
+					"insert into person (id, name, country_id) values (4, 'Also not Fradantim', 3)"),
+			"book", List.of(
+					"insert into book (id, name, isbn, author_id) values (1, 'IT', '9783453435773', 1)",
+					"insert into book (id, name, isbn, author_id) values (2, 'The Shinning', '9783785746042', 1)",
+					"insert into book (id, name, isbn, author_id) values (3, 'Carrie', '9780307348074', 1)",
+					"insert into book (id, name, isbn, author_id) values (4, '1984', '9789510459959', 3)",
+					"insert into book (id, name, isbn, author_id) values (5, 'Animal Farm', '9783257691955', 3)"),
+			"quote", List.of(
+					"insert into quote (id, book_id, text) values (1, 1, 'Your hair is winter fire, January embers, My heart burns there, too.')",
+					"insert into quote (id, book_id, text) values (2, 1, 'We all float down here!')",
+					"insert into quote (id, book_id, text) values (3, 1, 'What can be done when you’re eleven can often never be done again.')",
+					"insert into quote (id, book_id, text) values (4, 2, 'The tears that heal are also the tears that scald and scourge.')",
+					"insert into quote (id, book_id, text) values (5, 2, 'Are you sure self-pity is a luxury you can afford, Jack?')",
+					"insert into quote (id, book_id, text) values (6, 2, 'Living by your wits is always knowing where the wasps are.')",
+					"insert into quote (id, book_id, text) values (7, 3, 'But sorry is the Kool-Aid of human emotions. [...] True sorrow is as rare as true love.')",
+					"insert into quote (id, book_id, text) values (8, 3, 'True sorrow is as rare as true love.')",
+					"insert into quote (id, book_id, text) values (9, 3, 'the late afternoon sunlight, warm as oil, sweet as childhood ...')",
+					"insert into quote (id, book_id, text) values (10, 4, 'Perhaps one did not want to be loved so much as to be understood.')",
+					"insert into quote (id, book_id, text) values (11, 4, 'The best books... are those that tell you what you know already.')",
+					"insert into quote (id, book_id, text) values (12, 4, 'If you want to keep a secret, you must also hide it from yourself.')",
+					"insert into quote (id, book_id, text) values (13, 5, 'All animals are equal, but some animals are more equal than others.')",
+					"insert into quote (id, book_id, text) values (14, 5, 'Four legs good, two legs bad.')",
+					"insert into quote (id, book_id, text) values (15, 5, 'All men are enemies. All devs are comrades.')"),
+			"book_reviewer", List.of(
+					"insert into book_reviewer (book_id, person_id) values (1,2)",
+					"insert into book_reviewer (book_id, person_id) values (1,4)",
+					"insert into book_reviewer (book_id, person_id) values (2,4)",
+					"insert into book_reviewer (book_id, person_id) values (3,2)",
+					"insert into book_reviewer (book_id, person_id) values (3,4)",
+					"insert into book_reviewer (book_id, person_id) values (5,2)"));
+
+	private final JdbcTemplate jdbcTemplate;
+	private final int countries;
+	private final int people;
+	private final int books;
+	private final int quotesPerBook;
+	private final int reviewersPerBook;
+	private final double zipfExponent;
+	private final long seed;
+	private final int batchSize;
+
+	/**
+	 * @param countries        total countries, people and books, seed data included; below the seed sizes only the
+	 *                         seed is loaded
+	 * @param quotesPerBook    average of generated books, uniformly between {@code 0} and twice the value
+	 * @param reviewersPerBook average of generated books, uniformly between {@code 0} and twice the value
+	 * @param zipfExponent     skew of authors, reviewers and countries popularity, {@code 0} being uniform
+	 * @param seed             of the random generator, same seed and sizes generating the same data
+	 */
+	public SampleDataLoader(JdbcTemplate jdbcTemplate, @Value("${graphql2jpa.data.countries:0}") int countries,
+			@Value("${graphql2jpa.data.people:0}") int people, @Value("${graphql2jpa.data.books:0}") int books,
+			@Value("${graphql2jpa.data.quotes-per-book:3}") int quotesPerBook,
+			@Value("${graphql2jpa.data.reviewers-per-book:2}") int reviewersPerBook,
+			@Value("${graphql2jpa.data.zipf-exponent:1.0}") double zipfExponent,
+			@Value("${graphql2jpa.data.seed:42}") long seed,
+			@Value("${graphql2jpa.data.batch-size:10000}") int batchSize) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.countries = countries;
+		this.people = people;
+		this.books = books;
+		this.quotesPerBook = quotesPerBook;
+		this.reviewersPerBook = reviewersPerBook;
+		this.zipfExponent = zipfExponent;
+		this.seed = seed;
+		this.batchSize = batchSize;
+	}
+
+	public void load() {
+		logger.info("Filling database...");
+		SCHEMA.forEach(jdbcTemplate::execute);
+		SEED.forEach((table, rows) -> {
+			if (count(table) == 0)
+				jdbcTemplate.batchUpdate(rows.toArray(String[]::new));
+		});
+
+		Random random = new Random(seed);
+		int countryCount = generateCountries();
+		int personCount = generatePeople(random, countryCount);
+		generateBooks(random, personCount);
+		logger.info("Done.");
+	}
+
+	private int generateCountries() {
+		int first = nextId("country");
+		int missing = countries - count("country");
+		Batch batch = new Batch("insert into country (id, name) values (?, ?)");
+		for (int id = first; id < first + missing; id++)
+			batch.add(id, "Country " + id);
+		batch.flush();
+		return count("country");
+	}
+
+	private int generatePeople(Random random, int countryCount) {
+		int first = nextId("person");
+		int missing = people - count("person");
+		if (missing <= 0)
+			return count("person");
+
+		ZipfSampler countrySampler = new ZipfSampler(countryCount, zipfExponent);
+		Batch batch = new Batch("insert into person (id, name, country_id) values (?, ?, ?)");
+		for (int id = first; id < first + missing; id++)
+			batch.add(id, "Person " + id, countrySampler.sample(random));
+		batch.flush();
+		return count("person");
+	}
+
+	private void generateBooks(Random random, int personCount) {
+		int first = nextId("book");
+		int missing = books - count("book");
+		if (missing <= 0)
+			return;
+
+		ZipfSampler personSampler = new ZipfSampler(personCount, zipfExponent);
+		int quoteId = nextId("quote");
+		Batch bookBatch = new Batch("insert into book (id, name, isbn, author_id) values (?, ?, ?, ?)");
+		Batch quoteBatch = new Batch("insert into quote (id, book_id, text) values (?, ?, ?)");
+		Batch reviewerBatch = new Batch("insert into book_reviewer (book_id, person_id) values (?, ?)");
+		int progressStep = Math.max(missing / 10, 1);
+		for (int i = 0; i < missing; i++) {
+			int id = first + i;
+			bookBatch.add(id, "Book " + id, String.format("978%010d", id), personSampler.sample(random));
+
+			int quotes = random.nextInt(2 * quotesPerBook + 1);
+			for (int q = 1; q <= quotes; q++)
+				quoteBatch.add(quoteId++, id, "Quote " + q + " of book " + id);
+
+			// distinct reviewers, the least popular authors reviewing the most
+			int reviewerCount = Math.min(random.nextInt(2 * reviewersPerBook + 1), personCount);
+			for (int rank : personSampler.sampleDistinct(random, reviewerCount))
+				reviewerBatch.add(id, personCount + 1 - rank);
+
+			if ((i + 1) % progressStep == 0)
+				logger.info("{} of {} books generated", i + 1, missing);
+		}
+		bookBatch.flush();
+		quoteBatch.flush();
+		reviewerBatch.flush();
+	}
+
+	private int count(String table) {
+		return jdbcTemplate.queryForObject("select count(*) from " + table, Integer.class);
+	}
+
+	private int nextId(String table) {
+		return jdbcTemplate.queryForObject("select coalesce(max(id), 0) + 1 from " + table, Integer.class);
+	}
+
+	/** Rows of one insert statement, sent every {@code batchSize} rows. */
+	private class Batch {
+		private final String sql;
+		private final List<Object[]> rows = new ArrayList<>();
+
+		private Batch(String sql) {
+			this.sql = sql;
+		}
+
+		private void add(Object... row) {
+			rows.add(row);
+			if (rows.size() >= batchSize)
+				flush();
+		}
+
+		private void flush() {
+			if (!rows.isEmpty())
+				jdbcTemplate.batchUpdate(sql, rows);
+			rows.clear();
+		}
+	}
+
+	/** Ranks {@code 1..n}, rank {@code k} drawn with a probability proportional to {@code 1 / k^exponent}. */
+	static class ZipfSampler {
+		private final double[] cumulative;
+
+		ZipfSampler(int n, double exponent) {
+			cumulative = new double[n];
+			double sum = 0;
+			for (int k = 1; k <= n; k++)
+				cumulative[k - 1] = sum += 1 / Math.pow(k, exponent);
+			for (int k = 0; k < n; k++)
+				cumulative[k] /= sum;
+		}
+
+		int sample(Random random) {
+			return rank(random.nextDouble());
+		}
+
+		/** {@code count} distinct ranks, each drawn from the weights of the ranks not drawn yet. */
+		int[] sampleDistinct(Random random, int count) {
+			if (count > cumulative.length)
+				throw new IllegalArgumentException(count + " distinct ranks out of " + cumulative.length);
+			int[] ranks = new int[count];
+			SortedSet<Integer> drawn = new TreeSet<>();
+			double remaining = 1;
+			for (int i = 0; i < count; i++) {
+				// a point of the ranks left, moved past the ranks drawn below it
+				double target = random.nextDouble() * remaining;
+				for (int rank : drawn) {
+					if (target < start(rank))
+						break;
+					target += weight(rank);
+				}
+				int rank = rank(target);
+				// rounding may land on a bound of a drawn rank
+				while (drawn.contains(rank))
+					rank = rank % cumulative.length + 1;
+				drawn.add(rank);
+				remaining -= weight(rank);
+				ranks[i] = rank;
+			}
+			return ranks;
+		}
+
+		private int rank(double target) {
+			int index = Arrays.binarySearch(cumulative, target);
+			return Math.min((index < 0 ? -index - 1 : index) + 1, cumulative.length);
+		}
+
+		private double start(int rank) {
+			return rank == 1 ? 0 : cumulative[rank - 2];
+		}
+
+		private double weight(int rank) {
+			return cumulative[rank - 1] - start(rank);
+		}
+	}
+}
@@ -2,6 +2,9 @@ package com.fradantim.graphql2jpa.entity;
 
 import java.util.Set;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.Id;
@@ -29,6 +32,7 @@ public class Book {
 
 	@JoinTable(name = "book_reviewer", joinColumns = @JoinColumn(name = "book_id"), inverseJoinColumns = @JoinColumn(name = "person_id"))
 	@ManyToMany(fetch = FetchType.LAZY)
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "book.reviewers")
 	private Set<Person> reviewers;
 
 	@JoinColumn(name = "nonExistingBookId")
@@ -90,4 +94,4 @@ public class Book {
 	public void setMissingOneToMany(Set<NonExistingEntity> missingOneToMany) {
 		this.missingOneToMany = missingOneToMany;
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
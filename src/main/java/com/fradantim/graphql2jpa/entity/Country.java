@@ -1,11 +1,15 @@
 package com.fradantim.graphql2jpa.entity;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 
 @Table(name = "country")
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "country")
 public class Country {
 	@Id
 	private Integer id;
@@ -26,4 +30,4 @@ public class Country {
 	public void setName(String name) {
 		this.name = name;
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
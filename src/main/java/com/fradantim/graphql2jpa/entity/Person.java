@@ -1,5 +1,8 @@
 package com.fradantim.graphql2jpa.entity;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.Id;
@@ -8,6 +11,7 @@ import jakarta.persistence.Table;
 
 @Table(name = "person")
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "person")
 public class Person {
 	@Id
 	private Integer id;
@@ -39,4 +43,4 @@ public class Person {
 	public void setCountry(Country country) {
 		this.country = country;
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,187 @@
+package com.fradantim.graphql2jpa.incremental;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.core.Ordered;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.http.HttpCookie;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Incremental delivery over http: requests accepting {@code multipart/mixed} or {@code text/event-stream} are
+ * executed by the {@link IncrementalExecutor}, each payload written and flushed as soon as it is ready. Runs after the
+ * persisted queries filter, with an entity manager bound to the request as the graphql handler would have.
+ */
+public class IncrementalDeliveryFilter extends OncePerRequestFilter implements Ordered {
+
+	static final MediaType MULTIPART_MIXED = MediaType
+			.parseMediaType("multipart/mixed;boundary=\"-\";deferSpec=20220824");
+
+	private static final byte[] PART_HEADER = "\r\n---\r\nContent-Type: application/json; charset=utf-8\r\n\r\n"
+			.getBytes(StandardCharsets.UTF_8);
+	private static final byte[] MULTIPART_END = "\r\n-----\r\n".getBytes(StandardCharsets.UTF_8);
+
+	private final String path;
+	private final IncrementalExecutor executor;
+	private final EntityManagerFactory entityManagerFactory;
+	private final ObjectMapper objectMapper;
+
+	public IncrementalDeliveryFilter(String path, IncrementalExecutor executor,
+			EntityManagerFactory entityManagerFactory, ObjectMapper objectMapper) {
+		this.path = path;
+		this.executor = executor;
+		this.entityManagerFactory = entityManagerFactory;
+		this.objectMapper = objectMapper;
+	}
+
+	@Override
+	public int getOrder() {
+		return Ordered.LOWEST_PRECEDENCE;
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return !HttpMethod.POST.matches(request.getMethod())
+				|| !path.equals(request.getRequestURI().substring(request.getContextPath().length()))
+				|| getAccepted(request) == null;
+	}
+
+	/**
+	 * @return {@code multipart/mixed} or {@code text/event-stream}, whichever is preferred, {@code null} if json is
+	 *         preferred over both
+	 */
+	private static MediaType getAccepted(HttpServletRequest request) {
+		String accept = request.getHeader(HttpHeaders.ACCEPT);
+		if (accept == null)
+			return null;
+		try {
+			List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+			// by quality first
+			MimeTypeUtils.sortBySpecificity(mediaTypes);
+			for (MediaType mediaType : mediaTypes) {
+				if (MULTIPART_MIXED.equalsTypeAndSubtype(mediaType))
+					return MULTIPART_MIXED;
+				if (MediaType.TEXT_EVENT_STREAM.equalsTypeAndSubtype(mediaType))
+					return MediaType.TEXT_EVENT_STREAM;
+				if (mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)
+						|| mediaType.isCompatibleWith(MediaType.APPLICATION_GRAPHQL_RESPONSE))
+					return null;
+			}
+		} catch (InvalidMediaTypeException e) {
+			// left to the graphql handler
+		}
+		return null;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		Map<String, Object> body;
+		try {
+			body = objectMapper.readValue(request.getInputStream(), new TypeReference<LinkedHashMap<String, Object>>() {
+			});
+		} catch (JsonProcessingException e) {
+			writeBadRequest(response, "Malformed request body");
+			return;
+		}
+		if (!(body.get("query") instanceof String)) {
+			writeBadRequest(response, "No query");
+			return;
+		}
+		WebGraphQlRequest graphQlRequest = new WebGraphQlRequest(
+				URI.create(request.getRequestURL().append(request.getQueryString() == null ? ""
+						: "?" + request.getQueryString()).toString()),
+				new ServletServerHttpRequest(request).getHeaders(), getCookies(request), new HashMap<>(), body,
+				UUID.randomUUID().toString(), request.getLocale());
+
+		MediaType mediaType = getAccepted(request);
+		response.setContentType(mediaType.toString());
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		OutputStream output = response.getOutputStream();
+
+		boolean bound = TransactionSynchronizationManager.hasResource(entityManagerFactory);
+		EntityManager entityManager = null;
+		if (!bound) {
+			entityManager = entityManagerFactory.createEntityManager();
+			TransactionSynchronizationManager.bindResource(entityManagerFactory,
+					new EntityManagerHolder(entityManager));
+		}
+		try {
+			executor.execute(graphQlRequest, payload -> write(output, mediaType, payload));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			if (!bound) {
+				TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+				EntityManagerFactoryUtils.closeEntityManager(entityManager);
+			}
+		}
+		output.write(MULTIPART_MIXED.equals(mediaType) ? MULTIPART_END
+				: "event: complete\ndata:\n\n".getBytes(StandardCharsets.UTF_8));
+		output.flush();
+	}
+
+	private void writeBadRequest(HttpServletResponse response, String message) throws IOException {
+		response.setStatus(HttpStatus.BAD_REQUEST.value());
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		objectMapper.writeValue(response.getOutputStream(),
+				Map.of("errors", List.of(Map.of("message", message, "extensions", Map.of("code", "BAD_REQUEST")))));
+	}
+
+	private static MultiValueMap<String, HttpCookie> getCookies(HttpServletRequest request) {
+		MultiValueMap<String, HttpCookie> cookies = new LinkedMultiValueMap<>();
+		if (request.getCookies() != null)
+			for (Cookie cookie : request.getCookies())
+				cookies.add(cookie.getName(), new HttpCookie(cookie.getName(), cookie.getValue()));
+		return cookies;
+	}
+
+	private void write(OutputStream output, MediaType mediaType, Map<String, Object> payload) {
+		try {
+			if (MULTIPART_MIXED.equals(mediaType)) {
+				output.write(PART_HEADER);
+				output.write(objectMapper.writeValueAsBytes(payload));
+			} else {
+				output.write("event: next\ndata: ".getBytes(StandardCharsets.UTF_8));
+				output.write(objectMapper.writeValueAsBytes(payload));
+				output.write("\n\n".getBytes(StandardCharsets.UTF_8));
+			}
+			output.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
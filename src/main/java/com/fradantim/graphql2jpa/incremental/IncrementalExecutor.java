@@ -0,0 +1,250 @@
+package com.fradantim.graphql2jpa.incremental;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.graphql.execution.GraphQlSource;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.WebGraphQlRequest;
+
+import com.fradantim.graphql2jpa.cache.DocumentCache;
+import com.fradantim.graphql2jpa.incremental.IncrementalPlanner.Part;
+import com.fradantim.graphql2jpa.incremental.IncrementalPlanner.Plan;
+
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+
+/**
+ * Executes queries with {@code @defer} and {@code @stream} as planned by {@link IncrementalPlanner}: the initial
+ * payload {@code {data, errors, hasNext}} is handed over as soon as its query completes, then a
+ * {@code {incremental: [{data | items, path, label, errors}], hasNext}} payload per part, as each part query
+ * completes. Part queries run one after the other on the request entity manager, through the
+ * {@link WebGraphQlHandler} and so its interceptors, with the headers, cookies and locale of the original request.
+ * <p>
+ * Documents with errors, operations other than queries and queries without active parts produce a single payload.
+ */
+public class IncrementalExecutor {
+
+	private static final Logger logger = LoggerFactory.getLogger(IncrementalExecutor.class);
+
+	private final WebGraphQlHandler webGraphQlHandler;
+	private final GraphQlSource graphQlSource;
+	private final DocumentCache documentCache;
+
+	public IncrementalExecutor(WebGraphQlHandler webGraphQlHandler, GraphQlSource graphQlSource,
+			DocumentCache documentCache) {
+		this.webGraphQlHandler = webGraphQlHandler;
+		this.graphQlSource = graphQlSource;
+		this.documentCache = documentCache;
+	}
+
+	/** @param payloads called with each payload, in order */
+	public void execute(WebGraphQlRequest request, Consumer<Map<String, Object>> payloads) {
+		Plan plan = plan(request.getDocument(), request.getOperationName(), request.getVariables());
+		if (plan == null || plan.parts().isEmpty()) {
+			Map<String, Object> payload = execute(request, request.getDocument(), request.getOperationName());
+			payload.put("hasNext", false);
+			payloads.accept(payload);
+			return;
+		}
+
+		Map<String, Object> initial = execute(request, plan.initialQuery(), null);
+		@SuppressWarnings("unchecked")
+		Map<String, Object> loaded = (Map<String, Object>) initial.get("data");
+		if (loaded == null) {
+			initial.put("hasNext", false);
+			payloads.accept(initial);
+			return;
+		}
+
+		// parts are matched with the whole initial data, the one sent having its streamed lists cut
+		@SuppressWarnings("unchecked")
+		Map<String, Object> data = (Map<String, Object>) copy(loaded, false);
+		List<Map<String, Object>> streamedItems = new ArrayList<>();
+		List<Part> queried = new ArrayList<>();
+		for (Part part : plan.parts()) {
+			if (part.field() != null)
+				split(data, part, streamedItems);
+			// nothing to load for parts of objects not found
+			if (part.query() != null && hasParents(loaded, part))
+				queried.add(part);
+		}
+
+		initial.put("data", copy(data, true));
+		initial.put("hasNext", !streamedItems.isEmpty() || !queried.isEmpty());
+		payloads.accept(initial);
+		if (!streamedItems.isEmpty())
+			payloads.accept(subsequent(streamedItems, !queried.isEmpty()));
+
+		for (int i = 0; i < queried.size(); i++) {
+			Part part = queried.get(i);
+			Map<String, Object> result = execute(request, part.query(), null);
+			payloads.accept(subsequent(merge(loaded, part, result), i < queried.size() - 1));
+		}
+	}
+
+	private Plan plan(String query, String operationName, Map<String, Object> variables) {
+		ExecutionInput input = ExecutionInput.newExecutionInput(query).operationName(operationName)
+				.variables(variables).build();
+		// cached for the regular execution as well
+		PreparsedDocumentEntry entry = documentCache.getDocument(input, graphQlSource.schema());
+		if (entry.hasErrors())
+			return null;
+		return IncrementalPlanner.plan(graphQlSource.schema(), entry.getDocument(), operationName, variables);
+	}
+
+	/** Executes {@code query} as if it were the document of {@code request}. */
+	private Map<String, Object> execute(WebGraphQlRequest request, String query, String operationName) {
+		logger.debug("incremental execution of {}", query);
+		Map<String, Object> body = new HashMap<>();
+		body.put("query", query);
+		body.put("variables", request.getVariables());
+		if (operationName != null)
+			body.put("operationName", operationName);
+		return new LinkedHashMap<>(webGraphQlHandler.handleRequest(new WebGraphQlRequest(request.getUri().toUri(),
+				request.getHeaders(), request.getCookies(), request.getAttributes(), body,
+				UUID.randomUUID().toString(), request.getLocale())).block().toMap());
+	}
+
+	/** Cuts the streamed lists of the initial data, {@code []} when not loaded at all. */
+	private static void split(Map<String, Object> data, Part part, List<Map<String, Object>> streamedItems) {
+		forEachParent(data, data, part.path(), 0, new ArrayList<>(), (path, parent, same) -> {
+			if (part.query() != null) {
+				parent.put(part.field(), new ArrayList<>());
+				return;
+			}
+			if (!(parent.get(part.field()) instanceof List<?> items) || items.size() <= part.initialCount())
+				return;
+			parent.put(part.field(), new ArrayList<>(items.subList(0, part.initialCount())));
+			streamedItems.add(incremental("items", copy(items.subList(part.initialCount(), items.size()), true),
+					itemPath(path, part), part.label()));
+		});
+	}
+
+	private static boolean hasParents(Map<String, Object> data, Part part) {
+		boolean[] found = { false };
+		forEachParent(data, data, part.path(), 0, new ArrayList<>(), (path, parent, same) -> found[0] = true);
+		return found[0];
+	}
+
+	/** Incremental entries of a part query result, one per object of the initial data it belongs to. */
+	private static List<Map<String, Object>> merge(Map<String, Object> data, Part part, Map<String, Object> result) {
+		List<Map<String, Object>> entries = new ArrayList<>();
+		forEachParent(data, result.get("data"), part.path(), 0, new ArrayList<>(), (path, parent, loaded) -> {
+			if (part.field() == null) {
+				entries.add(incremental("data", copy(loaded, true), path, part.label()));
+			} else if (loaded.get(part.field()) instanceof List<?> items && !items.isEmpty()) {
+				entries.add(incremental("items", copy(items, true), itemPath(path, part), part.label()));
+			}
+		});
+
+		if (result.get("errors") instanceof List<?> errors) {
+			// failures of root fields already null in the initial payload were reported there
+			List<?> newErrors = errors.stream().filter(error -> !(error instanceof Map<?, ?> map
+					&& map.get("path") instanceof List<?> errorPath && !errorPath.isEmpty()
+					&& data.containsKey(errorPath.get(0)) && data.get(errorPath.get(0)) == null)).toList();
+			if (!newErrors.isEmpty()) {
+				if (entries.isEmpty())
+					entries.add(incremental("data", null, new ArrayList<>(part.path()), part.label()));
+				entries.get(0).put("errors", newErrors);
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Walks both results down {@code keys}, list items matched by their {@link IncrementalPlanner#KEY} when distinct,
+	 * by position otherwise.
+	 */
+	private static void forEachParent(Object initial, Object loaded, List<String> keys, int depth, List<Object> path,
+			ParentConsumer consumer) {
+		if (initial instanceof List<?> initialItems && loaded instanceof List<?> loadedItems) {
+			Map<Object, Object> byKey = new HashMap<>();
+			loadedItems.forEach(item -> {
+				if (item instanceof Map<?, ?> map && map.get(IncrementalPlanner.KEY) != null)
+					byKey.put(map.get(IncrementalPlanner.KEY), item);
+			});
+			boolean keyed = byKey.size() == loadedItems.size();
+			for (int i = 0; i < initialItems.size(); i++) {
+				Object item = initialItems.get(i);
+				Object loadedItem;
+				if (keyed)
+					loadedItem = item instanceof Map<?, ?> map ? byKey.get(map.get(IncrementalPlanner.KEY)) : null;
+				else
+					loadedItem = i < loadedItems.size() ? loadedItems.get(i) : null;
+				path.add(i);
+				forEachParent(item, loadedItem, keys, depth, path, consumer);
+				path.remove(path.size() - 1);
+			}
+			return;
+		}
+		if (!(initial instanceof Map<?, ?> initialMap) || !(loaded instanceof Map<?, ?> loadedMap))
+			return;
+		if (depth == keys.size()) {
+			@SuppressWarnings("unchecked")
+			Map<String, Object> parent = (Map<String, Object>) initialMap;
+			@SuppressWarnings("unchecked")
+			Map<String, Object> loadedParent = (Map<String, Object>) loadedMap;
+			consumer.accept(List.copyOf(path), parent, loadedParent);
+			return;
+		}
+		String key = keys.get(depth);
+		path.add(key);
+		forEachParent(initialMap.get(key), loadedMap.get(key), keys, depth + 1, path, consumer);
+		path.remove(path.size() - 1);
+	}
+
+	private static List<Object> itemPath(List<Object> parentPath, Part part) {
+		List<Object> path = new ArrayList<>(parentPath);
+		path.add(part.field());
+		path.add(part.initialCount());
+		return path;
+	}
+
+	private static Map<String, Object> incremental(String name, Object value, List<Object> path, String label) {
+		Map<String, Object> incremental = new LinkedHashMap<>();
+		incremental.put(name, value);
+		incremental.put("path", path);
+		if (label != null)
+			incremental.put("label", label);
+		return incremental;
+	}
+
+	private static Map<String, Object> subsequent(List<Map<String, Object>> incremental, boolean hasNext) {
+		Map<String, Object> payload = new LinkedHashMap<>();
+		if (!incremental.isEmpty())
+			payload.put("incremental", incremental);
+		payload.put("hasNext", hasNext);
+		return payload;
+	}
+
+	/** Mutable deep copy, optionally without the {@link IncrementalPlanner#KEY}s. */
+	private static Object copy(Object value, boolean withoutKeys) {
+		if (value instanceof Map<?, ?> map) {
+			Map<String, Object> copy = new LinkedHashMap<>();
+			map.forEach((k, v) -> {
+				if (!withoutKeys || !IncrementalPlanner.KEY.equals(k))
+					copy.put((String) k, copy(v, withoutKeys));
+			});
+			return copy;
+		}
+		if (value instanceof List<?> list) {
+			List<Object> copy = new ArrayList<>(list.size());
+			list.forEach(item -> copy.add(copy(item, withoutKeys)));
+			return copy;
+		}
+		return value;
+	}
+
+	@FunctionalInterface
+	private interface ParentConsumer {
+		void accept(List<Object> path, Map<String, Object> parent, Map<String, Object> loaded);
+	}
+}
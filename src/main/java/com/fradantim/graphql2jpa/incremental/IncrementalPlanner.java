@@ -0,0 +1,268 @@
+package com.fradantim.graphql2jpa.incremental;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import graphql.Scalars;
+import graphql.introspection.Introspection.DirectiveLocation;
+import graphql.language.Argument;
+import graphql.language.AstPrinter;
+import graphql.language.BooleanValue;
+import graphql.language.Directive;
+import graphql.language.Document;
+import graphql.language.Field;
+import graphql.language.FragmentDefinition;
+import graphql.language.FragmentSpread;
+import graphql.language.InlineFragment;
+import graphql.language.IntValue;
+import graphql.language.Node;
+import graphql.language.OperationDefinition;
+import graphql.language.OperationDefinition.Operation;
+import graphql.language.Selection;
+import graphql.language.SelectionSet;
+import graphql.language.StringValue;
+import graphql.language.Value;
+import graphql.language.VariableDefinition;
+import graphql.language.VariableReference;
+import graphql.schema.GraphQLArgument;
+import graphql.schema.GraphQLDirective;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLFieldsContainer;
+import graphql.schema.GraphQLNonNull;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLTypeUtil;
+
+/**
+ * Splits a query with active {@code @defer} fragments and {@code @stream} fields into a light initial query, without
+ * them, and a query per deferred part. Each part query repeats the path of root and nested fields (arguments
+ * included) down to the part, so it loads the part for every object of that path at once, the fetch translators only
+ * ever seeing the fields of the query they run. Objects along the paths select their {@code id} under {@link #KEY}
+ * in both queries, so results are matched by identity, not by the position of unordered collections.
+ * <p>
+ * Named fragments are inlined; fields nested in deferred parts are loaded with them.
+ */
+public class IncrementalPlanner {
+
+	/** Response key of the ids matching part results with the initial one, not sent to clients. */
+	public static final String KEY = "_incrementalKey";
+
+	public static final GraphQLDirective DEFER = GraphQLDirective.newDirective().name("defer")
+			.validLocations(DirectiveLocation.FRAGMENT_SPREAD, DirectiveLocation.INLINE_FRAGMENT)
+			.argument(GraphQLArgument.newArgument().name("if").type(GraphQLNonNull.nonNull(Scalars.GraphQLBoolean))
+					.defaultValueProgrammatic(true))
+			.argument(GraphQLArgument.newArgument().name("label").type(Scalars.GraphQLString)).build();
+
+	public static final GraphQLDirective STREAM = GraphQLDirective.newDirective().name("stream")
+			.validLocations(DirectiveLocation.FIELD)
+			.argument(GraphQLArgument.newArgument().name("if").type(GraphQLNonNull.nonNull(Scalars.GraphQLBoolean))
+					.defaultValueProgrammatic(true))
+			.argument(GraphQLArgument.newArgument().name("label").type(Scalars.GraphQLString))
+			.argument(GraphQLArgument.newArgument().name("initialCount").type(Scalars.GraphQLInt)
+					.defaultValueProgrammatic(0))
+			.build();
+
+	private final GraphQLSchema schema;
+	private final OperationDefinition operation;
+	private final Map<String, FragmentDefinition> fragments = new HashMap<>();
+	private final Map<String, Object> variables = new HashMap<>();
+	private final List<Part> parts = new ArrayList<>();
+
+	private IncrementalPlanner(GraphQLSchema schema, Document document, OperationDefinition operation,
+			Map<String, Object> variables) {
+		this.schema = schema;
+		this.operation = operation;
+		document.getDefinitionsOfType(FragmentDefinition.class).forEach(f -> fragments.put(f.getName(), f));
+		for (VariableDefinition definition : operation.getVariableDefinitions())
+			if (definition.getDefaultValue() != null)
+				this.variables.put(definition.getName(), getValue(definition.getDefaultValue()));
+		if (variables != null)
+			this.variables.putAll(variables);
+	}
+
+	/**
+	 * @param document validated
+	 * @return {@code null} for operations other than queries
+	 */
+	public static Plan plan(GraphQLSchema schema, Document document, String operationName,
+			Map<String, Object> variables) {
+		Optional<OperationDefinition> operation = document.getDefinitionsOfType(OperationDefinition.class).stream()
+				.filter(o -> operationName == null || operationName.equals(o.getName())).findFirst();
+		if (operation.isEmpty() || operation.get().getOperation() != Operation.QUERY)
+			return null;
+		return new IncrementalPlanner(schema, document, operation.get(), variables).plan();
+	}
+
+	private Plan plan() {
+		List<Selection<?>> initial = split(operation.getSelectionSet(), schema.getQueryType(), List.of());
+		if (initial.isEmpty())
+			initial = List.of(key(schema.getQueryType()));
+		return new Plan(print(initial), parts);
+	}
+
+	/** @return the selections of the initial query, parts found collected */
+	private List<Selection<?>> split(SelectionSet selectionSet, GraphQLFieldsContainer type, List<Step> path) {
+		List<Selection<?>> selections = new ArrayList<>();
+		for (Selection<?> selection : selectionSet.getSelections()) {
+			if (selection instanceof FragmentSpread spread) {
+				FragmentDefinition definition = fragments.get(spread.getName());
+				selection = InlineFragment.newInlineFragment().typeCondition(definition.getTypeCondition())
+						.directives(spread.getDirectives()).selectionSet(definition.getSelectionSet()).build();
+			}
+
+			if (selection instanceof InlineFragment fragment) {
+				Directive defer = getActive(fragment.getDirectives(), DEFER);
+				if (defer != null) {
+					InlineFragment deferred = fragment.transform(b -> b.directives(without(fragment.getDirectives(), DEFER)));
+					parts.add(new Part(getKeys(path), getLabel(defer), print(path, deferred), null, 0));
+					continue;
+				}
+				GraphQLFieldsContainer fragmentType = fragment.getTypeCondition() == null ? type
+						: (GraphQLFieldsContainer) schema.getType(fragment.getTypeCondition().getName());
+				List<Selection<?>> children = split(fragment.getSelectionSet(), fragmentType, path);
+				if (!children.isEmpty())
+					selections.add(fragment.transform(b -> b.selectionSet(new SelectionSet(children))));
+				continue;
+			}
+
+			Field field = (Field) selection;
+			GraphQLFieldDefinition definition = type.getFieldDefinition(field.getName());
+			Directive stream = getActive(field.getDirectives(), STREAM);
+			if (stream != null && definition != null && GraphQLTypeUtil.isList(GraphQLTypeUtil.unwrapNonNull(
+					definition.getType()))) {
+				Field streamed = field.transform(b -> b.directives(without(field.getDirectives(), STREAM)));
+				Object initialCount = getArgument(stream, "initialCount");
+				int count = initialCount instanceof Number number ? Math.max(number.intValue(), 0) : 0;
+				// with an initial count the field is loaded as usual, its list split afterwards
+				parts.add(new Part(getKeys(path), getLabel(stream), count == 0 ? print(path, streamed) : null,
+						getResponseKey(field), count));
+				if (count == 0)
+					continue;
+			}
+			if (field.getSelectionSet() == null || definition == null) {
+				selections.add(field);
+				continue;
+			}
+
+			GraphQLFieldsContainer fieldType = (GraphQLFieldsContainer) GraphQLTypeUtil.unwrapAll(definition.getType());
+			List<Step> fieldPath = new ArrayList<>(path);
+			fieldPath.add(new Step(field, fieldType));
+			int partCount = parts.size();
+			List<Selection<?>> children = split(field.getSelectionSet(), fieldType, fieldPath);
+			if (parts.size() > partCount || children.isEmpty())
+				children = withKey(children, fieldType);
+			List<Selection<?>> fieldChildren = children;
+			selections.add(field.transform(b -> b.selectionSet(new SelectionSet(fieldChildren))));
+		}
+		return selections;
+	}
+
+	/** Query of a part, nested in the fields of its path. */
+	private String print(List<Step> path, Selection<?> part) {
+		List<Selection<?>> selections = List.of(part);
+		for (int i = path.size() - 1; i >= 0; i--) {
+			Step step = path.get(i);
+			SelectionSet selectionSet = new SelectionSet(withKey(selections, step.type()));
+			selections = List.of(step.field().transform(b -> b.selectionSet(selectionSet)));
+		}
+		return print(selections);
+	}
+
+	private String print(List<Selection<?>> selections) {
+		OperationDefinition printed = operation.transform(b -> b.selectionSet(new SelectionSet(selections)));
+		// undeclared variables of the other parts fail validation
+		Set<String> used = new LinkedHashSet<>();
+		collectVariables(printed.getSelectionSet(), used);
+		printed.getDirectives().forEach(directive -> collectVariables(directive, used));
+		OperationDefinition pruned = printed.transform(b -> b.variableDefinitions(operation.getVariableDefinitions()
+				.stream().filter(definition -> used.contains(definition.getName())).toList()));
+		return AstPrinter.printAstCompact(Document.newDocument().definition(pruned).build());
+	}
+
+	/** {@code _incrementalKey: id}, or {@code __typename} on types without id to fill empty selections. */
+	private static List<Selection<?>> withKey(List<Selection<?>> selections, GraphQLFieldsContainer type) {
+		if (type.getFieldDefinition("id") == null && !selections.isEmpty())
+			return selections;
+		List<Selection<?>> keyed = new ArrayList<>(selections);
+		keyed.add(key(type));
+		return keyed;
+	}
+
+	private static Field key(GraphQLFieldsContainer type) {
+		return Field.newField(type.getFieldDefinition("id") != null ? "id" : "__typename").alias(KEY).build();
+	}
+
+	private static void collectVariables(Node<?> node, Set<String> names) {
+		if (node instanceof VariableReference reference)
+			names.add(reference.getName());
+		for (Node<?> child : node.getChildren())
+			collectVariables(child, names);
+	}
+
+	private static List<String> getKeys(List<Step> path) {
+		return path.stream().map(step -> getResponseKey(step.field())).toList();
+	}
+
+	private static String getResponseKey(Field field) {
+		return field.getAlias() != null ? field.getAlias() : field.getName();
+	}
+
+	/** @return {@code null} when absent or disabled by its {@code if} argument */
+	private Directive getActive(List<Directive> directives, GraphQLDirective definition) {
+		Directive directive = directives.stream().filter(d -> d.getName().equals(definition.getName())).findFirst()
+				.orElse(null);
+		return directive == null || Boolean.FALSE.equals(getArgument(directive, "if")) ? null : directive;
+	}
+
+	private static List<Directive> without(List<Directive> directives, GraphQLDirective definition) {
+		return directives.stream().filter(d -> !d.getName().equals(definition.getName())).toList();
+	}
+
+	private String getLabel(Directive directive) {
+		return getArgument(directive, "label") instanceof String label ? label : null;
+	}
+
+	private Object getArgument(Directive directive, String name) {
+		Argument argument = directive.getArgument(name);
+		return argument == null ? null : getValue(argument.getValue());
+	}
+
+	private Object getValue(Value<?> value) {
+		if (value instanceof VariableReference reference)
+			return variables.get(reference.getName());
+		if (value instanceof BooleanValue booleanValue)
+			return booleanValue.isValue();
+		if (value instanceof IntValue intValue)
+			return intValue.getValue().intValue();
+		if (value instanceof StringValue stringValue)
+			return stringValue.getValue();
+		return null;
+	}
+
+	private record Step(Field field, GraphQLFieldsContainer type) {
+	}
+
+	/**
+	 * @param initialQuery without the parts, every selection set keeping at least one field
+	 * @param parts        in document order
+	 */
+	public record Plan(String initialQuery, List<Part> parts) {
+	}
+
+	/**
+	 * A deferred fragment, or a streamed field.
+	 *
+	 * @param path         response keys of the fields down to the objects the part belongs to, without list indices
+	 * @param label        {@code null} if none
+	 * @param query        loading the part for every object of the path, {@code null} for streams with an initial
+	 *                     count, loaded by the initial query
+	 * @param field        response key of the streamed field, {@code null} for deferred fragments
+	 * @param initialCount of streamed items sent with the initial payload
+	 */
+	public record Part(List<String> path, String label, String query, String field, int initialCount) {
+	}
+}
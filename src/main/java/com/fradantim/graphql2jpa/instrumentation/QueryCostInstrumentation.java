@@ -0,0 +1,259 @@
+package com.fradantim.graphql2jpa.instrumentation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.graphql.execution.ErrorType;
+import org.springframework.stereotype.Component;
+
+import com.fradantim.graphql2jpa.utils.CollectionStrategy;
+import com.fradantim.graphql2jpa.utils.FetchMode;
+import com.fradantim.graphql2jpa.utils.FetchPlanner;
+
+import graphql.ExecutionResult;
+import graphql.GraphQLError;
+import graphql.GraphqlErrorBuilder;
+import graphql.execution.AbortExecutionException;
+import graphql.execution.ExecutionContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.language.OperationDefinition.Operation;
+import graphql.normalized.ExecutableNormalizedField;
+import graphql.schema.DataFetcher;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLTypeUtil;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.metamodel.EntityType;
+
+/**
+ * Estimates, before execution, the sql cost of every root field from its selection: joins per query, collections
+ * joined, collection depth and rows read (requested list size times {@code collection-fan-out} per collection level).
+ * Root fields over budget are rejected, or downgraded to {@link CollectionStrategy#BATCH} when that brings them under
+ * budget. Costs are reported in the {@code cost} response extension.
+ */
+@Component
+public class QueryCostInstrumentation extends SimplePerformantInstrumentation {
+
+	private static final Logger logger = LoggerFactory.getLogger(QueryCostInstrumentation.class);
+
+	public enum ExceededAction {
+		REJECT, DOWNGRADE
+	}
+
+	private final FetchPlanner fetchPlanner;
+	private final Set<String> entityNames;
+	private final int maxJoins;
+	private final long maxRows;
+	private final int collectionFanOut;
+	private final int defaultListSize;
+	private final ExceededAction exceededAction;
+
+	public QueryCostInstrumentation(FetchPlanner fetchPlanner, EntityManagerFactory entityManagerFactory,
+			@Value("${graphql2jpa.cost.max-joins:10}") int maxJoins,
+			@Value("${graphql2jpa.cost.max-rows:10000}") long maxRows,
+			@Value("${graphql2jpa.cost.collection-fan-out:10}") int collectionFanOut,
+			@Value("${graphql2jpa.page-size.default:20}") int defaultListSize,
+			@Value("${graphql2jpa.cost.on-exceeded:DOWNGRADE}") ExceededAction exceededAction) {
+		this.fetchPlanner = fetchPlanner;
+		this.entityNames = entityManagerFactory.getMetamodel().getEntities().stream().map(EntityType::getName)
+				.collect(Collectors.toSet());
+		this.maxJoins = maxJoins;
+		this.maxRows = maxRows;
+		this.collectionFanOut = collectionFanOut;
+		this.defaultListSize = defaultListSize;
+		this.exceededAction = exceededAction;
+	}
+
+	@Override
+	public InstrumentationState createState(InstrumentationCreateStateParameters parameters) {
+		return new CostState();
+	}
+
+	@Override
+	public ExecutionContext instrumentExecutionContext(ExecutionContext executionContext,
+			InstrumentationExecutionParameters parameters, InstrumentationState state) {
+		if (!(state instanceof CostState costState)
+				|| executionContext.getOperationDefinition().getOperation() != Operation.QUERY)
+			return executionContext;
+
+		GraphQLSchema schema = executionContext.getGraphQLSchema();
+		CollectionStrategy configured = fetchPlanner.getCollectionStrategy();
+		List<GraphQLError> errors = new ArrayList<>();
+		for (ExecutableNormalizedField root : executionContext.getNormalizedQueryTree().get().getTopLevelFields()) {
+			QueryCost cost = estimate(schema, root, configured);
+			if (!cost.isWithin(maxJoins, maxRows) && exceededAction == ExceededAction.DOWNGRADE
+					&& configured == CollectionStrategy.JOIN) {
+				QueryCost batched = estimate(schema, root, CollectionStrategy.BATCH);
+				if (batched.isWithin(maxJoins, maxRows)) {
+					logger.debug("{} downgraded to batched collections, cost {}", root.getResultKey(), cost);
+					costState.downgraded.add(root.getResultKey());
+					cost = batched;
+				}
+			}
+			costState.costs.put(root.getResultKey(), cost);
+
+			if (!cost.isWithin(maxJoins, maxRows))
+				errors.add(GraphqlErrorBuilder.newError().errorType(ErrorType.BAD_REQUEST)
+						.message("Query cost of '%s' exceeds the budget: %s joins / %s rows estimated, %s / %s allowed",
+								root.getResultKey(), cost.joins(), cost.estimatedRows(), maxJoins, maxRows)
+						.path(List.of(root.getResultKey()))
+						.extensions(Map.of("cost", cost.toMap(), "budget", Map.of("joins", maxJoins, "rows", maxRows)))
+						.build());
+		}
+		if (!errors.isEmpty())
+			throw new AbortExecutionException(errors);
+		return executionContext;
+	}
+
+	@Override
+	public DataFetcher<?> instrumentDataFetcher(DataFetcher<?> dataFetcher,
+			InstrumentationFieldFetchParameters parameters, InstrumentationState state) {
+		if (state instanceof CostState costState && parameters.getExecutionStepInfo().getPath().getLevel() == 1
+				&& costState.downgraded.contains(parameters.getExecutionStepInfo().getPath().getSegmentName()))
+			return env -> fetchPlanner.withCollectionStrategy(CollectionStrategy.BATCH, () -> dataFetcher.get(env));
+		return dataFetcher;
+	}
+
+	@Override
+	public CompletableFuture<ExecutionResult> instrumentExecutionResult(ExecutionResult executionResult,
+			InstrumentationExecutionParameters parameters, InstrumentationState state) {
+		if (!(state instanceof CostState costState) || costState.costs.isEmpty())
+			return CompletableFuture.completedFuture(executionResult);
+
+		Map<String, Object> costs = new LinkedHashMap<>();
+		costState.costs.forEach((field, cost) -> costs.put(field, cost.toMap()));
+		return CompletableFuture.completedFuture(
+				ExecutionResult.newExecutionResult().from(executionResult).addExtension("cost", costs).build());
+	}
+
+	/**
+	 * Whether {@code root} is within budget as fetched with the configured collection strategy, for executions that
+	 * do not go through this instrumentation.
+	 */
+	public boolean isWithinBudget(GraphQLSchema schema, ExecutableNormalizedField root) {
+		return estimate(schema, root, fetchPlanner.getCollectionStrategy()).isWithin(maxJoins, maxRows);
+	}
+
+	QueryCost estimate(GraphQLSchema schema, ExecutableNormalizedField root, CollectionStrategy collectionStrategy) {
+		List<Query> queries = new ArrayList<>();
+		queries.add(new Query(0, false));
+		int collectionDepth = walk(schema, root, queries.get(0), 0, collectionStrategy, queries);
+
+		long size = getListSize(schema, root);
+		int joins = 0;
+		int collections = 0;
+		long rows = 0;
+		for (Query query : queries) {
+			joins = Math.max(joins, query.joins);
+			collections += query.collections + (query.loadsCollection ? 1 : 0);
+			// every collection joined in the same query multiplies its rows, siblings included
+			rows += size * (long) Math.pow(collectionFanOut, query.depth + query.collections);
+		}
+		return new QueryCost(collectionStrategy, queries.size(), joins, collections, collectionDepth, rows);
+	}
+
+	/** @return collection depth reached under {@code field} */
+	private int walk(GraphQLSchema schema, ExecutableNormalizedField field, Query query, int level,
+			CollectionStrategy collectionStrategy, List<Query> queries) {
+		boolean parentIsEntity = entityNames.contains(GraphQLTypeUtil.unwrapAll(field.getType(schema)).getName());
+		int depth = level;
+		for (ExecutableNormalizedField child : field.getChildren()) {
+			if (child.getChildren().isEmpty())
+				continue;
+			if (!parentIsEntity) {
+				// wrapper types (connections, edges) add no join
+				depth = Math.max(depth, walk(schema, child, query, level, collectionStrategy, queries));
+				continue;
+			}
+
+			boolean collection = GraphQLTypeUtil.isList(GraphQLTypeUtil.unwrapNonNull(child.getType(schema)));
+			Query childQuery = query;
+			if (splits(collection, collectionStrategy)) {
+				childQuery = new Query(query.depth + (collection ? 1 : 0), collection);
+				childQuery.joins = 1;
+				queries.add(childQuery);
+			} else {
+				query.joins++;
+				if (collection)
+					query.collections++;
+			}
+			depth = Math.max(depth,
+					walk(schema, child, childQuery, level + (collection ? 1 : 0), collectionStrategy, queries));
+		}
+		return depth;
+	}
+
+	/* whether the association is loaded by a query of its own */
+	private boolean splits(boolean collection, CollectionStrategy collectionStrategy) {
+		if (fetchPlanner.getFetchMode() == FetchMode.DATA_LOADER)
+			return true;
+		return collection && collectionStrategy == CollectionStrategy.BATCH;
+	}
+
+	private long getListSize(GraphQLSchema schema, ExecutableNormalizedField root) {
+		Map<String, Object> arguments = root.getResolvedArguments();
+		if (arguments.get("ids") instanceof Collection<?> ids)
+			return ids.size();
+		if (arguments.get("first") instanceof Number first)
+			return first.longValue();
+		if (arguments.containsKey("first")
+				|| GraphQLTypeUtil.isList(GraphQLTypeUtil.unwrapNonNull(root.getType(schema))))
+			return defaultListSize;
+		return 1;
+	}
+
+	/** Per operation costs and the root fields downgraded to batched collections. */
+	private static class CostState implements InstrumentationState {
+		private final Map<String, QueryCost> costs = new LinkedHashMap<>();
+		private final Set<String> downgraded = new HashSet<>();
+	}
+
+	/* one sql query of the plan, depth being the collection levels above the entities it loads */
+	private static class Query {
+		private final int depth;
+		private final boolean loadsCollection;
+		private int joins;
+		private int collections;
+
+		private Query(int depth, boolean loadsCollection) {
+			this.depth = depth;
+			this.loadsCollection = loadsCollection;
+		}
+	}
+
+	/**
+	 * @param joins         joins of the biggest query
+	 * @param estimatedRows rows read by all queries
+	 */
+	record QueryCost(CollectionStrategy collectionStrategy, int queries, int joins, int collections,
+			int collectionDepth, long estimatedRows) {
+
+		boolean isWithin(int maxJoins, long maxRows) {
+			return joins <= maxJoins && estimatedRows <= maxRows;
+		}
+
+		Map<String, Object> toMap() {
+			Map<String, Object> map = new LinkedHashMap<>();
+			map.put("collectionStrategy", collectionStrategy.name());
+			map.put("queries", queries);
+			map.put("joins", joins);
+			map.put("collections", collections);
+			map.put("collectionDepth", collectionDepth);
+			map.put("estimatedRows", estimatedRows);
+			return map;
+		}
+	}
+}
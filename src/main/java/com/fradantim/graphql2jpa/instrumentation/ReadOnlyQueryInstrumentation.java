@@ -0,0 +1,66 @@
+package com.fradantim.graphql2jpa.instrumentation;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import graphql.ExecutionResult;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.language.OperationDefinition.Operation;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Executes query operations in a read-only session: entities are loaded without dirty checking snapshots, nothing is
+ * flushed, and the persistence context is cleared as soon as the response data is complete instead of when the
+ * request ends. Applies to the session bound to the request (open entity manager in view); the repositories'
+ * {@code @Transactional(readOnly = true)} also marks their jdbc connections read-only.
+ */
+@Component
+public class ReadOnlyQueryInstrumentation extends SimplePerformantInstrumentation {
+
+	private static final Logger logger = LoggerFactory.getLogger(ReadOnlyQueryInstrumentation.class);
+
+	private final EntityManagerFactory entityManagerFactory;
+	private final boolean enabled;
+
+	public ReadOnlyQueryInstrumentation(EntityManagerFactory entityManagerFactory,
+			@Value("${graphql2jpa.read-only-queries:true}") boolean enabled) {
+		this.entityManagerFactory = entityManagerFactory;
+		this.enabled = enabled;
+	}
+
+	@Override
+	public InstrumentationContext<ExecutionResult> beginExecuteOperation(
+			InstrumentationExecuteOperationParameters parameters, InstrumentationState state) {
+		Object holder = TransactionSynchronizationManager.getResource(entityManagerFactory);
+		if (!enabled || parameters.getExecutionContext().getOperationDefinition().getOperation() != Operation.QUERY
+				|| !(holder instanceof EntityManagerHolder entityManagerHolder))
+			return super.beginExecuteOperation(parameters, state);
+
+		Session session = entityManagerHolder.getEntityManager().unwrap(Session.class);
+		if (session.isDirty()) {
+			logger.debug("session has pending changes, query executed in a regular session");
+			return super.beginExecuteOperation(parameters, state);
+		}
+
+		boolean defaultReadOnly = session.isDefaultReadOnly();
+		FlushMode flushMode = session.getHibernateFlushMode();
+		session.setDefaultReadOnly(true);
+		session.setHibernateFlushMode(FlushMode.MANUAL);
+		return SimpleInstrumentationContext.whenCompleted((result, t) -> {
+			// the response data no longer references entities
+			session.clear();
+			session.setDefaultReadOnly(defaultReadOnly);
+			session.setHibernateFlushMode(flushMode);
+		});
+	}
+}
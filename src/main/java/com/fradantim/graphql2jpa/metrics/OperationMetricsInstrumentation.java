@@ -0,0 +1,167 @@
+package com.fradantim.graphql2jpa.metrics;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fradantim.graphql2jpa.metrics.OperationStatistics.Counters;
+
+import graphql.ExecutionResult;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldCompleteParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.schema.DataFetcher;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Publishes the {@link OperationStatistics} of every graphql operation, as {@code graphql2jpa.operation.*} meters
+ * tagged by operation name and {@code graphql2jpa.field.*} meters also tagged by root field. Operation names are
+ * chosen by clients: only the first {@code maxOperations} distinct ones get their own tag, later ones are published as
+ * {@value #OTHER_OPERATION}. Fields are tagged by their schema name, never by their alias. Query results count the
+ * entities or tuples jpql queries return, not the jdbc rows read for them.
+ */
+@Component
+public class OperationMetricsInstrumentation extends SimplePerformantInstrumentation {
+
+	static final String OTHER_OPERATION = "other";
+
+	private final MeterRegistry meterRegistry;
+	private final int maxOperations;
+	private final Set<String> operations = ConcurrentHashMap.newKeySet();
+
+	public OperationMetricsInstrumentation(MeterRegistry meterRegistry,
+			@Value("${graphql2jpa.metrics.max-operations:100}") int maxOperations) {
+		this.meterRegistry = meterRegistry;
+		this.maxOperations = maxOperations;
+	}
+
+	@Override
+	public InstrumentationState createState(InstrumentationCreateStateParameters parameters) {
+		return new MetricsState();
+	}
+
+	@Override
+	public InstrumentationContext<ExecutionResult> beginExecution(InstrumentationExecutionParameters parameters,
+			InstrumentationState state) {
+		if (!(state instanceof MetricsState metricsState))
+			return super.beginExecution(parameters, state);
+
+		long start = System.nanoTime();
+		return SimpleInstrumentationContext.whenCompleted((result, t) -> {
+			Tags tags = Tags.of("operation", metricsState.operation);
+			publish("graphql2jpa.operation", tags, metricsState.statistics.getTotal());
+			timer("graphql2jpa.operation.duration", tags).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			metricsState.statistics.getFields()
+					.forEach((field, counters) -> publish("graphql2jpa.field", tags.and("field", field), counters));
+		});
+	}
+
+	@Override
+	public InstrumentationContext<ExecutionResult> beginExecuteOperation(
+			InstrumentationExecuteOperationParameters parameters, InstrumentationState state) {
+		if (!(state instanceof MetricsState metricsState))
+			return super.beginExecuteOperation(parameters, state);
+
+		String name = parameters.getExecutionContext().getOperationDefinition().getName();
+		if (name != null)
+			metricsState.operation = getOperationTag(name);
+		// bound while the execution strategy runs in this thread, dispatched once it returns
+		Runnable restore = metricsState.statistics.bind();
+		return new InstrumentationContext<>() {
+			@Override
+			public void onDispatched(CompletableFuture<ExecutionResult> result) {
+				restore.run();
+			}
+
+			@Override
+			public void onCompleted(ExecutionResult result, Throwable t) {
+			}
+		};
+	}
+
+	@Override
+	public DataFetcher<?> instrumentDataFetcher(DataFetcher<?> dataFetcher,
+			InstrumentationFieldFetchParameters parameters, InstrumentationState state) {
+		if (!(state instanceof MetricsState metricsState)
+				|| parameters.getExecutionStepInfo().getPath().getLevel() != 1)
+			return dataFetcher;
+
+		String field = parameters.getExecutionStepInfo().getFieldDefinition().getName();
+		// bound again, the fetcher may run in another thread
+		return env -> {
+			Runnable restore = metricsState.statistics.bindField(field);
+			try {
+				return dataFetcher.get(env);
+			} finally {
+				restore.run();
+			}
+		};
+	}
+
+	@Override
+	public InstrumentationContext<ExecutionResult> beginFieldComplete(InstrumentationFieldCompleteParameters parameters,
+			InstrumentationState state) {
+		if (!(state instanceof MetricsState metricsState)
+				|| parameters.getExecutionStepInfo().getPath().getLevel() != 1)
+			return super.beginFieldComplete(parameters, state);
+
+		// turning the fetched entities into the result tree, lazy loads and batch loads included
+		Counters field = metricsState.statistics
+				.getField(parameters.getExecutionStepInfo().getFieldDefinition().getName());
+		long start = System.nanoTime();
+		return SimpleInstrumentationContext.whenCompleted((result, t) -> {
+			long nanos = System.nanoTime() - start;
+			field.serializationNanos.add(nanos);
+			metricsState.statistics.getTotal().serializationNanos.add(nanos);
+		});
+	}
+
+	/* a racing caller may push the set slightly past the limit, which still bounds it */
+	private String getOperationTag(String name) {
+		if (operations.contains(name))
+			return name;
+		if (operations.size() >= maxOperations)
+			return OTHER_OPERATION;
+		operations.add(name);
+		return name;
+	}
+
+	private void publish(String prefix, Tags tags, Counters counters) {
+		summary(prefix + ".sql.statements", tags).record(counters.statements.sum());
+		summary(prefix + ".query.results", tags).record(counters.queryResults.sum());
+		summary(prefix + ".collections", tags).record(counters.collections.sum());
+		summary(prefix + ".joins", tags).record(counters.joins.sum());
+		counters.entities.forEach((entityName, count) -> summary(prefix + ".entities",
+				tags.and("entity", entityName.substring(entityName.lastIndexOf('.') + 1))).record(count.sum()));
+		timer(prefix + ".translation", tags).record(Duration.ofNanos(counters.translationNanos.sum()));
+		timer(prefix + ".db", tags).record(Duration.ofNanos(counters.dbNanos.sum()));
+		timer(prefix + ".serialization", tags).record(Duration.ofNanos(counters.serializationNanos.sum()));
+	}
+
+	private DistributionSummary summary(String name, Tags tags) {
+		return DistributionSummary.builder(name).tags(tags).register(meterRegistry);
+	}
+
+	private Timer timer(String name, Tags tags) {
+		return Timer.builder(name).tags(tags).publishPercentileHistogram().register(meterRegistry);
+	}
+
+	private static class MetricsState implements InstrumentationState {
+		private final OperationStatistics statistics = new OperationStatistics();
+		private String operation = "anonymous";
+	}
+}
@@ -0,0 +1,138 @@
+package com.fradantim.graphql2jpa.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * What the graphql to jpa layer did for one graphql operation, in total and per root field (work done while its data
+ * fetcher runs). Bound to the threads working on the operation, the static {@code record*} methods are no-ops when
+ * there is none; tasks handed to other threads carry the binding along with {@link #propagate}.
+ */
+public class OperationStatistics {
+
+	private static final ThreadLocal<Binding> current = new ThreadLocal<>();
+
+	private final Counters total = new Counters();
+	private final Map<String, Counters> fields = new ConcurrentHashMap<>();
+
+	/** The statistics and root field counters, if any, work on a thread is attributed to. */
+	private record Binding(OperationStatistics statistics, Counters field) {
+	}
+
+	public static OperationStatistics current() {
+		Binding binding = current.get();
+		return binding == null ? null : binding.statistics();
+	}
+
+	/** @return {@code task} running with the statistics bound to the calling thread, on whatever thread runs it */
+	public static <T> Supplier<T> propagate(Supplier<T> task) {
+		Binding binding = current.get();
+		if (binding == null)
+			return task;
+		return () -> call(binding, task);
+	}
+
+	/**
+	 * Binds the statistics, work on the calling thread attributed to the operation as a whole.
+	 *
+	 * @return restores the previous binding, to run on the same thread
+	 */
+	Runnable bind() {
+		return bind(new Binding(this, null));
+	}
+
+	/** As {@link #bind()}, work also attributed to root field {@code name}. */
+	Runnable bindField(String name) {
+		return bind(new Binding(this, getField(name)));
+	}
+
+	private static Runnable bind(Binding binding) {
+		Binding previous = current.get();
+		current.set(binding);
+		return () -> {
+			if (previous == null)
+				current.remove();
+			else
+				current.set(previous);
+		};
+	}
+
+	private static <T> T call(Binding binding, Supplier<T> task) {
+		Runnable restore = bind(binding);
+		try {
+			return task.get();
+		} finally {
+			restore.run();
+		}
+	}
+
+	Counters getTotal() {
+		return total;
+	}
+
+	Map<String, Counters> getFields() {
+		return fields;
+	}
+
+	Counters getField(String name) {
+		return fields.computeIfAbsent(name, k -> new Counters());
+	}
+
+	public static void recordStatement() {
+		record(c -> c.statements.increment());
+	}
+
+	/** @param results of a jpql query, entities or tuples, not the jdbc rows read for them */
+	public static void recordQueryResults(int results) {
+		record(c -> c.queryResults.add(results));
+	}
+
+	public static void recordEntity(String entityName) {
+		record(c -> c.entities.computeIfAbsent(entityName, k -> new LongAdder()).increment());
+	}
+
+	public static void recordCollection() {
+		record(c -> c.collections.increment());
+	}
+
+	public static void recordTranslation(long nanos, int joins) {
+		record(c -> {
+			c.translationNanos.add(nanos);
+			c.joins.add(joins);
+		});
+	}
+
+	public static <T> T timeDb(Supplier<T> query) {
+		long start = System.nanoTime();
+		try {
+			return query.get();
+		} finally {
+			long nanos = System.nanoTime() - start;
+			record(c -> c.dbNanos.add(nanos));
+		}
+	}
+
+	private static void record(Consumer<Counters> update) {
+		Binding binding = current.get();
+		if (binding == null)
+			return;
+		update.accept(binding.statistics().total);
+		if (binding.field() != null)
+			update.accept(binding.field());
+	}
+
+	/** Updated concurrently by the threads working on the operation. */
+	static class Counters {
+		final LongAdder statements = new LongAdder();
+		final LongAdder queryResults = new LongAdder();
+		final LongAdder collections = new LongAdder();
+		final LongAdder joins = new LongAdder();
+		final LongAdder translationNanos = new LongAdder();
+		final LongAdder dbNanos = new LongAdder();
+		final LongAdder serializationNanos = new LongAdder();
+		final Map<String, LongAdder> entities = new ConcurrentHashMap<>();
+	}
+}
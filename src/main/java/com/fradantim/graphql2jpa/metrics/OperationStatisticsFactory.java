@@ -0,0 +1,54 @@
+package com.fradantim.graphql2jpa.metrics;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.StatisticsImpl;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.hibernate.stat.spi.StatisticsImplementor;
+
+/**
+ * Hibernate statistics that also feed the {@link OperationStatistics} bound to the current thread. Registered with
+ * {@code hibernate.stats.factory}, needs {@code hibernate.generate_statistics=true}.
+ */
+public class OperationStatisticsFactory implements StatisticsFactory {
+
+	@Override
+	public StatisticsImplementor buildStatistics(SessionFactoryImplementor sessionFactory) {
+		return new StatisticsImpl(sessionFactory) {
+			@Override
+			public void prepareStatement() {
+				super.prepareStatement();
+				OperationStatistics.recordStatement();
+			}
+
+			@Override
+			public void queryExecuted(String hql, int rows, long time) {
+				super.queryExecuted(hql, rows, time);
+				OperationStatistics.recordQueryResults(rows);
+			}
+
+			@Override
+			public void loadEntity(String entityName) {
+				super.loadEntity(entityName);
+				OperationStatistics.recordEntity(entityName);
+			}
+
+			@Override
+			public void fetchEntity(String entityName) {
+				super.fetchEntity(entityName);
+				OperationStatistics.recordEntity(entityName);
+			}
+
+			@Override
+			public void loadCollection(String role) {
+				super.loadCollection(role);
+				OperationStatistics.recordCollection();
+			}
+
+			@Override
+			public void fetchCollection(String role) {
+				super.fetchCollection(role);
+				OperationStatistics.recordCollection();
+			}
+		};
+	}
+}
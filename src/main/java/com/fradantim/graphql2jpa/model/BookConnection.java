@@ -0,0 +1,7 @@
+package com.fradantim.graphql2jpa.model;
+
+import java.util.List;
+
+/** Relay style connection of books. */
+public record BookConnection(List<BookEdge> edges, PageInfo pageInfo) {
+}
@@ -0,0 +1,6 @@
+package com.fradantim.graphql2jpa.model;
+
+import com.fradantim.graphql2jpa.entity.Book;
+
+public record BookEdge(String cursor, Book node) {
+}
@@ -0,0 +1,6 @@
+package com.fradantim.graphql2jpa.model;
+
+/** Books matching every filter set, see {@link com.fradantim.graphql2jpa.utils.EntityFilterTranslator}. */
+public record BookFilter(ValueFilter id, ValueFilter name, ValueFilter isbn, PersonFilter author, QuoteFilter quotes,
+		PersonFilter reviewers) {
+}
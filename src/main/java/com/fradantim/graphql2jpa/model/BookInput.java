@@ -0,0 +1,7 @@
+package com.fradantim.graphql2jpa.model;
+
+import java.util.List;
+
+/** New book, associations given by id. */
+public record BookInput(Integer id, String name, String isbn, Integer authorId, List<Integer> reviewerIds) {
+}
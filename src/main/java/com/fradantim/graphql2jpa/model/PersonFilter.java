@@ -0,0 +1,4 @@
+package com.fradantim.graphql2jpa.model;
+
+public record PersonFilter(ValueFilter id, ValueFilter name, CountryFilter country) {
+}
@@ -0,0 +1,4 @@
+package com.fradantim.graphql2jpa.model;
+
+public record QuoteFilter(ValueFilter id, ValueFilter text) {
+}
@@ -0,0 +1,4 @@
+package com.fradantim.graphql2jpa.model;
+
+public record QuoteInput(Integer id, Integer bookId, String text) {
+}
@@ -0,0 +1,13 @@
+package com.fradantim.graphql2jpa.model;
+
+import java.util.List;
+
+/**
+ * Predicates on an entity attribute, values given as strings and converted to the attribute type. Every predicate
+ * set must match.
+ *
+ * @param anyOf      matching any of the values
+ * @param startsWith prefix of string attributes
+ */
+public record ValueFilter(String eq, List<String> anyOf, String startsWith) {
+}
@@ -0,0 +1,150 @@
+package com.fradantim.graphql2jpa.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.hibernate.Cache;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fradantim.graphql2jpa.metrics.OperationStatistics;
+import com.fradantim.graphql2jpa.utils.EntityMetadata;
+import com.fradantim.graphql2jpa.utils.EntityMetadata.AttributeMetadata;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceUnitUtil;
+
+/**
+ * Loads one association of many entities at once, for batch loaders. Associations already loaded on an entity are
+ * returned as they are, as well as those held in the second-level cache, the rest with a single
+ * {@code where p.id in :ids} query. Collection sizes are counted the same way, grouped by owner, without loading the
+ * collections.
+ */
+@Repository
+@Transactional(readOnly = true)
+public class AssociationRepository {
+
+	private final EntityManager entityManager;
+
+	public AssociationRepository(EntityManager entityManager) {
+		this.entityManager = entityManager;
+	}
+
+	public <S, T> Map<S, T> findToOne(Class<S> type, String association, List<S> sources, Function<S, T> getter) {
+		Map<S, T> result = new IdentityHashMap<>();
+		Map<Object, List<S>> pending = collectPending(type, association, sources, getter, result);
+		if (!pending.isEmpty())
+			for (Object[] row : query(type, association, pending.keySet()))
+				pending.get(row[0]).forEach(source -> result.put(source, type(row[1])));
+		return result;
+	}
+
+	public <S, T> Map<S, Set<T>> findToMany(Class<S> type, String association, List<S> sources,
+			Function<S, Set<T>> getter) {
+		Map<S, Set<T>> result = new IdentityHashMap<>();
+		Map<Object, List<S>> pending = collectPending(type, association, sources, getter, result);
+		if (!pending.isEmpty()) {
+			Map<Object, Set<T>> byParentId = new HashMap<>();
+			for (Object[] row : query(type, association, pending.keySet()))
+				byParentId.computeIfAbsent(row[0], k -> new HashSet<>()).add(type(row[1]));
+			pending.forEach((id, pendingSources) -> pendingSources
+					.forEach(source -> result.put(source, byParentId.getOrDefault(id, new HashSet<>()))));
+		}
+		return result;
+	}
+
+	/** Size of the {@code association} collection of every source, from the collection only if already loaded. */
+	public <S> Map<S, Long> countToMany(Class<S> type, String association, List<S> sources) {
+		PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+		AttributeMetadata attribute = EntityMetadata.of(entityManager.getMetamodel(), type).getAttribute(association);
+		Map<S, Long> result = new IdentityHashMap<>();
+		Map<Object, List<S>> pending = new LinkedHashMap<>();
+		for (S source : sources) {
+			// projected entities leave unselected collections null
+			if (persistenceUnitUtil.isLoaded(source, association)
+					&& attribute.get(source) instanceof Collection<?> loaded)
+				result.put(source, (long) loaded.size());
+			else
+				pending.computeIfAbsent(persistenceUnitUtil.getIdentifier(source), k -> new ArrayList<>())
+						.add(source);
+		}
+		if (!pending.isEmpty()) {
+			Map<Object, Long> counts = new HashMap<>();
+			for (Object[] row : count(type, association, pending.keySet()))
+				counts.put(row[0], (Long) row[1]);
+			pending.forEach((id, pendingSources) -> pendingSources
+					.forEach(source -> result.put(source, counts.getOrDefault(id, 0L))));
+		}
+		return result;
+	}
+
+	/* puts already loaded values in result, returns the rest grouped by id */
+	private <S, T> Map<Object, List<S>> collectPending(Class<S> type, String association, List<S> sources,
+			Function<S, T> getter, Map<S, T> result) {
+		PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+		Cache cache = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache();
+		AttributeMetadata attribute = EntityMetadata.of(entityManager.getMetamodel(), type).getAttribute(association);
+		Map<Object, List<S>> pending = new LinkedHashMap<>();
+		for (S source : sources) {
+			if (persistenceUnitUtil.isLoaded(source, association))
+				result.put(source, getter.apply(source));
+			// detached sources (see IdListLoader) can not initialize their proxies
+			else if (entityManager.contains(source) && isCached(cache, persistenceUnitUtil, type, attribute, source))
+				result.put(source, initialize(getter.apply(source)));
+			else
+				pending.computeIfAbsent(persistenceUnitUtil.getIdentifier(source), k -> new ArrayList<>())
+						.add(source);
+		}
+		return pending;
+	}
+
+	private static boolean isCached(Cache cache, PersistenceUnitUtil persistenceUnitUtil, Class<?> type,
+			AttributeMetadata attribute, Object source) {
+		if (attribute.isCollection())
+			return cache.containsCollection(type.getName() + "." + attribute.getName(),
+					persistenceUnitUtil.getIdentifier(source));
+		try {
+			Object reference = attribute.getField().get(Hibernate.unproxy(source));
+			return reference != null
+					&& cache.containsEntity(attribute.getTargetType(), persistenceUnitUtil.getIdentifier(reference));
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("Could not read " + attribute.getField(), e);
+		}
+	}
+
+	private static <T> T initialize(T value) {
+		Hibernate.initialize(value);
+		return value;
+	}
+
+	private List<Object[]> query(Class<?> type, String association, Set<Object> ids) {
+		EntityMetadata metadata = EntityMetadata.of(entityManager.getMetamodel(), type);
+		String id = metadata.getId().getName();
+		return OperationStatistics.timeDb(() -> entityManager.createQuery("select p." + id + ", a from "
+				+ metadata.getEntityName() + " p join p." + association + " a where p." + id + " in :ids",
+				Object[].class).setParameter("ids", ids).getResultList());
+	}
+
+	private List<Object[]> count(Class<?> type, String association, Set<Object> ids) {
+		EntityMetadata metadata = EntityMetadata.of(entityManager.getMetamodel(), type);
+		String id = metadata.getId().getName();
+		return OperationStatistics.timeDb(() -> entityManager.createQuery("select p." + id + ", count(*) from "
+				+ metadata.getEntityName() + " p join p." + association + " a where p." + id + " in :ids group by p."
+				+ id, Object[].class).setParameter("ids", ids).getResultList());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T type(Object value) {
+		return (T) value;
+	}
+}
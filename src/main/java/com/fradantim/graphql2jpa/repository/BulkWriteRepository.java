@@ -0,0 +1,83 @@
+package com.fradantim.graphql2jpa.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fradantim.graphql2jpa.utils.EntityMetadata;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Inserts of many new entities at once. Entities are persisted, not merged, so their assigned ids are not looked up
+ * first, and the entities they reference are loaded once with a single query: the statements sent are that query and
+ * the inserts, grouped by table ({@code hibernate.order_inserts}) into jdbc batches of
+ * {@code graphql2jpa.mutation.batch-size}. The inserted entities are detached after every batch, so the persistence
+ * context does not grow with the input.
+ */
+@Repository
+public class BulkWriteRepository {
+
+	private final EntityManager entityManager;
+	private final int batchSize;
+
+	public BulkWriteRepository(EntityManager entityManager,
+			@Value("${graphql2jpa.mutation.batch-size:500}") int batchSize) {
+		this.entityManager = entityManager;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * The schema has no foreign keys: references are loaded with a single {@code in} query before being set, those
+	 * missing from the result do not exist. Loaded entities stay in the persistence context across batches, so setting
+	 * them on the inserted ones costs no further query.
+	 *
+	 * @return the entities of {@code type} found, by id
+	 */
+	public <T> Map<Object, T> findAllById(Class<T> type, Collection<?> ids) {
+		Set<Object> distinct = new HashSet<>(ids);
+		distinct.remove(null);
+		if (distinct.isEmpty())
+			return Map.of();
+
+		EntityMetadata metadata = EntityMetadata.of(entityManager.getMetamodel(), type);
+		String id = metadata.getId().getName();
+		Map<Object, T> found = new HashMap<>();
+		entityManager
+				.createQuery("select e from " + metadata.getEntityName() + " e where e." + id + " in :ids", type)
+				.setParameter("ids", distinct).getResultList()
+				.forEach(entity -> found.put(metadata.getId().get(entity), entity));
+		return found;
+	}
+
+	/**
+	 * Inserted on commit. Each batch is flushed, then its entities detached: they are returned as they were persisted,
+	 * with the associations they were given, without being read back.
+	 */
+	@Transactional
+	public <T> List<T> insertAll(List<T> entities) {
+		List<T> batch = new ArrayList<>(batchSize);
+		for (T entity : entities) {
+			entityManager.persist(entity);
+			batch.add(entity);
+			if (batch.size() == batchSize)
+				flush(batch);
+		}
+		flush(batch);
+		return entities;
+	}
+
+	private void flush(List<?> batch) {
+		entityManager.flush();
+		batch.forEach(entityManager::detach);
+		batch.clear();
+	}
+}
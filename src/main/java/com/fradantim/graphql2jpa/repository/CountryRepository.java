@@ -0,0 +1,6 @@
+package com.fradantim.graphql2jpa.repository;
+
+import com.fradantim.graphql2jpa.entity.Country;
+
+public interface CountryRepository extends SelectionAwareRepository<Country, Integer> {
+}
@@ -0,0 +1,117 @@
+package com.fradantim.graphql2jpa.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.hibernate.Session;
+
+import com.fradantim.graphql2jpa.metrics.OperationStatistics;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Loads entities by large id lists: ids are deduplicated and split into chunks of at most {@code chunkSize}, each
+ * chunk a query of its own (hibernate pads {@code in} lists to powers of two, see
+ * {@code hibernate.query.in_clause_parameter_padding}, so chunks share a few sql statements). With
+ * {@code parallelism > 1} chunks run concurrently, each in a read-only entity manager of its own, whose entities are
+ * returned detached; their sql is attributed to the operation metrics of the caller. Results follow the requested ids
+ * order.
+ */
+public class IdListLoader implements AutoCloseable {
+
+	private final EntityManagerFactory entityManagerFactory;
+	private final int chunkSize;
+	private final int parallelism;
+	private final ExecutorService executor;
+
+	public IdListLoader(EntityManagerFactory entityManagerFactory, int chunkSize, int parallelism) {
+		if (chunkSize < 1 || parallelism < 1)
+			throw new IllegalArgumentException("chunk size and parallelism must be positive");
+		this.entityManagerFactory = entityManagerFactory;
+		this.chunkSize = chunkSize;
+		this.parallelism = parallelism;
+		AtomicInteger threads = new AtomicInteger();
+		this.executor = parallelism == 1 ? null : Executors.newFixedThreadPool(parallelism, task -> {
+			Thread thread = new Thread(task, "id-list-loader-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * @param loader loads the entities of one chunk of distinct ids with the given entity manager
+	 * @param idGetter id of a loaded entity
+	 * @return one entity per requested id found, in the requested order, repeated for repeated ids
+	 */
+	public <T, ID> List<T> load(EntityManager entityManager, Collection<ID> ids,
+			BiFunction<EntityManager, List<ID>, List<T>> loader, Function<T, Object> idGetter) {
+		List<ID> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+		distinct.removeIf(Objects::isNull);
+		if (distinct.isEmpty())
+			return List.of();
+
+		List<List<ID>> chunks = new ArrayList<>();
+		for (int from = 0; from < distinct.size(); from += chunkSize)
+			chunks.add(distinct.subList(from, Math.min(from + chunkSize, distinct.size())));
+
+		List<T> loaded;
+		if (executor == null || chunks.size() == 1) {
+			loaded = new ArrayList<>();
+			for (List<ID> chunk : chunks)
+				loaded.addAll(loader.apply(entityManager, chunk));
+		} else {
+			loaded = loadInParallel(chunks, loader);
+		}
+
+		Map<Object, T> byId = loaded.stream().collect(Collectors.toMap(idGetter, Function.identity(), (a, b) -> a));
+		return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+	}
+
+	private <T, ID> List<T> loadInParallel(List<List<ID>> chunks,
+			BiFunction<EntityManager, List<ID>, List<T>> loader) {
+		List<CompletableFuture<List<T>>> futures = chunks.stream()
+				.map(chunk -> CompletableFuture.supplyAsync(OperationStatistics.propagate(() -> {
+					EntityManager chunkEntityManager = entityManagerFactory.createEntityManager();
+					try {
+						chunkEntityManager.unwrap(Session.class).setDefaultReadOnly(true);
+						return loader.apply(chunkEntityManager, chunk);
+					} finally {
+						chunkEntityManager.close();
+					}
+				}), executor)).toList();
+		try {
+			return futures.stream().flatMap(future -> future.join().stream()).toList();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause)
+				throw cause;
+			throw e;
+		}
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	@Override
+	public void close() {
+		if (executor != null)
+			executor.shutdown();
+	}
+}
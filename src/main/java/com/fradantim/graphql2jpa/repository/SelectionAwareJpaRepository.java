@@ -0,0 +1,153 @@
+package com.fradantim.graphql2jpa.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.hibernate.Session;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.fradantim.graphql2jpa.utils.EntityFilterTranslator;
+import com.fradantim.graphql2jpa.utils.EntityFilterTranslator.Predicate;
+import com.fradantim.graphql2jpa.utils.EntityMetadata;
+import com.fradantim.graphql2jpa.utils.FetchPlan;
+import com.fradantim.graphql2jpa.utils.FetchPlanner;
+
+import graphql.schema.DataFetchingFieldSelectionSet;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+/**
+ * Base class of every repository, see {@link SelectionAwareRepositoryFactoryBean}. Batched collections need a single
+ * persistence context, hence the transaction around each finder.
+ * <p>
+ * With a {@link SingleFlight}, concurrent finders of the same ids and fetch plan share one query. It runs in a
+ * read-only session of its own, on the connection of the caller running it, closed once loaded: every caller gets
+ * the same detached entities, fully loaded by the plan, whose remaining associations they load on their own (see
+ * {@link AssociationRepository}), and no persistence context is shared between threads. Only finders running in
+ * read-only transactions take part, so none ever sees or hands over uncommitted writes.
+ */
+@Transactional(readOnly = true)
+public class SelectionAwareJpaRepository<T, ID> extends SimpleJpaRepository<T, ID>
+		implements SelectionAwareRepository<T, ID> {
+
+	private final EntityManager entityManager;
+	private final FetchPlanner fetchPlanner;
+	private final IdListLoader idListLoader;
+	private final SingleFlight singleFlight;
+	private final Class<T> domainClass;
+	private final Class<ID> idClass;
+	private final EntityMetadata metadata;
+	private final String idSelect;
+
+	public SelectionAwareJpaRepository(JpaEntityInformation<T, ID> entityInformation, EntityManager entityManager,
+			FetchPlanner fetchPlanner, IdListLoader idListLoader, SingleFlight singleFlight) {
+		super(entityInformation, entityManager);
+		this.entityManager = entityManager;
+		this.fetchPlanner = fetchPlanner;
+		this.idListLoader = idListLoader;
+		this.singleFlight = singleFlight;
+		this.domainClass = entityInformation.getJavaType();
+		this.idClass = entityInformation.getIdType();
+		this.metadata = EntityMetadata.of(entityManager.getMetamodel(), domainClass);
+
+		String alias = metadata.getAlias();
+		this.idSelect = "select " + alias + "." + metadata.getId().getName() + " from " + metadata.getEntityName() + " "
+				+ alias;
+	}
+
+	@Override
+	public Optional<T> findById(ID id, DataFetchingFieldSelectionSet dataSelectionSet) {
+		if (id == null)
+			return Optional.empty();
+		String key = fetchPlanner.getKey(domainClass, dataSelectionSet);
+		FetchPlan<T> plan = fetchPlanner.getPlan(entityManager, domainClass, dataSelectionSet, key);
+		String where = " where " + getRootId(plan) + " = :id";
+		return coalesce(isCoalesced(), key, List.of(id), entityManager,
+				flightEntityManager -> plan.getResultList(flightEntityManager, where, Map.of("id", id))).stream()
+				.findFirst();
+	}
+
+	@Override
+	public List<T> findByIdIn(Collection<ID> ids, DataFetchingFieldSelectionSet dataSelectionSet) {
+		String key = fetchPlanner.getKey(domainClass, dataSelectionSet);
+		FetchPlan<T> plan = fetchPlanner.getPlan(entityManager, domainClass, dataSelectionSet, key);
+		String where = " where " + getRootId(plan) + " in :ids";
+		// decided here, chunks may be loaded by other threads
+		boolean coalesced = isCoalesced();
+		return idListLoader.load(entityManager, ids,
+				(chunkEntityManager, chunk) -> coalesce(coalesced, key, chunk, chunkEntityManager,
+						flightEntityManager -> plan.getResultList(flightEntityManager, where, Map.of("ids", chunk))),
+				entity -> metadata.getId().get(entity));
+	}
+
+	@Override
+	public List<T> findPage(ID afterId, int size, DataFetchingFieldSelectionSet dataSelectionSet) {
+		return findPage(afterId, size, null, dataSelectionSet);
+	}
+
+	@Override
+	public List<T> findPage(ID afterId, int size, Record filter, DataFetchingFieldSelectionSet dataSelectionSet) {
+		String alias = metadata.getAlias();
+		String id = alias + "." + metadata.getId().getName();
+		Predicate predicate = EntityFilterTranslator.build(entityManager.getMetamodel(), domainClass, alias, filter);
+		List<String> conditions = new ArrayList<>();
+		if (predicate.jpql() != null)
+			conditions.add(predicate.jpql());
+		if (afterId != null)
+			conditions.add(id + " > :after");
+		String where = conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions);
+
+		TypedQuery<ID> idQuery = entityManager.createQuery(idSelect + where + " order by " + id, idClass);
+		predicate.parameters().forEach(idQuery::setParameter);
+		if (afterId != null)
+			idQuery.setParameter("after", afterId);
+
+		List<ID> ids;
+		try (Stream<ID> idStream = idQuery.setMaxResults(size).getResultStream()) {
+			ids = idStream.toList();
+		}
+		if (ids.isEmpty())
+			return List.of();
+
+		// entities (and their collections) are fetched by id, so a page costs the same wherever it starts
+		return findByIdIn(ids, dataSelectionSet);
+	}
+
+	private boolean isCoalesced() {
+		return singleFlight != null && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+	}
+
+	/**
+	 * @param ids    distinct, a query for them returning the same entities in any order
+	 * @param loader runs the query with the given entity manager
+	 */
+	private List<T> coalesce(boolean coalesced, String planKey, List<ID> ids, EntityManager entityManager,
+			Function<EntityManager, List<T>> loader) {
+		if (!coalesced)
+			return loader.apply(entityManager);
+		return singleFlight.execute(new FlightKey(planKey, Set.copyOf(ids)), () -> {
+			// handed over to other threads, so never loaded in a persistence context that outlives the flight
+			try (Session session = entityManager.unwrap(Session.class).sessionWithOptions().connection()
+					.openSession()) {
+				session.setDefaultReadOnly(true);
+				return loader.apply(session);
+			}
+		});
+	}
+
+	private String getRootId(FetchPlan<T> plan) {
+		return plan.getAliases().get("") + "." + metadata.getId().getName();
+	}
+
+	private record FlightKey(String plan, Set<?> ids) {
+	}
+}
@@ -0,0 +1,36 @@
+package com.fradantim.graphql2jpa.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+
+import com.fradantim.graphql2jpa.utils.EntityFilterTranslator;
+
+import graphql.schema.DataFetchingFieldSelectionSet;
+
+/**
+ * Repository whose finders load only what the graphql selection set asks for, for any entity. Implemented by
+ * {@link SelectionAwareJpaRepository}.
+ */
+@NoRepositoryBean
+public interface SelectionAwareRepository<T, ID> extends JpaRepository<T, ID> {
+
+	Optional<T> findById(ID id, DataFetchingFieldSelectionSet dataSelectionSet);
+
+	List<T> findByIdIn(Collection<ID> ids, DataFetchingFieldSelectionSet dataSelectionSet);
+
+	/**
+	 * Keyset pagination: up to {@code size} entities with id greater than {@code afterId} (any if {@code null}),
+	 * ordered by id.
+	 */
+	List<T> findPage(ID afterId, int size, DataFetchingFieldSelectionSet dataSelectionSet);
+
+	/**
+	 * {@link #findPage(Object, int, DataFetchingFieldSelectionSet)} of the entities matching {@code filter}, see
+	 * {@link EntityFilterTranslator}.
+	 */
+	List<T> findPage(ID afterId, int size, Record filter, DataFetchingFieldSelectionSet dataSelectionSet);
+}
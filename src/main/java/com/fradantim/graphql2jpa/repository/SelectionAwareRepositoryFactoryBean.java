@@ -0,0 +1,64 @@
+package com.fradantim.graphql2jpa.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactoryBean;
+import org.springframework.data.jpa.repository.support.JpaRepositoryImplementation;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.core.RepositoryMetadata;
+import org.springframework.data.repository.core.support.RepositoryFactorySupport;
+
+import com.fradantim.graphql2jpa.utils.FetchPlanner;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Builds every repository on top of {@link SelectionAwareJpaRepository}, handing it the {@link FetchPlanner}, the
+ * {@link IdListLoader} and the {@link SingleFlight}, if any, so any entity gets the selection aware finders by extending {@link SelectionAwareRepository}.
+ */
+public class SelectionAwareRepositoryFactoryBean<R extends JpaRepository<T, ID>, T, ID>
+		extends JpaRepositoryFactoryBean<R, T, ID> {
+
+	private FetchPlanner fetchPlanner;
+	private IdListLoader idListLoader;
+	private SingleFlight singleFlight;
+
+	public SelectionAwareRepositoryFactoryBean(Class<? extends R> repositoryInterface) {
+		super(repositoryInterface);
+	}
+
+	@Autowired
+	public void setFetchPlanner(FetchPlanner fetchPlanner) {
+		this.fetchPlanner = fetchPlanner;
+	}
+
+	@Autowired
+	public void setIdListLoader(IdListLoader idListLoader) {
+		this.idListLoader = idListLoader;
+	}
+
+	@Autowired(required = false)
+	public void setSingleFlight(SingleFlight singleFlight) {
+		this.singleFlight = singleFlight;
+	}
+
+	@Override
+	protected RepositoryFactorySupport createRepositoryFactory(EntityManager entityManager) {
+		return new JpaRepositoryFactory(entityManager) {
+			@Override
+			protected JpaRepositoryImplementation<?, ?> getTargetRepository(RepositoryInformation information,
+					EntityManager entityManager) {
+				JpaEntityInformation<?, Object> entityInformation = getEntityInformation(information.getDomainType());
+				return new SelectionAwareJpaRepository<>(entityInformation, entityManager, fetchPlanner,
+						idListLoader, singleFlight);
+			}
+
+			@Override
+			protected Class<?> getRepositoryBaseClass(RepositoryMetadata metadata) {
+				return SelectionAwareJpaRepository.class;
+			}
+		};
+	}
+}
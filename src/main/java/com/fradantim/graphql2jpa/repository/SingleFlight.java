@@ -0,0 +1,102 @@
+package com.fradantim.graphql2jpa.repository;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces concurrent identical loads: the first caller of a key runs its load, callers of the same key arriving
+ * while it is in flight wait for it and share its result (or its failure) instead of running their own. Nothing is
+ * kept once the load completes, so results are never older than the load they joined. Callers that waited
+ * {@code timeout} in vain run their own load.
+ */
+public class SingleFlight {
+
+	private static final Logger logger = LoggerFactory.getLogger(SingleFlight.class);
+
+	private final Duration timeout;
+	private final ConcurrentHashMap<Object, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+	private final AtomicLong loads = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+
+	/** @param timeout waited at most for an in-flight load */
+	public SingleFlight(Duration timeout) {
+		this.timeout = timeout;
+	}
+
+	/** @param key equal for loads that produce the same result */
+	@SuppressWarnings("unchecked")
+	public <T> T execute(Object key, Supplier<T> loader) {
+		CompletableFuture<Object> flight = new CompletableFuture<>();
+		CompletableFuture<Object> inFlight = flights.putIfAbsent(key, flight);
+		if (inFlight == null)
+			return lead(key, flight, loader);
+
+		try {
+			T result = (T) inFlight.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+			coalesced.incrementAndGet();
+			return result;
+		} catch (TimeoutException e) {
+			timeouts.incrementAndGet();
+			logger.warn("{} still loading after {}, loaded again", key, timeout);
+			loads.incrementAndGet();
+			return loader.get();
+		} catch (ExecutionException e) {
+			coalesced.incrementAndGet();
+			if (e.getCause() instanceof RuntimeException cause)
+				throw cause;
+			if (e.getCause() instanceof Error cause)
+				throw cause;
+			throw new IllegalStateException("Could not load " + key, e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for " + key, e);
+		}
+	}
+
+	private <T> T lead(Object key, CompletableFuture<Object> flight, Supplier<T> loader) {
+		loads.incrementAndGet();
+		try {
+			T result = loader.get();
+			flight.complete(result);
+			return result;
+		} catch (RuntimeException | Error e) {
+			flight.completeExceptionally(e);
+			throw e;
+		} finally {
+			flights.remove(key, flight);
+		}
+	}
+
+	/** Loads run, by first callers or after a timeout. */
+	public long getLoadCount() {
+		return loads.get();
+	}
+
+	/** Callers served by the load of another one. */
+	public long getCoalescedCount() {
+		return coalesced.get();
+	}
+
+	/** Callers that gave up waiting for the load of another one. */
+	public long getTimeoutCount() {
+		return timeouts.get();
+	}
+
+	public int getInFlightCount() {
+		return flights.size();
+	}
+
+	public Duration getTimeout() {
+		return timeout;
+	}
+}
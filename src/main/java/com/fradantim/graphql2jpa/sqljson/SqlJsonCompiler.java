@@ -0,0 +1,266 @@
+package com.fradantim.graphql2jpa.sqljson;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metamodel.MappingMetamodel;
+import org.hibernate.persister.collection.AbstractCollectionPersister;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.springframework.core.convert.ConversionException;
+import org.springframework.core.convert.support.DefaultConversionService;
+
+import com.fradantim.graphql2jpa.cache.ResponseCache.EntityTag;
+import com.fradantim.graphql2jpa.utils.CollectionAggregate;
+import com.fradantim.graphql2jpa.utils.EntityMetadata;
+import com.fradantim.graphql2jpa.utils.EntityMetadata.AttributeMetadata;
+
+import graphql.Scalars;
+import graphql.introspection.Introspection;
+import graphql.normalized.ExecutableNormalizedField;
+import graphql.normalized.ExecutableNormalizedOperation;
+import graphql.schema.GraphQLOutputType;
+import graphql.schema.GraphQLScalarType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLTypeUtil;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.Metamodel;
+
+/**
+ * Compiles a query operation into a single native statement building the response data with sql/json functions
+ * ({@code json_object}, {@code json_arrayagg}), one column per root field: to-one associations as correlated
+ * subqueries, collections as aggregated subqueries, {@link CollectionAggregate}s as correlated {@code count(*)}.
+ * Supports the given finder root fields, fetching entities by {@code id} or by a list of at most {@code maxIds}
+ * {@code ids} (in order, repeated ids repeated) selecting entity attributes and {@code __typename}; anything else
+ * compiles to {@code null}. Table and column names come from the hibernate mapping. The statements rely on
+ * {@code json_object(key .. value ..)}, {@code format json} and {@code unnest(?) with ordinality}, only available in
+ * H2 and PostgreSQL 16 or later.
+ */
+public class SqlJsonCompiler {
+
+	private static final Set<String> PLAIN_SCALARS = Set.of(Scalars.GraphQLInt.getName(),
+			Scalars.GraphQLFloat.getName(), Scalars.GraphQLString.getName(), Scalars.GraphQLBoolean.getName());
+
+	private final Metamodel metamodel;
+	private final MappingMetamodel mappingMetamodel;
+	private final Map<String, Class<?>> entityTypes;
+	private final Set<String> finderFields;
+	private final int maxIds;
+
+	/**
+	 * @param finderFields root query fields fetching entities by {@code id} or {@code ids}
+	 * @param maxIds       longer {@code ids} lists are left to the chunked regular execution
+	 * @throws IllegalStateException if the database does not support the sql/json syntax used
+	 */
+	public SqlJsonCompiler(EntityManagerFactory entityManagerFactory, Set<String> finderFields, int maxIds) {
+		SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+		Dialect dialect = sessionFactory.getJdbcServices().getDialect();
+		if (!isSupported(dialect))
+			throw new IllegalStateException(
+					"sql/json needs H2 or PostgreSQL 16+, not " + dialect.getClass().getSimpleName() + " "
+							+ dialect.getVersion());
+		this.metamodel = entityManagerFactory.getMetamodel();
+		this.mappingMetamodel = sessionFactory.getMappingMetamodel();
+		this.entityTypes = metamodel.getEntities().stream()
+				.collect(Collectors.toMap(EntityType::getName, EntityType::getJavaType));
+		this.finderFields = Set.copyOf(finderFields);
+		this.maxIds = maxIds;
+	}
+
+	public static boolean isSupported(Dialect dialect) {
+		return dialect instanceof H2Dialect
+				|| dialect instanceof PostgreSQLDialect && dialect.getVersion().isSameOrAfter(16);
+	}
+
+	/** @return {@code null} if the operation is not supported */
+	public SqlJsonQuery compile(GraphQLSchema schema, ExecutableNormalizedOperation operation) {
+		List<String> columns = new ArrayList<>();
+		List<Object> parameters = new ArrayList<>();
+		List<RootField> rootFields = new ArrayList<>();
+		Compilation compilation = new Compilation();
+		for (ExecutableNormalizedField root : operation.getTopLevelFields()) {
+			if (!finderFields.contains(root.getName()))
+				return null;
+			GraphQLOutputType type = root.getType(schema);
+			Class<?> entityType = entityTypes.get(GraphQLTypeUtil.unwrapAll(type).getName());
+			if (entityType == null)
+				return null;
+
+			EntityMetadata metadata = EntityMetadata.of(metamodel, entityType);
+			AbstractEntityPersister persister = getPersister(entityType);
+			Map<String, Object> arguments = root.getResolvedArguments();
+			String alias = compilation.nextAlias();
+			boolean list = GraphQLTypeUtil.isList(GraphQLTypeUtil.unwrapNonNull(type));
+			String object = buildObject(schema, root, metadata, persister, alias, compilation);
+			if (object == null)
+				return null;
+
+			String from = persister.getTableName() + " " + alias;
+			String id = alias + "." + persister.getIdentifierColumnNames()[0];
+			if (!list && arguments.keySet().equals(Set.of("id"))) {
+				Object value = convert(arguments.get("id"), metadata);
+				if (value == null)
+					return null;
+				columns.add("(select " + object + " from " + from + " where " + id + " = ?)");
+				parameters.add(value);
+				compilation.tags.add(new EntityTag(entityType, value));
+			} else if (list && arguments.keySet().equals(Set.of("ids"))
+					&& arguments.get("ids") instanceof Collection<?> ids && ids.size() <= maxIds) {
+				List<Object> values = new ArrayList<>();
+				for (Object value : ids) {
+					if (value != null && (value = convert(value, metadata)) == null)
+						return null;
+					if (value != null)
+						values.add(value);
+				}
+				values.forEach(value -> compilation.tags.add(new EntityTag(entityType, value)));
+				columns.add("(select coalesce(json_arrayagg(" + object + " order by ids.ord), '[]' format json)"
+						+ " from unnest(?) with ordinality ids(id, ord) join " + from + " on " + id + " = ids.id)");
+				parameters.add(values.toArray());
+			} else {
+				return null;
+			}
+			rootFields.add(new RootField(root.getResultKey(), !list));
+		}
+		String sql = "select " + String.join(", ", columns);
+		return new SqlJsonQuery(sql, List.copyOf(parameters), List.copyOf(rootFields), Set.copyOf(compilation.tags));
+	}
+
+	/* json_object of the selected attributes of the entity aliased as alias */
+	private String buildObject(GraphQLSchema schema, ExecutableNormalizedField field, EntityMetadata metadata,
+			AbstractEntityPersister persister, String alias, Compilation compilation) {
+		List<String> entries = new ArrayList<>();
+		for (ExecutableNormalizedField child : field.getChildren()) {
+			if (child.getObjectTypeNames().size() != 1)
+				return null;
+			String value;
+			if (child.getName().equals(Introspection.TypeNameMetaFieldDef.getName())) {
+				value = "'" + child.getSingleObjectTypeName() + "'";
+			} else {
+				AttributeMetadata attribute = metadata.getAttribute(child.getName());
+				CollectionAggregate aggregate = CollectionAggregate.parse(metadata, child.getName());
+				if (aggregate != null)
+					value = buildAggregate(aggregate, metadata, persister, alias, compilation);
+				else if (attribute == null)
+					return null;
+				else
+					value = attribute.isAssociation()
+							? buildAssociation(schema, child, attribute, persister, alias, compilation)
+							: buildScalar(schema, child, attribute, metadata, persister, alias);
+			}
+			if (value == null)
+				return null;
+			entries.add("key '" + child.getResultKey() + "' value " + value);
+		}
+		return "json_object(" + String.join(", ", entries) + ")";
+	}
+
+	private String buildScalar(GraphQLSchema schema, ExecutableNormalizedField field, AttributeMetadata attribute,
+			EntityMetadata metadata, AbstractEntityPersister persister, String alias) {
+		if (!(GraphQLTypeUtil.unwrapNonNull(field.getType(schema)) instanceof GraphQLScalarType scalar))
+			return null;
+		String column = alias + "." + (attribute == metadata.getId() ? persister.getIdentifierColumnNames()[0]
+				: persister.getPropertyColumnNames(attribute.getName())[0]);
+		if (scalar.getName().equals(Scalars.GraphQLID.getName()))
+			return "cast(" + column + " as varchar)";
+		return PLAIN_SCALARS.contains(scalar.getName()) ? column : null;
+	}
+
+	private String buildAssociation(GraphQLSchema schema, ExecutableNormalizedField field, AttributeMetadata attribute,
+			AbstractEntityPersister persister, String alias, Compilation compilation) {
+		EntityMetadata target = EntityMetadata.of(metamodel, attribute.getTargetType());
+		AbstractEntityPersister targetPersister = getPersister(target.getJavaType());
+		// nested entities are not known before running the statement, any of their type may be in the response
+		compilation.tags.add(new EntityTag(target.getJavaType(), null));
+		String targetAlias = compilation.nextAlias();
+		String object = buildObject(schema, field, target, targetPersister, targetAlias, compilation);
+		if (object == null)
+			return null;
+
+		if (!attribute.isCollection())
+			return "(select " + object + " from " + targetPersister.getTableName() + " " + targetAlias + " where "
+					+ targetAlias + "." + targetPersister.getIdentifierColumnNames()[0] + " = " + alias + "."
+					+ persister.getPropertyColumnNames(attribute.getName())[0] + ") format json";
+
+		String from = buildCollectionFrom(attribute, persister, alias, targetPersister, targetAlias, compilation);
+		if (from == null)
+			return null;
+		return "coalesce((select json_arrayagg(" + object + ")" + from + "), '[]' format json)";
+	}
+
+	/* correlated count(*) of the collection, never aggregating its elements */
+	private String buildAggregate(CollectionAggregate aggregate, EntityMetadata metadata,
+			AbstractEntityPersister persister, String alias, Compilation compilation) {
+		AttributeMetadata attribute = metadata.getAttribute(aggregate.collection());
+		AbstractEntityPersister targetPersister = getPersister(attribute.getTargetType());
+		compilation.tags.add(new EntityTag(attribute.getTargetType(), null));
+		String from = buildCollectionFrom(attribute, persister, alias, targetPersister, compilation.nextAlias(),
+				compilation);
+		if (from == null)
+			return null;
+		return aggregate.kind() == CollectionAggregate.Kind.COUNT ? "(select count(*)" + from + ")"
+				: "exists(select 1" + from + ")";
+	}
+
+	/* from clause of the elements of the collection of the entity aliased as alias */
+	private String buildCollectionFrom(AttributeMetadata attribute, AbstractEntityPersister persister, String alias,
+			AbstractEntityPersister targetPersister, String targetAlias, Compilation compilation) {
+		if (!(mappingMetamodel.getCollectionDescriptor(persister.getEntityName() + "." + attribute.getName())
+				instanceof AbstractCollectionPersister collection))
+			return null;
+		String from = " from " + targetPersister.getTableName() + " " + targetAlias;
+		String id = alias + "." + persister.getIdentifierColumnNames()[0];
+		String key = collection.getKeyColumnNames()[0];
+		if (collection.isOneToMany())
+			return from + " where " + targetAlias + "." + key + " = " + id;
+		String joinAlias = compilation.nextAlias();
+		return from + " join " + collection.getTableName() + " " + joinAlias + " on " + joinAlias + "."
+				+ collection.getElementColumnNames()[0] + " = " + targetAlias + "."
+				+ targetPersister.getIdentifierColumnNames()[0] + " where " + joinAlias + "." + key + " = " + id;
+	}
+
+	private AbstractEntityPersister getPersister(Class<?> type) {
+		return (AbstractEntityPersister) mappingMetamodel.getEntityDescriptor(type);
+	}
+
+	/* argument value as the id java type, null if not convertible */
+	private static Object convert(Object value, EntityMetadata metadata) {
+		try {
+			return DefaultConversionService.getSharedInstance().convert(value,
+					metadata.getId().getField().getType());
+		} catch (ConversionException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param sql        one json column per root field
+	 * @param parameters ids, or arrays of ids
+	 * @param tags       entities the response may contain, for the response cache
+	 */
+	public record SqlJsonQuery(String sql, List<Object> parameters, List<RootField> rootFields, Set<EntityTag> tags) {
+	}
+
+	/** @param single whether it fetches by id, {@code null} meaning not found */
+	public record RootField(String resultKey, boolean single) {
+	}
+
+	/* state of one compilation */
+	private static class Compilation {
+		private final Set<EntityTag> tags = new HashSet<>();
+		private int aliases;
+
+		private String nextAlias() {
+			return "t" + aliases++;
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package com.fradantim.graphql2jpa.sqljson;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.graphql.execution.GraphQlSource;
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.graphql.support.DefaultExecutionGraphQlResponse;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.fradantim.graphql2jpa.cache.DocumentCache;
+import com.fradantim.graphql2jpa.cache.ResponseCache.EntityTag;
+import com.fradantim.graphql2jpa.cache.ResponseCacheInterceptor;
+import com.fradantim.graphql2jpa.instrumentation.QueryCostInstrumentation;
+import com.fradantim.graphql2jpa.sqljson.SqlJsonCompiler.RootField;
+import com.fradantim.graphql2jpa.sqljson.SqlJsonCompiler.SqlJsonQuery;
+
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQLException;
+import graphql.execution.RawVariables;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.language.OperationDefinition.Operation;
+import graphql.normalized.ExecutableNormalizedField;
+import graphql.normalized.ExecutableNormalizedOperation;
+import graphql.normalized.ExecutableNormalizedOperationFactory;
+import graphql.schema.GraphQLSchema;
+import reactor.core.publisher.Mono;
+
+/**
+ * Answers the queries {@link SqlJsonCompiler} supports with the json built by the database, written to the response
+ * as is: no entity is hydrated nor data fetcher called. Anything else, documents with errors, root fields over the
+ * {@link QueryCostInstrumentation} budget, statement failures, and fields by id not found (so their error is reported)
+ * go through regular execution. Responses are tagged for the {@link ResponseCacheInterceptor} with the entities they
+ * may contain; being no graphql execution, they are not part of the operation metrics.
+ */
+public class SqlJsonInterceptor implements WebGraphQlInterceptor {
+
+	/** {@code sql-json} on responses built by the database. */
+	public static final String ENGINE_HEADER = "X-GraphQL-Engine";
+
+	private static final Logger logger = LoggerFactory.getLogger(SqlJsonInterceptor.class);
+
+	private final GraphQlSource graphQlSource;
+	private final DocumentCache documentCache;
+	private final SqlJsonCompiler compiler;
+	private final JdbcTemplate jdbcTemplate;
+	private final QueryCostInstrumentation queryCostInstrumentation;
+
+	public SqlJsonInterceptor(GraphQlSource graphQlSource, DocumentCache documentCache, SqlJsonCompiler compiler,
+			JdbcTemplate jdbcTemplate, QueryCostInstrumentation queryCostInstrumentation) {
+		this.graphQlSource = graphQlSource;
+		this.documentCache = documentCache;
+		this.compiler = compiler;
+		this.jdbcTemplate = jdbcTemplate;
+		this.queryCostInstrumentation = queryCostInstrumentation;
+	}
+
+	@Override
+	public Mono<WebGraphQlResponse> intercept(WebGraphQlRequest request, Chain chain) {
+		ExecutionInput input = request.toExecutionInput();
+		SqlJsonQuery query = compile(input);
+		String data = query == null ? null : execute(query);
+		if (data == null)
+			return chain.next(request);
+
+		Set<EntityTag> tags = input.getGraphQLContext().get(ResponseCacheInterceptor.TAGS);
+		if (tags != null)
+			tags.addAll(query.tags());
+		ExecutionResult result = ExecutionResult.newExecutionResult().data(new RawValue(data)).build();
+		WebGraphQlResponse response = new WebGraphQlResponse(new DefaultExecutionGraphQlResponse(input, result));
+		response.getResponseHeaders().set(ENGINE_HEADER, "sql-json");
+		return Mono.just(response);
+	}
+
+	private SqlJsonQuery compile(ExecutionInput input) {
+		GraphQLSchema schema = graphQlSource.schema();
+		// cached for the regular execution as well
+		PreparsedDocumentEntry entry = documentCache.getDocument(input, schema);
+		if (entry.hasErrors())
+			return null;
+
+		ExecutableNormalizedOperation operation;
+		try {
+			operation = ExecutableNormalizedOperationFactory.createExecutableNormalizedOperationWithRawVariables(
+					schema, entry.getDocument(), input.getOperationName(), RawVariables.of(input.getVariables()));
+		} catch (GraphQLException e) {
+			// invalid variables or operation name, reported by the regular execution
+			return null;
+		}
+		if (operation.getOperation() != Operation.QUERY)
+			return null;
+		// over budget fields are downgraded or rejected by the regular execution
+		for (ExecutableNormalizedField root : operation.getTopLevelFields())
+			if (!queryCostInstrumentation.isWithinBudget(schema, root))
+				return null;
+		return compiler.compile(schema, operation);
+	}
+
+	/** @return the response data, {@code null} to fall back to regular execution */
+	private String execute(SqlJsonQuery query) {
+		logger.debug("sql/json: {}", query.sql());
+		List<String> values;
+		try {
+			values = jdbcTemplate.query(query.sql(), rs -> {
+				rs.next();
+				List<String> columns = new ArrayList<>();
+				for (int i = 1; i <= query.rootFields().size(); i++)
+					columns.add(rs.getString(i));
+				return columns;
+			}, query.parameters().toArray());
+		} catch (DataAccessException e) {
+			logger.debug("sql/json statement failed, falling back to regular execution", e);
+			return null;
+		}
+
+		StringBuilder data = new StringBuilder("{");
+		for (int i = 0; i < values.size(); i++) {
+			RootField rootField = query.rootFields().get(i);
+			if (values.get(i) == null && rootField.single())
+				return null;
+			data.append(i == 0 ? "\"" : ",\"").append(rootField.resultKey()).append("\":").append(values.get(i));
+		}
+		return data.append('}').toString();
+	}
+}
@@ -0,0 +1,13 @@
+package com.fradantim.graphql2jpa.subscription;
+
+/**
+ * A committed write. Changes of a collection are updates of its owner.
+ *
+ * @param entity as written, detached
+ */
+public record ChangeEvent(Type type, Class<?> entityType, Object id, Object entity) {
+
+	public enum Type {
+		INSERT, UPDATE, DELETE
+	}
+}
@@ -0,0 +1,141 @@
+package com.fradantim.graphql2jpa.subscription;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fradantim.graphql2jpa.subscription.ChangeEvent.Type;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * In-process bus of {@link ChangeEvent}s, fed by hibernate once writes are committed: entity inserts, updates and
+ * deletes, and collection changes, held until their transaction commits. Listeners are called on the committing
+ * thread, so they should only hand the events over.
+ */
+public class ChangeEventBus implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+		PostCommitDeleteEventListener, PostCollectionRecreateEventListener, PostCollectionUpdateEventListener,
+		PostCollectionRemoveEventListener {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger logger = LoggerFactory.getLogger(ChangeEventBus.class);
+
+	private final transient SessionFactoryImplementor sessionFactory;
+	private final transient List<Consumer<ChangeEvent>> listeners = new CopyOnWriteArrayList<>();
+
+	public ChangeEventBus(EntityManagerFactory entityManagerFactory) {
+		this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+	}
+
+	/** Registers this listener in the session factory. */
+	public void register() {
+		EventListenerRegistry registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+		registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+		registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+		registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+		registry.appendListeners(EventType.POST_COLLECTION_RECREATE, this);
+		registry.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+		registry.appendListeners(EventType.POST_COLLECTION_REMOVE, this);
+	}
+
+	public void addListener(Consumer<ChangeEvent> listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(Consumer<ChangeEvent> listener) {
+		listeners.remove(listener);
+	}
+
+	private void publish(ChangeEvent event) {
+		for (Consumer<ChangeEvent> listener : listeners) {
+			try {
+				listener.accept(event);
+			} catch (RuntimeException e) {
+				// the transaction is already committed, nothing to fail
+				logger.warn("change listener failed on {}", event, e);
+			}
+		}
+	}
+
+	@Override
+	public boolean requiresPostCommitHandling(EntityPersister persister) {
+		return true;
+	}
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		publish(new ChangeEvent(Type.INSERT, event.getPersister().getMappedClass(), event.getId(), event.getEntity()));
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		publish(new ChangeEvent(Type.UPDATE, event.getPersister().getMappedClass(), event.getId(), event.getEntity()));
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		publish(new ChangeEvent(Type.DELETE, event.getPersister().getMappedClass(), event.getId(), event.getEntity()));
+	}
+
+	@Override
+	public void onPostInsertCommitFailed(PostInsertEvent event) {
+	}
+
+	@Override
+	public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+	}
+
+	@Override
+	public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+	}
+
+	@Override
+	public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+		publishOwner(event);
+	}
+
+	@Override
+	public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+		publishOwner(event);
+	}
+
+	@Override
+	public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+		publishOwner(event);
+	}
+
+	/** Collection events come on flush, published once committed. */
+	private void publishOwner(AbstractCollectionEvent event) {
+		if (event.getAffectedOwnerIdOrNull() == null)
+			return;
+		ChangeEvent change = new ChangeEvent(Type.UPDATE,
+				sessionFactory.getMappingMetamodel().getEntityDescriptor(event.getAffectedOwnerEntityName())
+						.getMappedClass(),
+				event.getAffectedOwnerIdOrNull(), event.getAffectedOwnerOrNull());
+		event.getSession().getActionQueue().registerProcess((success, session) -> {
+			if (success)
+				publish(change);
+		});
+	}
+}
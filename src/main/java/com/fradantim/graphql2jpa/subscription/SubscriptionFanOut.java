@@ -0,0 +1,187 @@
+package com.fradantim.graphql2jpa.subscription;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import graphql.schema.DataFetchingFieldSelectionSet;
+import graphql.schema.SelectedField;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Server-side fan-out of change subscriptions. Subscribers of the same field, argument and selection shape (the
+ * selected fields, aliases aside) share a topic: a change published to it is loaded with one query, whatever the
+ * number of subscribers, and the loaded values multicast to all of them. Changes published while a topic is loading
+ * are coalesced into its next load, each id loaded once.
+ * <p>
+ * Subscribers that cannot keep up get their oldest pending values dropped past {@code bufferSize}, without slowing
+ * down the others.
+ */
+public class SubscriptionFanOut {
+
+	private static final Logger logger = LoggerFactory.getLogger(SubscriptionFanOut.class);
+
+	private final int bufferSize;
+	private final Scheduler scheduler;
+	private final Map<Route, Map<String, Topic<?, ?>>> topics = new HashMap<>();
+	private final AtomicLong loads = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * @param bufferSize values kept per subscriber not yet consumed
+	 * @param scheduler  running the loads, off the committing threads
+	 */
+	public SubscriptionFanOut(int bufferSize, Scheduler scheduler) {
+		this.bufferSize = bufferSize;
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * @param field     subscription field name
+	 * @param argument  the changes are published for
+	 * @param selection of the subscription field, the same for every subscriber of the topic
+	 * @param loader    of the values of the published ids, with a single query
+	 */
+	public <I, T> Flux<T> subscribe(String field, Object argument, DataFetchingFieldSelectionSet selection,
+			Function<List<I>, List<T>> loader) {
+		Route route = new Route(field, argument);
+		String shape = getShape(selection);
+		return Flux.defer(() -> {
+			Topic<I, T> topic = acquire(route, shape, loader);
+			return topic.sink.asFlux()
+					.onBackpressureBuffer(bufferSize, value -> dropped.incrementAndGet(),
+							BufferOverflowStrategy.DROP_OLDEST)
+					.doFinally(signal -> release(route, shape));
+		});
+	}
+
+	/** Loads {@code id} for the subscribers of {@code field(argument)}, if any. */
+	public void publish(String field, Object argument, Object id) {
+		List<Topic<?, ?>> routeTopics;
+		synchronized (topics) {
+			Map<String, Topic<?, ?>> byShape = topics.get(new Route(field, argument));
+			if (byShape == null)
+				return;
+			routeTopics = new ArrayList<>(byShape.values());
+		}
+		routeTopics.forEach(topic -> topic.publish(id));
+	}
+
+	@SuppressWarnings("unchecked")
+	private <I, T> Topic<I, T> acquire(Route route, String shape, Function<List<I>, List<T>> loader) {
+		synchronized (topics) {
+			Topic<I, T> topic = (Topic<I, T>) topics.computeIfAbsent(route, r -> new HashMap<>())
+					.computeIfAbsent(shape, s -> new Topic<>(route, loader));
+			topic.subscribers++;
+			return topic;
+		}
+	}
+
+	private void release(Route route, String shape) {
+		synchronized (topics) {
+			Map<String, Topic<?, ?>> byShape = topics.get(route);
+			Topic<?, ?> topic = byShape.get(shape);
+			if (--topic.subscribers > 0)
+				return;
+			byShape.remove(shape);
+			if (byShape.isEmpty())
+				topics.remove(route);
+		}
+	}
+
+	private static String getShape(DataFetchingFieldSelectionSet selection) {
+		return selection.getFields().stream().map(SelectedField::getQualifiedName).distinct().sorted()
+				.collect(Collectors.joining(","));
+	}
+
+	/** Queries run to load published changes. */
+	public long getLoadCount() {
+		return loads.get();
+	}
+
+	/** Values not delivered to slow subscribers. */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	public int getTopicCount() {
+		synchronized (topics) {
+			return topics.values().stream().mapToInt(Map::size).sum();
+		}
+	}
+
+	public int getSubscriberCount() {
+		synchronized (topics) {
+			return topics.values().stream().flatMap(byShape -> byShape.values().stream())
+					.mapToInt(topic -> topic.subscribers).sum();
+		}
+	}
+
+	private record Route(String field, Object argument) {
+	}
+
+	private class Topic<I, T> {
+
+		private final Route route;
+		private final Function<List<I>, List<T>> loader;
+		private final Sinks.Many<T> sink = Sinks.many().multicast().directBestEffort();
+		private final Set<I> pending = new LinkedHashSet<>();
+		private boolean loading;
+		/* guarded by topics */
+		private int subscribers;
+
+		private Topic(Route route, Function<List<I>, List<T>> loader) {
+			this.route = route;
+			this.loader = loader;
+		}
+
+		@SuppressWarnings("unchecked")
+		private void publish(Object id) {
+			synchronized (this) {
+				pending.add((I) id);
+				if (loading)
+					return;
+				loading = true;
+			}
+			scheduler.schedule(this::load);
+		}
+
+		/* one load at a time, so values are emitted serially */
+		private void load() {
+			while (true) {
+				List<I> ids;
+				synchronized (this) {
+					if (pending.isEmpty()) {
+						loading = false;
+						return;
+					}
+					ids = new ArrayList<>(pending);
+					pending.clear();
+				}
+
+				List<T> values;
+				try {
+					values = loader.apply(ids);
+					loads.incrementAndGet();
+				} catch (RuntimeException e) {
+					logger.warn("{} could not load {}", route, ids, e);
+					continue;
+				}
+				logger.debug("{} loaded {} for {} subscribers", route, ids, sink.currentSubscriberCount());
+				values.forEach(sink::tryEmitNext);
+			}
+		}
+	}
+}
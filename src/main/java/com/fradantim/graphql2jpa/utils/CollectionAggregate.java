@@ -0,0 +1,54 @@
+package com.fradantim.graphql2jpa.utils;
+
+import java.util.List;
+
+import com.fradantim.graphql2jpa.utils.EntityMetadata.AttributeMetadata;
+
+/**
+ * Field generated next to every collection attribute of an entity: {@code quotesCount}, its size, or
+ * {@code hasQuotes}, whether it is not empty. Computed by the database, never by loading the collection.
+ *
+ * @param collection attribute name
+ */
+public record CollectionAggregate(String collection, Kind kind) {
+
+	public enum Kind {
+		COUNT, EXISTS
+	}
+
+	private static final String COUNT_SUFFIX = "Count";
+	private static final String EXISTS_PREFIX = "has";
+
+	/** Every aggregate of {@code collection}. */
+	public static List<CollectionAggregate> of(String collection) {
+		return List.of(new CollectionAggregate(collection, Kind.COUNT), new CollectionAggregate(collection, Kind.EXISTS));
+	}
+
+	/** @return {@code null} if {@code fieldName} is not an aggregate of a collection of {@code metadata} */
+	public static CollectionAggregate parse(EntityMetadata metadata, String fieldName) {
+		if (metadata.getAttribute(fieldName) != null)
+			return null;
+		CollectionAggregate aggregate = null;
+		if (fieldName.endsWith(COUNT_SUFFIX))
+			aggregate = new CollectionAggregate(fieldName.substring(0, fieldName.length() - COUNT_SUFFIX.length()),
+					Kind.COUNT);
+		else if (fieldName.length() > EXISTS_PREFIX.length() && fieldName.startsWith(EXISTS_PREFIX)
+				&& Character.isUpperCase(fieldName.charAt(EXISTS_PREFIX.length())))
+			aggregate = new CollectionAggregate(Character.toLowerCase(fieldName.charAt(EXISTS_PREFIX.length()))
+					+ fieldName.substring(EXISTS_PREFIX.length() + 1), Kind.EXISTS);
+		if (aggregate == null)
+			return null;
+		AttributeMetadata attribute = metadata.getAttribute(aggregate.collection());
+		return attribute != null && attribute.isCollection() ? aggregate : null;
+	}
+
+	public String getFieldName() {
+		return kind == Kind.COUNT ? collection + COUNT_SUFFIX
+				: EXISTS_PREFIX + Character.toUpperCase(collection.charAt(0)) + collection.substring(1);
+	}
+
+	/** The value of this aggregate given the collection size. */
+	public Object getValue(long count) {
+		return kind == Kind.COUNT ? count : count > 0;
+	}
+}
@@ -0,0 +1,12 @@
+package com.fradantim.graphql2jpa.utils;
+
+/** How selected to-many associations are loaded. */
+public enum CollectionStrategy {
+	/** Joined in the root query, rows multiply with every selected collection. */
+	JOIN,
+	/**
+	 * To-one associations stay joined in the root query, each selected collection is loaded by its own secondary
+	 * query keyed by the parent ids.
+	 */
+	BATCH
+}
@@ -0,0 +1,143 @@
+package com.fradantim.graphql2jpa.utils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.convert.ConversionException;
+import org.springframework.core.convert.support.DefaultConversionService;
+
+import com.fradantim.graphql2jpa.model.ValueFilter;
+import com.fradantim.graphql2jpa.utils.EntityMetadata.AttributeMetadata;
+
+import jakarta.persistence.metamodel.Metamodel;
+
+/**
+ * Translates filter input objects into a parameterized jpql predicate. Filters are records whose components are
+ * named after the entity attributes: {@link ValueFilter}s for plain attributes, nested filters for associations.
+ * To-one associations are navigated as paths ({@code b.author.country.name}), collections are semi-joins
+ * ({@code exists} subqueries) so they do not multiply the rows of the filtered entity.
+ */
+public class EntityFilterTranslator {
+
+	private static final Logger logger = LoggerFactory.getLogger(EntityFilterTranslator.class);
+
+	private EntityFilterTranslator() {
+	}
+
+	/**
+	 * @param alias  of the filtered entity in the query the predicate goes into
+	 * @param filter {@code null} matching everything
+	 * @return predicate over {@code alias}, {@code null} jpql matching everything
+	 * @throws InvalidFilter on values not convertible to their attribute type, or prefixes of non string ones
+	 */
+	public static Predicate build(Metamodel metamodel, Class<?> type, String alias, Record filter) {
+		List<String> conditions = new ArrayList<>();
+		Map<String, Object> parameters = new HashMap<>();
+		if (filter != null)
+			build(metamodel, EntityMetadata.of(metamodel, type), alias, filter, conditions, parameters,
+					new HashMap<>());
+		String jpql = conditions.isEmpty() ? null : String.join(" and ", conditions);
+		logger.debug("jpql filter: {}", jpql);
+		return new Predicate(jpql, parameters);
+	}
+
+	private static void build(Metamodel metamodel, EntityMetadata metadata, String path, Record filter,
+			List<String> conditions, Map<String, Object> parameters, Map<String, Integer> aliasCounter) {
+		for (RecordComponent component : filter.getClass().getRecordComponents()) {
+			Object value = get(component, filter);
+			if (value == null)
+				continue;
+			AttributeMetadata attribute = metadata.getAttribute(component.getName());
+			if (attribute == null || attribute.isAssociation() == value instanceof ValueFilter)
+				throw new IllegalStateException(
+						"No filterable attribute " + component.getName() + " in " + metadata.getEntityName());
+
+			String attributePath = path + "." + attribute.getName();
+			if (value instanceof ValueFilter valueFilter) {
+				build(attribute, attributePath, valueFilter, conditions, parameters);
+				continue;
+			}
+
+			EntityMetadata target = EntityMetadata.of(metamodel, attribute.getTargetType());
+			if (!attribute.isCollection()) {
+				build(metamodel, target, attributePath, (Record) value, conditions, parameters, aliasCounter);
+				continue;
+			}
+			// semi-join, correlated by the owner id
+			String owner = getNextAlias("s", aliasCounter);
+			String element = getNextAlias("x", aliasCounter);
+			List<String> elementConditions = new ArrayList<>();
+			build(metamodel, target, element, (Record) value, elementConditions, parameters, aliasCounter);
+			if (elementConditions.isEmpty())
+				continue;
+			String id = metadata.getId().getName();
+			conditions.add("exists (select 1 from " + metadata.getEntityName() + " " + owner + " join " + owner + "."
+					+ attribute.getName() + " " + element + " where " + owner + "." + id + " = " + path + "." + id
+					+ " and " + String.join(" and ", elementConditions) + ")");
+		}
+	}
+
+	private static void build(AttributeMetadata attribute, String path, ValueFilter filter, List<String> conditions,
+			Map<String, Object> parameters) {
+		Class<?> type = attribute.getTargetType();
+		if (filter.eq() != null)
+			conditions.add(path + " = :" + addParameter(parameters, convert(filter.eq(), type, attribute)));
+		if (filter.anyOf() != null) {
+			List<Object> values = new ArrayList<>();
+			for (String value : filter.anyOf())
+				values.add(convert(value, type, attribute));
+			conditions.add(values.isEmpty() ? "1 = 0" : path + " in :" + addParameter(parameters, values));
+		}
+		if (filter.startsWith() != null) {
+			if (type != String.class)
+				throw new InvalidFilter("startsWith only applies to strings, not to " + attribute.getName());
+			String pattern = filter.startsWith().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+			conditions.add(path + " like :" + addParameter(parameters, pattern) + " escape '\\'");
+		}
+	}
+
+	private static String addParameter(Map<String, Object> parameters, Object value) {
+		String name = "f" + parameters.size();
+		parameters.put(name, value);
+		return name;
+	}
+
+	private static Object convert(String value, Class<?> type, AttributeMetadata attribute) {
+		try {
+			return DefaultConversionService.getSharedInstance().convert(value, type);
+		} catch (ConversionException e) {
+			throw new InvalidFilter("Invalid " + attribute.getName() + " value " + value);
+		}
+	}
+
+	private static String getNextAlias(String alias, Map<String, Integer> aliasCounter) {
+		return alias + aliasCounter.compute(alias, (k, v) -> v == null ? 0 : v + 1);
+	}
+
+	private static Object get(RecordComponent component, Record filter) {
+		try {
+			return component.getAccessor().invoke(filter);
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalStateException("Could not read " + component, e);
+		}
+	}
+
+	/** @param jpql {@code null} if there is nothing to filter */
+	public record Predicate(String jpql, Map<String, Object> parameters) {
+	}
+
+	public static class InvalidFilter extends RuntimeException {
+
+		private static final long serialVersionUID = 6027446389118204583L;
+
+		public InvalidFilter(String message) {
+			super(message);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package com.fradantim.graphql2jpa.utils;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.Hibernate;
+
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.Metamodel;
+import jakarta.persistence.metamodel.PluralAttribute;
+
+/**
+ * Jpa metamodel information of an entity (names, id, associations and accessible fields), computed once per entity
+ * class so requests do not walk the metamodel nor reflect on the class.
+ */
+public class EntityMetadata {
+
+	private static final Map<Class<?>, EntityMetadata> cache = new ConcurrentHashMap<>();
+
+	private final Class<?> javaType;
+	private final String entityName;
+	private final String alias;
+	private final AttributeMetadata id;
+	private final Map<String, AttributeMetadata> attributes;
+
+	private EntityMetadata(EntityType<?> entityType) {
+		this.javaType = entityType.getJavaType();
+		this.entityName = entityType.getName();
+		this.alias = entityName.substring(0, 1).toLowerCase();
+
+		Map<String, AttributeMetadata> attributesByName = new HashMap<>();
+		for (Attribute<?, ?> attribute : entityType.getAttributes())
+			attributesByName.put(attribute.getName(), new AttributeMetadata(attribute));
+		this.attributes = Collections.unmodifiableMap(attributesByName);
+		this.id = attributes.get(entityType.getId(entityType.getIdType().getJavaType()).getName());
+	}
+
+	public static EntityMetadata of(Metamodel metamodel, Class<?> type) {
+		return cache.computeIfAbsent(type, t -> new EntityMetadata(metamodel.entity(t)));
+	}
+
+	public Class<?> getJavaType() {
+		return javaType;
+	}
+
+	/** Name to use in jpql. */
+	public String getEntityName() {
+		return entityName;
+	}
+
+	/** Default jpql alias, e.g. {@code b} for {@code Book}. */
+	public String getAlias() {
+		return alias;
+	}
+
+	public AttributeMetadata getId() {
+		return id;
+	}
+
+	/** @return {@code null} if there is no such attribute */
+	public AttributeMetadata getAttribute(String name) {
+		return attributes.get(name);
+	}
+
+	public Map<String, AttributeMetadata> getAttributes() {
+		return attributes;
+	}
+
+	public static class AttributeMetadata {
+		private final String name;
+		private final Field field;
+		private final boolean association;
+		private final boolean collection;
+		private final Class<?> targetType;
+
+		private AttributeMetadata(Attribute<?, ?> attribute) {
+			this.name = attribute.getName();
+			this.field = (Field) attribute.getJavaMember();
+			this.field.setAccessible(true);
+			this.association = attribute.isAssociation();
+			this.collection = attribute.isCollection();
+			this.targetType = attribute instanceof PluralAttribute<?, ?, ?> plural
+					? plural.getElementType().getJavaType()
+					: attribute.getJavaType();
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Field getField() {
+			return field;
+		}
+
+		public boolean isAssociation() {
+			return association;
+		}
+
+		public boolean isCollection() {
+			return collection;
+		}
+
+		/** Attribute type, or element type of collections. */
+		public Class<?> getTargetType() {
+			return targetType;
+		}
+
+		/** Value of this attribute on {@code entity}, proxies unwrapped. */
+		public Object get(Object entity) {
+			try {
+				return Hibernate.unproxy(field.get(Hibernate.unproxy(entity)));
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException("Could not read " + field, e);
+			}
+		}
+
+		public void set(Object entity, Object value) {
+			try {
+				field.set(entity, value);
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException("Could not set " + field, e);
+			}
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package com.fradantim.graphql2jpa.utils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JPQL select list of only the selected columns (plus the ids needed for identity) and the logic to build the
+ * resulting entity graph back from the returned tuples. Built entities are plain, non-managed instances: every
+ * attribute not selected stays {@code null}.
+ */
+public class EntityProjection<T> {
+
+	private final String jpql;
+	private final ProjectedEntity root;
+
+	EntityProjection(String jpql, ProjectedEntity root) {
+		this.jpql = jpql;
+		this.root = root;
+	}
+
+	/** {@code select ... from ... left join ...}, without where clause. */
+	public String getJpql() {
+		return jpql;
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<T> assemble(List<Object[]> rows) {
+		Map<Object, Object> roots = new LinkedHashMap<>();
+		AssemblyState state = new AssemblyState();
+		for (Object[] row : rows) {
+			Object rootId = row[root.idIndex];
+			Object entity = roots.computeIfAbsent(rootId, id -> root.instantiate(row));
+			root.assembleAssociations(entity, row, state);
+		}
+		return (List<T>) new ArrayList<>(roots.values());
+	}
+
+	static class ProjectedEntity {
+		private final Class<?> type;
+		private final Field idField;
+		private final int idIndex;
+		private final List<ProjectedAttribute> attributes = new ArrayList<>();
+		private final List<ProjectedAssociation> associations = new ArrayList<>();
+
+		ProjectedEntity(Class<?> type, Field idField, int idIndex) {
+			this.type = type;
+			this.idField = accessible(idField);
+			this.idIndex = idIndex;
+		}
+
+		void addAttribute(Field field, int index) {
+			attributes.add(new ProjectedAttribute(accessible(field), index));
+		}
+
+		void addAssociation(Field field, boolean collection, ProjectedEntity target) {
+			associations.add(new ProjectedAssociation(accessible(field), collection, target));
+		}
+
+		private Object instantiate(Object[] row) {
+			try {
+				Object entity = type.getDeclaredConstructor().newInstance();
+				idField.set(entity, row[idIndex]);
+				for (ProjectedAttribute attribute : attributes)
+					attribute.field.set(entity, row[attribute.index]);
+				for (ProjectedAssociation association : associations)
+					if (association.collection)
+						association.field.set(entity, new HashSet<>());
+				return entity;
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException("Could not instantiate " + type.getName(), e);
+			}
+		}
+
+		private void assembleAssociations(Object entity, Object[] row, AssemblyState state) {
+			for (ProjectedAssociation association : associations)
+				association.assemble(entity, row, state);
+		}
+
+		private static Field accessible(Field field) {
+			field.setAccessible(true);
+			return field;
+		}
+	}
+
+	record ProjectedAttribute(Field field, int index) {
+	}
+
+	static class ProjectedAssociation {
+		private final Field field;
+		private final boolean collection;
+		private final ProjectedEntity target;
+
+		ProjectedAssociation(Field field, boolean collection, ProjectedEntity target) {
+			this.field = field;
+			this.collection = collection;
+			this.target = target;
+		}
+
+		@SuppressWarnings("unchecked")
+		private void assemble(Object parent, Object[] row, AssemblyState state) {
+			Object childId = row[target.idIndex];
+			if (childId == null)
+				return;
+
+			Map<Object, Object> parentChildren = state.children(this, parent);
+			Object child = parentChildren.get(childId);
+			try {
+				if (child == null) {
+					child = target.instantiate(row);
+					parentChildren.put(childId, child);
+					if (collection)
+						((Collection<Object>) field.get(parent)).add(child);
+					else
+						field.set(parent, child);
+				}
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException("Could not set " + field, e);
+			}
+			target.assembleAssociations(child, row, state);
+		}
+	}
+
+	/** Per call instances already built, so a projection can be shared between threads. */
+	private static class AssemblyState {
+		/* association -> parent instance -> (child id -> child instance) */
+		private final Map<ProjectedAssociation, Map<Object, Map<Object, Object>>> children = new IdentityHashMap<>();
+
+		private Map<Object, Object> children(ProjectedAssociation association, Object parent) {
+			return children.computeIfAbsent(association, a -> new IdentityHashMap<>()).computeIfAbsent(parent,
+					p -> new LinkedHashMap<>());
+		}
+	}
+}
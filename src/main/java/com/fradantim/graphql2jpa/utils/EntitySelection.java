@@ -0,0 +1,132 @@
+package com.fradantim.graphql2jpa.utils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import com.fradantim.graphql2jpa.utils.EntityMetadata.AttributeMetadata;
+
+import graphql.schema.DataFetchingFieldSelectionSet;
+import graphql.schema.SelectedField;
+import jakarta.persistence.metamodel.Metamodel;
+
+/**
+ * Normalized view of a graphql selection set over a jpa entity: selected scalar attributes and selected associations,
+ * merged by attribute name and sorted, so two selection sets with the same shape produce equal trees.
+ */
+public class EntitySelection {
+
+	private final EntityMetadata metadata;
+	private final SortedSet<String> attributes = new TreeSet<>();
+	private final SortedMap<String, EntitySelection> associations = new TreeMap<>();
+
+	private EntitySelection(EntityMetadata metadata) {
+		this.metadata = metadata;
+	}
+
+	public static EntitySelection of(Metamodel metamodel, Class<?> type, DataFetchingFieldSelectionSet selectionSet) {
+		EntitySelection selection = new EntitySelection(EntityMetadata.of(metamodel, type));
+		selection.merge(metamodel, selectionSet.getImmediateFields());
+		return selection;
+	}
+
+	private void merge(Metamodel metamodel, List<SelectedField> fields) {
+		for (SelectedField field : fields) {
+			AttributeMetadata attribute = metadata.getAttribute(field.getName());
+			if (attribute == null)
+				continue;
+
+			if (attribute.isAssociation()) {
+				if (!field.getSelectionSet().getImmediateFields().isEmpty())
+					associations.computeIfAbsent(attribute.getName(),
+							k -> new EntitySelection(EntityMetadata.of(metamodel, attribute.getTargetType())))
+							.merge(metamodel, field.getSelectionSet().getImmediateFields());
+			} else if (attribute != metadata.getId()) {
+				attributes.add(attribute.getName());
+			}
+		}
+	}
+
+	public EntityMetadata getMetadata() {
+		return metadata;
+	}
+
+	public AttributeMetadata getIdAttribute() {
+		return metadata.getId();
+	}
+
+	public AttributeMetadata getAttribute(String name) {
+		return metadata.getAttribute(name);
+	}
+
+	/** Selected non-id, non-association attribute names. */
+	public SortedSet<String> getAttributes() {
+		return Collections.unmodifiableSortedSet(attributes);
+	}
+
+	public SortedMap<String, EntitySelection> getAssociations() {
+		return Collections.unmodifiableSortedMap(associations);
+	}
+
+	public boolean isCollection(String association) {
+		return metadata.getAttribute(association).isCollection();
+	}
+
+	/** Associations selected at any depth, i.e. joins needed to fetch them in a single query. */
+	public int getJoinCount() {
+		return associations.values().stream().mapToInt(selection -> 1 + selection.getJoinCount()).sum();
+	}
+
+	/** Copy of this selection without collection associations, at any depth. */
+	public EntitySelection withoutCollections() {
+		EntitySelection copy = new EntitySelection(metadata);
+		copy.attributes.addAll(attributes);
+		associations.forEach((name, selection) -> {
+			if (!isCollection(name))
+				copy.associations.put(name, selection.withoutCollections());
+		});
+		return copy;
+	}
+
+	/** Copy of this selection without the given top level associations. */
+	public EntitySelection without(Collection<String> associationNames) {
+		EntitySelection copy = new EntitySelection(metadata);
+		copy.attributes.addAll(attributes);
+		copy.associations.putAll(associations);
+		associationNames.forEach(copy.associations::remove);
+		return copy;
+	}
+
+	/** Whether this entity and everything selected under it, through to-one associations only, is {@code cached}. */
+	public boolean isCachedReference(Predicate<Class<?>> cached) {
+		return cached.test(metadata.getJavaType()) && associations.entrySet().stream()
+				.allMatch(e -> !isCollection(e.getKey()) && e.getValue().isCachedReference(cached));
+	}
+
+	/**
+	 * Selection of only the id of this entity and the given association, the association without collections.
+	 */
+	public EntitySelection onlyAssociation(String association) {
+		EntitySelection copy = new EntitySelection(metadata);
+		copy.associations.put(association, associations.get(association).withoutCollections());
+		return copy;
+	}
+
+	/** Normalized shape, e.g. {@code Book{isbn,name,author:Person{name},quotes*:Quote{text}}} */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(metadata.getEntityName()).append("{");
+		sb.append(String.join(",", attributes));
+		associations.forEach((name, selection) -> {
+			if (sb.charAt(sb.length() - 1) != '{')
+				sb.append(",");
+			sb.append(name).append(isCollection(name) ? "*:" : ":").append(selection);
+		});
+		return sb.append("}").toString();
+	}
+}
@@ -0,0 +1,19 @@
+package com.fradantim.graphql2jpa.utils;
+
+/** How a graphql selection set is turned into a jpa query. */
+public enum FetchMode {
+	/** Whole entities, with a {@code left join fetch} per selected association. */
+	JOIN_FETCH,
+	/** Only the selected columns (plus ids), the entity graph is built back from the returned tuples. */
+	PROJECTION,
+	/**
+	 * Whole entities, one fixed query per repository method with a {@code jakarta.persistence.fetchgraph} hint
+	 * built from the selected associations.
+	 */
+	ENTITY_GRAPH,
+	/**
+	 * Only the root entities, associations are left to batch loaders which load them for every entity of the same
+	 * execution level at once.
+	 */
+	DATA_LOADER
+}
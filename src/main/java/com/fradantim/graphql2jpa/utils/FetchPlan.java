@@ -0,0 +1,252 @@
+package com.fradantim.graphql2jpa.utils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.Hibernate;
+
+import com.fradantim.graphql2jpa.metrics.OperationStatistics;
+
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.TypedQuery;
+
+/**
+ * Queries needed to resolve a selection set: a root query (without where clause) and, with
+ * {@link CollectionStrategy#BATCH}, one secondary query per selected collection keyed by the parent ids, whose results
+ * are stitched back into the root results. Associations to second-level cached entities are left out of the root query
+ * and read from the cache afterwards, see {@link CachedReference}.
+ */
+public class FetchPlan<T> {
+
+	private static final String FETCH_GRAPH = "jakarta.persistence.fetchgraph";
+
+	private final Class<T> rootType;
+	private final FetchMode fetchMode;
+	private final CollectionStrategy collectionStrategy;
+	private final String jpql;
+	private final Map<String, String> aliases;
+	private final EntityProjection<T> projection;
+	private final EntityGraph<T> entityGraph;
+	private final List<CollectionFetch> collectionFetches;
+	private final List<CachedReference> cachedReferences;
+	private final int joins;
+
+	FetchPlan(Class<T> rootType, FetchMode fetchMode, CollectionStrategy collectionStrategy, String jpql,
+			Map<String, String> aliases, EntityProjection<T> projection, EntityGraph<T> entityGraph,
+			List<CollectionFetch> collectionFetches, List<CachedReference> cachedReferences, int joins) {
+		this.rootType = rootType;
+		this.fetchMode = fetchMode;
+		this.collectionStrategy = collectionStrategy;
+		this.jpql = jpql;
+		this.aliases = Map.copyOf(aliases);
+		this.projection = projection;
+		this.entityGraph = entityGraph;
+		this.collectionFetches = collectionFetches;
+		this.cachedReferences = cachedReferences;
+		this.joins = joins;
+	}
+
+	public FetchMode getFetchMode() {
+		return fetchMode;
+	}
+
+	public CollectionStrategy getCollectionStrategy() {
+		return collectionStrategy;
+	}
+
+	/** Root query, without where clause. */
+	public String getJpql() {
+		return jpql;
+	}
+
+	/** Alias of every association path joined in the root query, {@code ""} being the root alias. */
+	public Map<String, String> getAliases() {
+		return aliases;
+	}
+
+	/** Joins in the root query. */
+	public int getJoins() {
+		return joins;
+	}
+
+	public List<T> getResultList(EntityManager entityManager, String where, Map<String, ?> parameters) {
+		return OperationStatistics.timeDb(() -> doGetResultList(entityManager, where, parameters));
+	}
+
+	private List<T> doGetResultList(EntityManager entityManager, String where, Map<String, ?> parameters) {
+		List<T> result;
+		if (projection != null) {
+			TypedQuery<Object[]> query = entityManager.createQuery(jpql + where, Object[].class);
+			parameters.forEach(query::setParameter);
+			result = projection.assemble(query.getResultList());
+		} else {
+			TypedQuery<T> query = entityManager.createQuery(jpql + where, rootType);
+			if (entityGraph != null)
+				query.setHint(FETCH_GRAPH, entityGraph);
+			parameters.forEach(query::setParameter);
+			result = query.getResultList();
+		}
+		for (CachedReference cachedReference : cachedReferences)
+			cachedReference.resolve(entityManager, result);
+		fetchCollections(entityManager, result, collectionFetches);
+		return result;
+	}
+
+	private static void fetchCollections(EntityManager entityManager, List<?> owners,
+			List<CollectionFetch> collectionFetches) {
+		for (CollectionFetch collectionFetch : collectionFetches) {
+			Map<Object, List<Object>> parentsById = new LinkedHashMap<>();
+			for (Object owner : owners) {
+				Object parent = collectionFetch.walk(owner);
+				if (parent != null)
+					parentsById.computeIfAbsent(get(collectionFetch.parentIdField, parent), k -> new ArrayList<>())
+							.add(parent);
+			}
+			if (!parentsById.isEmpty())
+				fetchCollections(entityManager, collectionFetch.fetch(entityManager, parentsById),
+						collectionFetch.nested);
+		}
+	}
+
+	private static Object get(Field field, Object target) {
+		try {
+			return Hibernate.unproxy(field.get(Hibernate.unproxy(target)));
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("Could not read " + field, e);
+		}
+	}
+
+	/**
+	 * To-one association not joined in the root query since its target is in the second-level cache. Its proxies are
+	 * initialized from the cache, the ids missing there loaded first with a single {@code :ids} query.
+	 */
+	static class CachedReference {
+		private final Field field;
+		private final Class<?> type;
+		/* keyed by the {@code :ids} parameter */
+		private final String jpql;
+		private final List<CachedReference> nested;
+
+		CachedReference(Field field, Class<?> type, String jpql, List<CachedReference> nested) {
+			field.setAccessible(true);
+			this.field = field;
+			this.type = type;
+			this.jpql = jpql;
+			this.nested = nested;
+		}
+
+		private void resolve(EntityManager entityManager, List<?> owners) {
+			EntityManagerFactory entityManagerFactory = entityManager.getEntityManagerFactory();
+			Set<Object> references = Collections.newSetFromMap(new IdentityHashMap<>());
+			Set<Object> missingIds = new LinkedHashSet<>();
+			for (Object owner : owners) {
+				Object reference = getRaw(field, owner);
+				if (reference == null || !references.add(reference) || Hibernate.isInitialized(reference))
+					continue;
+				Object id = entityManagerFactory.getPersistenceUnitUtil().getIdentifier(reference);
+				if (!entityManagerFactory.getCache().contains(type, id))
+					missingIds.add(id);
+			}
+			if (!missingIds.isEmpty())
+				entityManager.createQuery(jpql, type).setParameter("ids", missingIds).getResultList();
+
+			List<Object> resolved = new ArrayList<>(references.size());
+			for (Object reference : references) {
+				Hibernate.initialize(reference);
+				resolved.add(Hibernate.unproxy(reference));
+			}
+			for (CachedReference cachedReference : nested)
+				cachedReference.resolve(entityManager, resolved);
+		}
+
+		/* value as stored in the owner, possibly an uninitialized proxy */
+		private static Object getRaw(Field field, Object owner) {
+			try {
+				return field.get(Hibernate.unproxy(owner));
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException("Could not read " + field, e);
+			}
+		}
+	}
+
+	/**
+	 * Secondary query loading one collection of the entities found through {@code parentPath} (to-one hops) from the
+	 * previous level results.
+	 */
+	static class CollectionFetch {
+		private final List<Field> parentPath;
+		private final Field parentIdField;
+		private final Field collectionField;
+		/* keyed by the {@code :ids} parameter */
+		private final String jpql;
+		private final EntityProjection<?> projection;
+		private final EntityGraph<?> entityGraph;
+		private final List<CollectionFetch> nested;
+
+		CollectionFetch(List<Field> parentPath, Field parentIdField, Field collectionField, String jpql,
+				EntityProjection<?> projection, EntityGraph<?> entityGraph, List<CollectionFetch> nested) {
+			parentPath.forEach(f -> f.setAccessible(true));
+			parentIdField.setAccessible(true);
+			collectionField.setAccessible(true);
+			this.parentPath = parentPath;
+			this.parentIdField = parentIdField;
+			this.collectionField = collectionField;
+			this.jpql = jpql;
+			this.projection = projection;
+			this.entityGraph = entityGraph;
+			this.nested = nested;
+		}
+
+		private Object walk(Object owner) {
+			Object current = owner;
+			for (Field field : parentPath) {
+				if (current == null)
+					return null;
+				current = get(field, current);
+			}
+			return current;
+		}
+
+		/** Loads the collection into every parent and returns the loaded elements. */
+		@SuppressWarnings("unchecked")
+		private List<Object> fetch(EntityManager entityManager, Map<Object, List<Object>> parentsById) {
+			List<Object> children = new ArrayList<>();
+			if (projection == null) {
+				// managed parents get their collection initialized by the fetch join or graph
+				TypedQuery<Object> query = entityManager.createQuery(jpql, Object.class);
+				if (entityGraph != null)
+					query.setHint(FETCH_GRAPH, entityGraph);
+				List<?> parents = query.setParameter("ids", parentsById.keySet()).getResultList();
+				for (Object parent : parents)
+					((Collection<Object>) get(collectionField, parent))
+							.forEach(child -> children.add(Hibernate.unproxy(child)));
+				return children;
+			}
+
+			List<Object[]> rows = entityManager.createQuery(jpql, Object[].class)
+					.setParameter("ids", parentsById.keySet()).getResultList();
+			try {
+				for (Object loaded : projection.assemble(rows)) {
+					Collection<Object> collection = (Collection<Object>) collectionField.get(loaded);
+					for (Object parent : parentsById.get(parentIdField.get(loaded)))
+						collectionField.set(parent, new HashSet<>(collection));
+					children.addAll(collection);
+				}
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException("Could not set " + collectionField, e);
+			}
+			return children;
+		}
+	}
+}
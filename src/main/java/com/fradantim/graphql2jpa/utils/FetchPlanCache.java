@@ -0,0 +1,126 @@
+package com.fradantim.graphql2jpa.utils;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded, least recently used, cache of {@link FetchPlan}s. Repeated selection sets of the same shape skip the
+ * translation and, since they produce the very same jpql strings, hit Hibernate's query interpretation cache. Pinned
+ * plans, e.g. those of persisted queries, are kept apart from the bound until unpinned, even with caching disabled.
+ */
+public class FetchPlanCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(FetchPlanCache.class);
+
+	private final int maxSize;
+	private final Map<String, FetchPlan<?>> plans;
+	/* guarded by plans */
+	private final Map<String, Pinned> pinned = new HashMap<>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/** @param maxSize {@code 0} disables caching */
+	public FetchPlanCache(int maxSize) {
+		this.maxSize = maxSize;
+		this.plans = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, FetchPlan<?>> eldest) {
+				return size() > FetchPlanCache.this.maxSize;
+			}
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> FetchPlan<T> get(String key, Supplier<FetchPlan<T>> planBuilder) {
+		FetchPlan<T> plan;
+		synchronized (plans) {
+			Pinned pin = pinned.get(key);
+			plan = (FetchPlan<T>) (pin != null ? pin.plan : plans.get(key));
+		}
+		if (plan != null) {
+			hits.incrementAndGet();
+			return plan;
+		}
+
+		misses.incrementAndGet();
+		logger.debug("fetch plan cache miss: {}", key);
+		plan = planBuilder.get();
+		synchronized (plans) {
+			plans.put(key, plan);
+		}
+		return plan;
+	}
+
+	/** Keeps the plan of {@code key}, built if missing, until unpinned as many times as pinned. */
+	public void pin(String key, Supplier<? extends FetchPlan<?>> planBuilder) {
+		FetchPlan<?> cached;
+		synchronized (plans) {
+			Pinned pin = pinned.get(key);
+			if (pin != null) {
+				pin.count++;
+				return;
+			}
+			cached = plans.get(key);
+		}
+		FetchPlan<?> plan = cached != null ? cached : planBuilder.get();
+		synchronized (plans) {
+			pinned.computeIfAbsent(key, k -> new Pinned(plan)).count++;
+		}
+	}
+
+	public void unpin(String key) {
+		synchronized (plans) {
+			Pinned pin = pinned.get(key);
+			if (pin != null && --pin.count == 0)
+				pinned.remove(key);
+		}
+	}
+
+	public int getPinnedCount() {
+		synchronized (plans) {
+			return pinned.size();
+		}
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public int size() {
+		synchronized (plans) {
+			return plans.size();
+		}
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/** Pinned plans are kept. */
+	public void clear() {
+		synchronized (plans) {
+			plans.clear();
+		}
+	}
+
+	private static class Pinned {
+		private final FetchPlan<?> plan;
+		private int count;
+
+		private Pinned(FetchPlan<?> plan) {
+			this.plan = plan;
+		}
+	}
+}
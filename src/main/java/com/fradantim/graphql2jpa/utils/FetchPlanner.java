@@ -0,0 +1,117 @@
+package com.fradantim.graphql2jpa.utils;
+
+import java.util.concurrent.Callable;
+import java.util.function.Predicate;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import com.fradantim.graphql2jpa.metrics.OperationStatistics;
+
+import graphql.schema.DataFetchingFieldSelectionSet;
+import jakarta.persistence.EntityManager;
+
+/**
+ * Resolves the {@link FetchPlan} of a selection set over any entity with the configured {@link FetchMode} and
+ * {@link CollectionStrategy}, going through the {@link FetchPlanCache}. With the second-level cache enabled, to-one
+ * associations to cached entities are read from it instead of being joined.
+ */
+public class FetchPlanner {
+
+	private static final ThreadLocal<CollectionStrategy> collectionStrategyOverride = new ThreadLocal<>();
+
+	private final FetchMode fetchMode;
+	private final CollectionStrategy collectionStrategy;
+	private final FetchPlanCache fetchPlanCache;
+	private final boolean secondLevelCache;
+
+	public FetchPlanner(FetchMode fetchMode, CollectionStrategy collectionStrategy, FetchPlanCache fetchPlanCache) {
+		this(fetchMode, collectionStrategy, fetchPlanCache, false);
+	}
+
+	public FetchPlanner(FetchMode fetchMode, CollectionStrategy collectionStrategy, FetchPlanCache fetchPlanCache,
+			boolean secondLevelCache) {
+		this.fetchMode = fetchMode;
+		this.collectionStrategy = collectionStrategy;
+		this.fetchPlanCache = fetchPlanCache;
+		this.secondLevelCache = secondLevelCache;
+	}
+
+	public FetchMode getFetchMode() {
+		return fetchMode;
+	}
+
+	/** The configured strategy, unless overridden for the current thread by {@link #withCollectionStrategy}. */
+	public CollectionStrategy getCollectionStrategy() {
+		CollectionStrategy override = collectionStrategyOverride.get();
+		return override != null ? override : collectionStrategy;
+	}
+
+	/** Runs {@code task} planning collections with {@code strategy}, in the current thread. */
+	public <T> T withCollectionStrategy(CollectionStrategy strategy, Callable<T> task) throws Exception {
+		CollectionStrategy previous = collectionStrategyOverride.get();
+		collectionStrategyOverride.set(strategy);
+		try {
+			return task.call();
+		} finally {
+			if (previous == null)
+				collectionStrategyOverride.remove();
+			else
+				collectionStrategyOverride.set(previous);
+		}
+	}
+
+	public <T> FetchPlan<T> getPlan(EntityManager entityManager, Class<T> type,
+			DataFetchingFieldSelectionSet dataSelectionSet) {
+		return getPlan(entityManager, type, dataSelectionSet, getKey(type, dataSelectionSet));
+	}
+
+	/** @param key of the plan, see {@link #getKey} */
+	public <T> FetchPlan<T> getPlan(EntityManager entityManager, Class<T> type,
+			DataFetchingFieldSelectionSet dataSelectionSet, String key) {
+		long start = System.nanoTime();
+		CollectionStrategy collectionStrategy = getCollectionStrategy();
+		FetchPlan<T> plan = fetchPlanCache.get(key,
+				() -> buildPlan(entityManager, type, dataSelectionSet, collectionStrategy));
+		OperationStatistics.recordTranslation(System.nanoTime() - start, plan.getJoins());
+		return plan;
+	}
+
+	/**
+	 * Builds the plan of {@code type} for {@code dataSelectionSet} ahead of its first use and keeps it, see
+	 * {@link FetchPlanCache#pin}.
+	 *
+	 * @return its key, to {@link #unpinPlan} it
+	 */
+	public String pinPlan(EntityManager entityManager, Class<?> type, DataFetchingFieldSelectionSet dataSelectionSet) {
+		String key = getKey(type, dataSelectionSet);
+		CollectionStrategy collectionStrategy = getCollectionStrategy();
+		fetchPlanCache.pin(key, () -> buildPlan(entityManager, type, dataSelectionSet, collectionStrategy));
+		return key;
+	}
+
+	public void unpinPlan(String key) {
+		fetchPlanCache.unpin(key);
+	}
+
+	private <T> FetchPlan<T> buildPlan(EntityManager entityManager, Class<T> type,
+			DataFetchingFieldSelectionSet dataSelectionSet, CollectionStrategy collectionStrategy) {
+		EntityMetadata metadata = EntityMetadata.of(entityManager.getMetamodel(), type);
+		EntitySelection selection = EntitySelection.of(entityManager.getMetamodel(), type, dataSelectionSet);
+		return GraphQLEntityFetchTranslator.buildPlan(entityManager, fetchMode, collectionStrategy, metadata.getAlias(),
+				selection, secondLevelCache ? cachedEntities(entityManager) : null);
+	}
+
+	/** Key of the plan of {@code type} for {@code dataSelectionSet}, the same for every selection of its shape. */
+	public String getKey(Class<?> type, DataFetchingFieldSelectionSet dataSelectionSet) {
+		// data loader plans only load the root entity, whatever the selection
+		String shape = fetchMode == FetchMode.DATA_LOADER ? ""
+				: GraphQLEntityFetchTranslator.buildShapeKey(dataSelectionSet, fetchMode == FetchMode.PROJECTION);
+		return fetchMode + "/" + getCollectionStrategy() + "/" + type.getName() + ":" + shape;
+	}
+
+	private static Predicate<Class<?>> cachedEntities(EntityManager entityManager) {
+		SessionFactoryImplementor sessionFactory = entityManager.getEntityManagerFactory()
+				.unwrap(SessionFactoryImplementor.class);
+		return type -> sessionFactory.getMappingMetamodel().getEntityDescriptor(type).canReadFromCache();
+	}
+}
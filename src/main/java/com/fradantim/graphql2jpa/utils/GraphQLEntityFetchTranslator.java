@@ -1,13 +1,27 @@
 package com.fradantim.graphql2jpa.utils;
 
+import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fradantim.graphql2jpa.utils.EntityMetadata.AttributeMetadata;
+import com.fradantim.graphql2jpa.utils.EntityProjection.ProjectedEntity;
+import com.fradantim.graphql2jpa.utils.FetchPlan.CachedReference;
+import com.fradantim.graphql2jpa.utils.FetchPlan.CollectionFetch;
+
 import graphql.schema.DataFetchingFieldSelectionSet;
 import graphql.schema.SelectedField;
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Subgraph;
 
 public class GraphQLEntityFetchTranslator {
 
@@ -23,6 +37,29 @@ public class GraphQLEntityFetchTranslator {
 		return fetchContent.toString();
 	}
 
+	public static String buildFetch(String parentAlias, EntitySelection selection) {
+		return buildFetch(parentAlias, selection, new HashMap<>());
+	}
+
+	/** @param aliases filled with the alias of every joined association path, e.g. {@code author.country -> c0} */
+	private static String buildFetch(String parentAlias, EntitySelection selection, Map<String, String> aliases) {
+		StringBuilder fetchContent = new StringBuilder();
+		buildFetch(fetchContent, "", parentAlias, selection, new HashMap<>(), aliases);
+		logger.debug("jpql fetch: {}", fetchContent);
+		return fetchContent.toString();
+	}
+
+	private static void buildFetch(StringBuilder fetch, String parentPath, String parentAlias,
+			EntitySelection selection, Map<String, Integer> aliasCounter, Map<String, String> aliases) {
+		selection.getAssociations().forEach((name, target) -> {
+			String fieldAlias = getNextAlias(name.substring(0, 1).toLowerCase(), aliasCounter);
+			String path = parentPath + name;
+			aliases.put(path, fieldAlias);
+			fetch.append(" left join fetch " + parentAlias + "." + name + " " + fieldAlias);
+			buildFetch(fetch, path + ".", fieldAlias, target, aliasCounter, aliases);
+		});
+	}
+
 	private static void buildFetch(StringBuilder fetch, String parentAlias,
 			DataFetchingFieldSelectionSet dataSelectionSet, Map<String, Integer> aliasCounter) {
 		dataSelectionSet.getImmediateFields().stream().filter(GraphQLEntityFetchTranslator::isComplexObject)
@@ -33,6 +70,165 @@ public class GraphQLEntityFetchTranslator {
 				});
 	}
 
+	/**
+	 * @param entityManager  only used to create the {@link EntityGraph}s of {@link FetchMode#ENTITY_GRAPH}, which are
+	 *                       not bound to it
+	 * @param cachedEntities entities in the second-level cache, {@code null} if disabled. With
+	 *                       {@link FetchMode#JOIN_FETCH} and {@link FetchMode#ENTITY_GRAPH} top level to-one associations
+	 *                       reaching only those are not joined but read from the cache
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> FetchPlan<T> buildPlan(EntityManager entityManager, FetchMode fetchMode,
+			CollectionStrategy collectionStrategy, String rootAlias, EntitySelection selection,
+			Predicate<Class<?>> cachedEntities) {
+		Class<T> rootType = (Class<T>) selection.getMetadata().getJavaType();
+		EntitySelection rootSelection = collectionStrategy == CollectionStrategy.BATCH
+				? selection.withoutCollections()
+				: selection;
+		List<CachedReference> cachedReferences = new ArrayList<>();
+		if (cachedEntities != null && (fetchMode == FetchMode.JOIN_FETCH || fetchMode == FetchMode.ENTITY_GRAPH)) {
+			List<String> names = new ArrayList<>();
+			for (Map.Entry<String, EntitySelection> association : rootSelection.getAssociations().entrySet()) {
+				String name = association.getKey();
+				if (!rootSelection.isCollection(name) && association.getValue().isCachedReference(cachedEntities)) {
+					names.add(name);
+					cachedReferences.add(
+							buildCachedReference(rootSelection.getAttribute(name).getField(), association.getValue()));
+				}
+			}
+			rootSelection = rootSelection.without(names);
+		}
+		List<CollectionFetch> collectionFetches = collectionStrategy == CollectionStrategy.BATCH
+				&& fetchMode != FetchMode.DATA_LOADER
+						? buildCollectionFetches(entityManager, fetchMode, selection, List.of())
+						: List.of();
+
+		Map<String, String> aliases = new HashMap<>();
+		aliases.put("", rootAlias);
+		String select = "select " + rootAlias + " from " + selection.getMetadata().getEntityName() + " " + rootAlias;
+		int joins = fetchMode == FetchMode.DATA_LOADER ? 0 : rootSelection.getJoinCount();
+		return switch (fetchMode) {
+		case PROJECTION -> {
+			EntityProjection<T> projection = buildProjection(rootAlias, rootSelection, aliases);
+			yield new FetchPlan<>(rootType, fetchMode, collectionStrategy, projection.getJpql(), aliases, projection,
+					null, collectionFetches, cachedReferences, joins);
+		}
+		case ENTITY_GRAPH -> new FetchPlan<>(rootType, fetchMode, collectionStrategy, select, aliases, null,
+				buildEntityGraph(entityManager, rootType, rootSelection), collectionFetches, cachedReferences, joins);
+		case JOIN_FETCH -> new FetchPlan<>(rootType, fetchMode, collectionStrategy,
+				select + buildFetch(rootAlias, rootSelection, aliases), aliases, null, null, collectionFetches,
+				cachedReferences, joins);
+		case DATA_LOADER -> new FetchPlan<>(rootType, fetchMode, collectionStrategy, select, aliases, null, null,
+				collectionFetches, cachedReferences, joins);
+		};
+	}
+
+	private static CachedReference buildCachedReference(Field field, EntitySelection target) {
+		EntityMetadata metadata = target.getMetadata();
+		String jpql = "select e from " + metadata.getEntityName() + " e where e." + metadata.getId().getName()
+				+ " in :ids";
+		List<CachedReference> nested = new ArrayList<>();
+		target.getAssociations().forEach((name, association) -> nested
+				.add(buildCachedReference(target.getAttribute(name).getField(), association)));
+		return new CachedReference(field, metadata.getJavaType(), jpql, nested);
+	}
+
+	private static List<CollectionFetch> buildCollectionFetches(EntityManager entityManager, FetchMode fetchMode,
+			EntitySelection selection, List<Field> parentPath) {
+		List<CollectionFetch> collectionFetches = new ArrayList<>();
+		selection.getAssociations().forEach((name, target) -> {
+			Field field = selection.getAttribute(name).getField();
+			if (!selection.isCollection(name)) {
+				List<Field> path = new ArrayList<>(parentPath);
+				path.add(field);
+				collectionFetches.addAll(buildCollectionFetches(entityManager, fetchMode, target, path));
+				return;
+			}
+
+			EntitySelection parentSelection = selection.onlyAssociation(name);
+			String where = " where p." + selection.getIdAttribute().getName() + " in :ids";
+			String select = "select p from " + selection.getMetadata().getEntityName() + " p";
+			EntityProjection<?> projection = null;
+			EntityGraph<?> entityGraph = null;
+			String jpql = switch (fetchMode) {
+			case PROJECTION -> {
+				projection = buildProjection("p", parentSelection);
+				yield projection.getJpql() + where;
+			}
+			case ENTITY_GRAPH -> {
+				entityGraph = buildEntityGraph(entityManager, selection.getMetadata().getJavaType(), parentSelection);
+				yield select + where;
+			}
+			case JOIN_FETCH, DATA_LOADER -> select + buildFetch("p", parentSelection) + where;
+			};
+			collectionFetches.add(new CollectionFetch(parentPath, selection.getIdAttribute().getField(),
+					field, jpql, projection, entityGraph,
+					buildCollectionFetches(entityManager, fetchMode, target, List.of())));
+		});
+		return collectionFetches;
+	}
+
+	public static <T> EntityGraph<T> buildEntityGraph(EntityManager entityManager, Class<T> type,
+			EntitySelection selection) {
+		EntityGraph<T> entityGraph = entityManager.createEntityGraph(type);
+		addSubgraphs(selection, name -> entityGraph.addSubgraph(name));
+		return entityGraph;
+	}
+
+	private static void addSubgraphs(EntitySelection selection, Function<String, Subgraph<?>> subgraphFactory) {
+		selection.getAssociations().forEach((name, target) -> {
+			Subgraph<?> subgraph = subgraphFactory.apply(name);
+			addSubgraphs(target, subgraphName -> subgraph.addSubgraph(subgraphName));
+		});
+	}
+
+	public static <T> EntityProjection<T> buildProjection(String rootAlias, EntitySelection selection) {
+		return buildProjection(rootAlias, selection, new HashMap<>());
+	}
+
+	private static <T> EntityProjection<T> buildProjection(String rootAlias, EntitySelection selection,
+			Map<String, String> aliases) {
+		List<String> select = new ArrayList<>();
+		StringBuilder from = new StringBuilder("from " + selection.getMetadata().getEntityName() + " " + rootAlias);
+		ProjectedEntity root = buildProjection(select, from, "", rootAlias, selection, new HashMap<>(), aliases);
+		String jpql = "select " + String.join(", ", select) + " " + from;
+		logger.debug("jpql projection: {}", jpql);
+		return new EntityProjection<>(jpql, root);
+	}
+
+	private static ProjectedEntity buildProjection(List<String> select, StringBuilder from, String parentPath,
+			String alias, EntitySelection selection, Map<String, Integer> aliasCounter, Map<String, String> aliases) {
+		AttributeMetadata idAttribute = selection.getIdAttribute();
+		select.add(alias + "." + idAttribute.getName());
+		ProjectedEntity projected = new ProjectedEntity(selection.getMetadata().getJavaType(),
+				idAttribute.getField(), select.size() - 1);
+
+		selection.getAttributes().forEach(name -> {
+			select.add(alias + "." + name);
+			projected.addAttribute(selection.getAttribute(name).getField(), select.size() - 1);
+		});
+
+		selection.getAssociations().forEach((name, target) -> {
+			String fieldAlias = getNextAlias(name.substring(0, 1).toLowerCase(), aliasCounter);
+			String path = parentPath + name;
+			aliases.put(path, fieldAlias);
+			from.append(" left join " + alias + "." + name + " " + fieldAlias);
+			projected.addAssociation(selection.getAttribute(name).getField(),
+					selection.isCollection(name),
+					buildProjection(select, from, path + ".", fieldAlias, target, aliasCounter, aliases));
+		});
+		return projected;
+	}
+
+	/**
+	 * Normalized shape of a selection set: sorted paths of the selected associations, and of the selected scalars
+	 * when {@code includeScalars}. Selection sets with the same shape resolve to the same {@link FetchPlan}.
+	 */
+	public static String buildShapeKey(DataFetchingFieldSelectionSet dataSelectionSet, boolean includeScalars) {
+		return dataSelectionSet.getFields().stream().filter(f -> includeScalars || isComplexObject(f))
+				.map(SelectedField::getQualifiedName).sorted().distinct().collect(Collectors.joining(","));
+	}
+
 	private static boolean isComplexObject(SelectedField field) {
 		return !field.getSelectionSet().getImmediateFields().isEmpty();
 	}
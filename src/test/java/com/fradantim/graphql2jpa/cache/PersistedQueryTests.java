@@ -0,0 +1,244 @@
+package com.fradantim.graphql2jpa.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.graphql.execution.GraphQlSource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fradantim.graphql2jpa.utils.FetchPlanCache;
+import com.fradantim.graphql2jpa.utils.FetchPlanner;
+
+import graphql.ExecutionInput;
+import jakarta.persistence.EntityManager;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {
+		"graphql2jpa.persisted-queries.manifest=classpath:persisted-queries.json" })
+class PersistedQueryTests {
+
+	/* as in persisted-queries.json */
+	private static final String MANIFEST_QUERY = "query manifestBooks "
+			+ "{ findBookByIds(ids: [1, 2]) { name author { name } reviewers { name } } }";
+	private static final String MANIFEST_INCLUDED_QUERY = "query manifestIncluded($f: Boolean!) "
+			+ "{ findBookById(id: 1) { name isbn @include(if: $f) } }";
+
+	@Value("http://localhost:${local.server.port}")
+	private String localUrl;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private DocumentCache documentCache;
+
+	@Autowired
+	private FetchPlanCache fetchPlanCache;
+
+	@Autowired
+	private FetchPlanner fetchPlanner;
+
+	@Autowired
+	private GraphQlSource graphQlSource;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private PersistedQueries persistedQueries;
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void registeredWithQueryTextTest() {
+		String query = "query persisted($id: ID) { findBookById(id: $id) { name isbn } }";
+		String hash = PersistedQueries.hash(query);
+
+		ResponseEntity<Map<String, Object>> notFound = post(Map.of("variables", Map.of("id", 1), "extensions",
+				persistedQuery(hash)));
+		assertThat(notFound.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat((List<Map<String, Object>>) notFound.getBody().get("errors")).singleElement()
+				.extracting(e -> e.get("message")).isEqualTo(PersistedQueryFilter.NOT_FOUND);
+
+		ResponseEntity<Map<String, Object>> registered = post(Map.of("query", query, "variables", Map.of("id", 1),
+				"extensions", persistedQuery(hash)));
+		ResponseEntity<Map<String, Object>> byHash = post(Map.of("variables", Map.of("id", 1), "extensions",
+				persistedQuery(hash)));
+		assertThat(registered.getBody()).doesNotContainKey("errors");
+		assertThat(byHash.getBody().get("data")).isEqualTo(registered.getBody().get("data"));
+	}
+
+	@Test
+	void hashMismatchTest() {
+		ResponseEntity<Map<String, Object>> response = post(Map.of("query", "{ findBookById(id: 1) { name } }",
+				"extensions", persistedQuery(PersistedQueries.hash("{ findBookById(id: 2) { name } }"))));
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
+	@Test
+	void malformedBodyTest() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest(HttpMethod.POST.name(), "/graphql");
+		request.setContent("{\"extensions\": {\"persistedQuery\": ".getBytes(StandardCharsets.UTF_8));
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		MockFilterChain chain = new MockFilterChain();
+		new PersistedQueryFilter("/graphql", persistedQueries, new ObjectMapper(), 1024).doFilter(request, response,
+				chain);
+
+		assertThat(response.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+		assertThat(response.getContentAsString()).contains(PersistedQueryFilter.MALFORMED, "BAD_REQUEST");
+		assertThat(chain.getRequest()).isNull();
+	}
+
+	@Test
+	void bodyTooLargeTest() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest(HttpMethod.POST.name(), "/graphql");
+		request.setContent("{\"query\": \"{ findBookById(id: 1) { name } }\"}".getBytes(StandardCharsets.UTF_8));
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		MockFilterChain chain = new MockFilterChain();
+		new PersistedQueryFilter("/graphql", persistedQueries, new ObjectMapper(), 16).doFilter(request, response,
+				chain);
+
+		assertThat(response.getStatus()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE.value());
+		assertThat(chain.getRequest()).isNull();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void manifestPrecompiledTest() {
+		long documentMisses = documentCache.getMissCount();
+		long planMisses = fetchPlanCache.getMissCount();
+
+		ResponseEntity<Map<String, Object>> response = post(
+				Map.of("extensions", persistedQuery(PersistedQueries.hash(MANIFEST_QUERY))));
+		assertThat(response.getBody()).doesNotContainKey("errors");
+		assertThat((List<?>) ((Map<String, Object>) response.getBody().get("data")).get("findBookByIds")).hasSize(2);
+
+		// parsed, validated and translated at startup
+		assertThat(documentCache.getMissCount()).isEqualTo(documentMisses);
+		assertThat(fetchPlanCache.getMissCount()).isEqualTo(planMisses);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void variableDependentRegisteredTest() {
+		String query = "query included($f: Boolean!) { findBookById(id: 1) { name isbn @include(if: $f) } }";
+		String hash = PersistedQueries.hash(query);
+
+		ResponseEntity<Map<String, Object>> registered = post(Map.of("query", query, "variables", Map.of("f", true),
+				"extensions", persistedQuery(hash)));
+		assertThat(registered.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(registered.getBody()).doesNotContainKey("errors");
+
+		ResponseEntity<Map<String, Object>> byHash = post(Map.of("variables", Map.of("f", false), "extensions",
+				persistedQuery(hash)));
+		assertThat(byHash.getBody()).doesNotContainKey("errors");
+		assertThat((Map<String, Object>) ((Map<String, Object>) byHash.getBody().get("data")).get("findBookById"))
+				.containsKey("name").doesNotContainKey("isbn");
+
+		// from the manifest
+		assertThat(persistedQueries.get(PersistedQueries.hash(MANIFEST_INCLUDED_QUERY))).isPresent();
+	}
+
+	@Test
+	void manifestNotEvictedTest() {
+		PersistedQueries persistedQueries = new PersistedQueries(1, graphQlSource, fetchPlanner, entityManager);
+		String manifest = "{ findBookById(id: 1) { name } }";
+		String first = "{ findBookById(id: 2) { name } }";
+		String second = "{ findBookById(id: 3) { name } }";
+		assertThat(persistedQueries.registerManifest(manifest)).isTrue();
+		assertThat(persistedQueries.register(first)).isTrue();
+		assertThat(persistedQueries.register(second)).isTrue();
+
+		assertThat(persistedQueries.get(PersistedQueries.hash(manifest))).contains(manifest);
+		assertThat(persistedQueries.get(PersistedQueries.hash(first))).isEmpty();
+		assertThat(persistedQueries.get(PersistedQueries.hash(second))).contains(second);
+	}
+
+	@Test
+	void uncachedPrecompiledTest() {
+		// neither documents nor plans cached
+		DocumentCache documentCache = new DocumentCache(0);
+		FetchPlanCache fetchPlanCache = new FetchPlanCache(0);
+		FetchPlanner fetchPlanner = new FetchPlanner(this.fetchPlanner.getFetchMode(),
+				this.fetchPlanner.getCollectionStrategy(), fetchPlanCache);
+		PersistedQueries persistedQueries = new PersistedQueries(1, graphQlSource, fetchPlanner, entityManager);
+		documentCache.setPersistedQueries(persistedQueries);
+		String first = "{ findBookById(id: 1) { name author { name } } }";
+		String second = "{ findBookByIds(ids: [1]) { isbn } }";
+		assertThat(persistedQueries.register(first)).isTrue();
+		assertThat(fetchPlanCache.getPinnedCount()).isEqualTo(1);
+
+		documentCache.getDocument(ExecutionInput.newExecutionInput(first).build(), graphQlSource.schema());
+		assertThat(documentCache.getHitCount()).isEqualTo(1);
+		assertThat(documentCache.getMissCount()).isZero();
+
+		// evicting the first unpins its plan
+		assertThat(persistedQueries.register(second)).isTrue();
+		assertThat(fetchPlanCache.getPinnedCount()).isEqualTo(1);
+		documentCache.getDocument(ExecutionInput.newExecutionInput(first).build(), graphQlSource.schema());
+		assertThat(documentCache.getMissCount()).isEqualTo(1);
+	}
+
+	@Test
+	void bufferedBodyReadListenerTest() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest(HttpMethod.POST.name(), "/graphql");
+		request.setContent("{\"query\": \"{ findBookById(id: 1) { name } }\"}".getBytes(StandardCharsets.UTF_8));
+		MockFilterChain chain = new MockFilterChain();
+		new PersistedQueryFilter("/graphql", persistedQueries, new ObjectMapper(), 1024).doFilter(request,
+				new MockHttpServletResponse(), chain);
+
+		ServletInputStream input = chain.getRequest().getInputStream();
+		ByteArrayOutputStream read = new ByteArrayOutputStream();
+		List<String> events = new ArrayList<>();
+		input.setReadListener(new ReadListener() {
+			@Override
+			public void onDataAvailable() throws IOException {
+				events.add("data");
+				while (input.isReady() && !input.isFinished())
+					read.write(input.read());
+			}
+
+			@Override
+			public void onAllDataRead() {
+				events.add("all");
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				events.add("error");
+			}
+		});
+		assertThat(events).containsExactly("data", "all");
+		assertThat(read.toByteArray()).isEqualTo(request.getContentAsByteArray());
+	}
+
+	private static Map<String, Object> persistedQuery(String hash) {
+		return Map.of("persistedQuery", Map.of("version", 1, "sha256Hash", hash));
+	}
+
+	private ResponseEntity<Map<String, Object>> post(Map<String, Object> body) {
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql").body(body);
+		return restTemplate.exchange(request, new ParameterizedTypeReference<>() {
+		});
+	}
+}
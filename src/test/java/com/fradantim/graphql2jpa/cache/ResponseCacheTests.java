@@ -0,0 +1,173 @@
+package com.fradantim.graphql2jpa.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fradantim.graphql2jpa.cache.ResponseCache.EntityTag;
+import com.fradantim.graphql2jpa.entity.Book;
+import com.fradantim.graphql2jpa.entity.Person;
+import com.fradantim.graphql2jpa.entity.Quote;
+import com.fradantim.graphql2jpa.repository.BookRepository;
+import com.fradantim.graphql2jpa.repository.PersonRepository;
+
+import jakarta.persistence.EntityManager;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "graphql2jpa.response-cache.enabled=true")
+class ResponseCacheTests {
+
+	private static final String QUERY = "query book($id: ID) { findBookById(id: $id) { id name author { name } } }";
+
+	@Value("http://localhost:${local.server.port}")
+	private String localUrl;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private ResponseCache responseCache;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private PersonRepository personRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@BeforeEach
+	void clear() {
+		responseCache.clear();
+	}
+
+	@Test
+	void cachedByNormalizedDocumentAndVariablesTest() {
+		ResponseEntity<Map<String, Object>> miss = query(QUERY, Map.of("id", 1));
+		ResponseEntity<Map<String, Object>> hit = query("# same query\n" + QUERY.replace(" ", "  "), Map.of("id", 1));
+		assertThat(miss.getHeaders().getFirst(ResponseCacheInterceptor.CACHE_HEADER)).isEqualTo("MISS");
+		assertThat(hit.getHeaders().getFirst(ResponseCacheInterceptor.CACHE_HEADER)).isEqualTo("HIT");
+		// execution extensions, such as the query cost, are not cached
+		assertThat(hit.getBody().get("data")).isEqualTo(miss.getBody().get("data"));
+
+		assertThat(query(QUERY, Map.of("id", 2)).getHeaders().getFirst(ResponseCacheInterceptor.CACHE_HEADER))
+				.isEqualTo("MISS");
+		assertThat(responseCache.size()).isEqualTo(2);
+	}
+
+	@Test
+	void invalidatedByEntityTest() {
+		query(QUERY, Map.of("id", 1));
+		query(QUERY, Map.of("id", 2));
+
+		assertThat(responseCache.invalidate(Book.class, 3)).isZero();
+		assertThat(responseCache.invalidate(Book.class, 1)).isOne();
+		assertThat(query(QUERY, Map.of("id", 1)).getHeaders().getFirst(ResponseCacheInterceptor.CACHE_HEADER))
+				.isEqualTo("MISS");
+		assertThat(query(QUERY, Map.of("id", 2)).getHeaders().getFirst(ResponseCacheInterceptor.CACHE_HEADER))
+				.isEqualTo("HIT");
+
+		// nested entities are tagged too
+		Person author = bookRepository.findById(2).orElseThrow().getAuthor();
+		assertThat(responseCache.invalidate(Person.class, author.getId())).isPositive();
+		assertThat(query(QUERY, Map.of("id", 2)).getHeaders().getFirst(ResponseCacheInterceptor.CACHE_HEADER))
+				.isEqualTo("MISS");
+	}
+
+	@Test
+	void aggregatesInvalidatedByElementTypeTest() {
+		String countQuery = "query count($id: ID) { findBookById(id: $id) { id quotesCount } }";
+		query(countQuery, Map.of("id", 2));
+		query(QUERY, Map.of("id", 2));
+
+		// no quote in the response, yet any quote may change the count
+		assertThat(responseCache.invalidate(Quote.class, 99)).isOne();
+		assertThat(query(countQuery, Map.of("id", 2)).getHeaders().getFirst(ResponseCacheInterceptor.CACHE_HEADER))
+				.isEqualTo("MISS");
+		assertThat(query(QUERY, Map.of("id", 2)).getHeaders().getFirst(ResponseCacheInterceptor.CACHE_HEADER))
+				.isEqualTo("HIT");
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void invalidatedOnCommitTest() {
+		query(QUERY, Map.of("id", 1));
+		String name = rename(1, "Renamed");
+		try {
+			ResponseEntity<Map<String, Object>> response = query(QUERY, Map.of("id", 1));
+			assertThat(response.getHeaders().getFirst(ResponseCacheInterceptor.CACHE_HEADER)).isEqualTo("MISS");
+			Map<String, Object> book = (Map<String, Object>) ((Map<String, Object>) response.getBody().get("data"))
+					.get("findBookById");
+			assertThat(book).containsEntry("name", "Renamed");
+		} finally {
+			rename(1, name);
+		}
+	}
+
+	@Test
+	void filledAfterInvalidationNotCachedTest() {
+		long version = responseCache.getVersion();
+		responseCache.invalidate(Book.class, 1);
+		responseCache.invalidate(Quote.class, 7);
+
+		byte[] data = "{}".getBytes(StandardCharsets.UTF_8);
+		assertThat(responseCache.put("book 1", data, Set.of(new EntityTag(Book.class, 1)), version)).isFalse();
+		assertThat(responseCache.put("quote counts", data, Set.of(new EntityTag(Quote.class, null)), version))
+				.isFalse();
+		assertThat(responseCache.put("book 2", data, Set.of(new EntityTag(Book.class, 2)), version)).isTrue();
+		assertThat(responseCache.put("book 1", data, Set.of(new EntityTag(Book.class, 1)),
+				responseCache.getVersion())).isTrue();
+		assertThat(responseCache.size()).isEqualTo(2);
+	}
+
+	@Test
+	void collectionChangeInvalidatedOnCommitTest() {
+		query(QUERY, Map.of("id", 4));
+		assertThat(responseCache.size()).isOne();
+		try {
+			transactionTemplate.executeWithoutResult(status -> {
+				bookRepository.findById(4).orElseThrow().getReviewers().add(personRepository.getReferenceById(1));
+				entityManager.flush();
+				// flushed, not committed
+				assertThat(responseCache.size()).isOne();
+			});
+			assertThat(responseCache.size()).isZero();
+		} finally {
+			transactionTemplate.executeWithoutResult(
+					status -> bookRepository.findById(4).orElseThrow().getReviewers().clear());
+		}
+	}
+
+	private String rename(Integer bookId, String name) {
+		return transactionTemplate.execute(status -> {
+			Book book = bookRepository.findById(bookId).orElseThrow();
+			String previous = book.getName();
+			book.setName(name);
+			return previous;
+		});
+	}
+
+	private ResponseEntity<Map<String, Object>> query(String query, Map<String, Object> variables) {
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql")
+				.body(Map.of("query", query, "variables", variables));
+		return restTemplate.exchange(request, new ParameterizedTypeReference<>() {
+		});
+	}
+}
@@ -0,0 +1,20 @@
+package com.fradantim.graphql2jpa.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+class SchemaGeneratorTests {
+
+	@Test
+	void generatedSchemaIsUpToDateTest() throws IOException {
+		ClassPathResource generated = new ClassPathResource(GraphQLConfig.GENERATED_SCHEMA);
+		assertThat(generated.exists()).isTrue();
+		assertThat(generated.getContentAsString(StandardCharsets.UTF_8))
+				.isEqualTo(new GraphQLConfig().printSchema());
+	}
+}
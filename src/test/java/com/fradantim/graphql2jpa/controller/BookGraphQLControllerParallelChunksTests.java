@@ -0,0 +1,13 @@
+package com.fradantim.graphql2jpa.controller;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+
+/**
+ * Same queries and expectations as {@link BookGraphQLControllerTests}, id lists loaded in chunks of two on parallel
+ * connections and associations resolved by batch loaders.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = { "graphql2jpa.id-list.chunk-size=2",
+		"graphql2jpa.id-list.parallelism=2", "graphql2jpa.fetch-mode=DATA_LOADER" })
+class BookGraphQLControllerParallelChunksTests extends BookGraphQLControllerTests {
+}
@@ -0,0 +1,13 @@
+package com.fradantim.graphql2jpa.controller;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+
+/**
+ * Same queries and expectations as {@link BookGraphQLControllerTests}, resolved through column projections with
+ * collections loaded by secondary queries.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = { "graphql2jpa.fetch-mode=PROJECTION",
+		"graphql2jpa.collection-strategy=BATCH" })
+class BookGraphQLControllerProjectionBatchCollectionsTests extends BookGraphQLControllerTests {
+}
@@ -0,0 +1,9 @@
+package com.fradantim.graphql2jpa.controller;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+
+/** Same queries and expectations as {@link BookGraphQLControllerTests}, resolved through column projections. */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "graphql2jpa.fetch-mode=PROJECTION")
+class BookGraphQLControllerProjectionTests extends BookGraphQLControllerTests {
+}
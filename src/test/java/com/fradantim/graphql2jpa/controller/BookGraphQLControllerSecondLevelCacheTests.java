@@ -0,0 +1,66 @@
+package com.fradantim.graphql2jpa.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.ehcache.config.CacheRuntimeConfiguration;
+import org.ehcache.config.ResourceType;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.RequestEntity;
+
+import com.fradantim.graphql2jpa.entity.Book;
+
+import io.micrometer.core.instrument.FunctionCounter;
+
+/**
+ * Same queries and expectations as {@link BookGraphQLControllerTests}, reference entities read from the second-level
+ * cache.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {
+		"graphql2jpa.second-level-cache.enabled=true", "graphql2jpa.second-level-cache.country.size=50" })
+class BookGraphQLControllerSecondLevelCacheTests extends BookGraphQLControllerTests {
+
+	@Autowired
+	private CacheManager secondLevelCacheManager;
+
+	@Test
+	void ownCacheManagerTest() {
+		assertThat(secondLevelCacheManager)
+				.isNotSameAs(Caching.getCachingProvider(EhcacheCachingProvider.class.getName()).getCacheManager());
+		CacheRuntimeConfiguration<?, ?> country = (CacheRuntimeConfiguration<?, ?>) secondLevelCacheManager
+				.getCache("country").getConfiguration(Eh107Configuration.class).unwrap(CacheRuntimeConfiguration.class);
+		assertThat(country.getResourcePools().getPoolForResource(ResourceType.Core.HEAP).getSize()).isEqualTo(50);
+	}
+
+	@Test
+	void secondLevelCacheHitTest() {
+		Book warmup = queryBook("cacheWarmup");
+		Book cached = queryBook("cacheHit");
+		assertThat(cached.getAuthor().getName()).isEqualTo(warmup.getAuthor().getName());
+		assertThat(cached.getAuthor().getCountry().getName()).isEqualTo(warmup.getAuthor().getCountry().getName());
+
+		// author and its country are not joined nor queried once cached
+		assertThat(meterRegistry.find("graphql2jpa.field.sql.statements")
+				.tags("operation", "cacheHit", "field", "findBookById").summary().totalAmount()).isEqualTo(1);
+		assertThat(meterRegistry.find("graphql2jpa.cache.hits").tags("region", "person").functionCounter())
+				.isNotNull().extracting(FunctionCounter::count).matches(hits -> hits > 0);
+	}
+
+	private Book queryBook(String operation) {
+		String queryValue = "query " + operation + " { findBookById(id:1) { id author { name country { name } } } }";
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql")
+				.body(Map.of("query", queryValue));
+		return getGraphQLQueryResult(restTemplate.exchange(request, new ParameterizedTypeReference<>() {
+		}), "findBookById", Book.class);
+	}
+}
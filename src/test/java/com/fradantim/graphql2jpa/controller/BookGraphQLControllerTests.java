@@ -20,23 +20,38 @@ import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fradantim.graphql2jpa.cache.DocumentCache;
 import com.fradantim.graphql2jpa.entity.Book;
 import com.fradantim.graphql2jpa.entity.Person;
 import com.fradantim.graphql2jpa.entity.Quote;
 import com.fradantim.graphql2jpa.model.Cover;
+import com.fradantim.graphql2jpa.utils.FetchPlanCache;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
 class BookGraphQLControllerTests {
 
 	@Value("http://localhost:${local.server.port}")
-	private String localUrl;
+	protected String localUrl;
 
 	@Autowired
-	private TestRestTemplate restTemplate;
+	protected TestRestTemplate restTemplate;
 
 	@Autowired
 	private ObjectMapper objectMapper;
 
+	@Autowired
+	private FetchPlanCache fetchPlanCache;
+
+	@Autowired
+	protected MeterRegistry meterRegistry;
+
+	@Autowired
+	private DocumentCache documentCache;
+
 	@Test
 	void queryBookAllFieldsTest() {
 		String queryValue = """
@@ -168,6 +183,266 @@ class BookGraphQLControllerTests {
 		}
 	}
 
+	@Test
+	void queryBooksByIdsTest() {
+		String queryValue = """
+				{
+				  findBookByIds(ids: [1, 2, 3, 4, 5]) {
+						id name
+						author {id country {id}}
+						quotes {id}
+						reviewers {id country {name}}
+				  }
+				}
+				""";
+
+		Map<String, Object> requestBody = Map.of("query", queryValue);
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql").body(requestBody);
+
+		ResponseEntity<Map<String, Object>> response = restTemplate.exchange(request,
+				new ParameterizedTypeReference<>() {
+				});
+
+		List<Book> books = List.of(getGraphQLQueryResult(response, "findBookByIds", Book[].class));
+		assertThat(books).extracting(Book::getId).containsExactlyInAnyOrder(1, 2, 3, 4, 5);
+
+		Map<Integer, Integer> reviewersPerBook = Map.of(1, 2, 2, 1, 3, 2, 4, 0, 5, 1);
+		for (Book book : books) {
+			assertThat(book).hasAllNullFieldsOrPropertiesExcept("id", "name", "author", "quotes", "reviewers");
+			assertThat(book.getAuthor().getCountry()).hasAllNullFieldsOrPropertiesExcept("id");
+			assertThat(book.getQuotes()).hasSize(3);
+			assertThat(book.getReviewers()).hasSize(reviewersPerBook.get(book.getId()));
+			for (Person reviewer : book.getReviewers()) {
+				assertThat(reviewer).hasAllNullFieldsOrPropertiesExcept("id", "country");
+				assertThat(reviewer.getCountry().getName()).isEqualTo("Argentina");
+			}
+		}
+	}
+
+	@Test
+	void queryBookWithoutIdTest() {
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql")
+				.body(Map.of("query", "{ findBookById { id } }"));
+		ResponseEntity<Map<String, Object>> response = restTemplate.exchange(request,
+				new ParameterizedTypeReference<>() {
+				});
+		assertThat(response.getBody().get("errors").toString()).contains("NOT_FOUND");
+	}
+
+	@Test
+	void queryBooksByIdsOrderTest() {
+		String queryValue = "{ findBookByIds(ids: [3, 1, 3, 99, 2]) { id author { name } } }";
+
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql")
+				.body(Map.of("query", queryValue));
+		ResponseEntity<Map<String, Object>> response = restTemplate.exchange(request,
+				new ParameterizedTypeReference<>() {
+				});
+
+		// requested order, repeated ids repeated, missing ids left out
+		List<Book> books = List.of(getGraphQLQueryResult(response, "findBookByIds", Book[].class));
+		assertThat(books).extracting(Book::getId).containsExactly(3, 1, 3, 2);
+		assertThat(books).extracting(b -> b.getAuthor().getName()).doesNotContainNull();
+	}
+
+	@Test
+	void queryPersonsByIdsTest() {
+		String queryValue = """
+				{
+				  findPersonByIds(ids: [1, 2, 3, 4]) {
+						id
+						country {name}
+				  }
+				}
+				""";
+
+		Map<String, Object> requestBody = Map.of("query", queryValue);
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql").body(requestBody);
+
+		ResponseEntity<Map<String, Object>> response = restTemplate.exchange(request,
+				new ParameterizedTypeReference<>() {
+				});
+
+		List<Person> persons = List.of(getGraphQLQueryResult(response, "findPersonByIds", Person[].class));
+		assertThat(persons).extracting(Person::getId).containsExactlyInAnyOrder(1, 2, 3, 4);
+		Map<Integer, String> countries = Map.of(1, "U.S.", 2, "Argentina", 3, "India", 4, "Argentina");
+		for (Person person : persons) {
+			assertThat(person).hasAllNullFieldsOrPropertiesExcept("id", "country");
+			assertThat(person.getCountry().getName()).isEqualTo(countries.get(person.getId()));
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void collectionAggregatesTest() {
+		String queryValue = """
+				query aggregatesTest {
+				  findBookByIds(ids: [1, 2, 3, 4, 5]) { id quotesCount hasQuotes reviewersCount hasReviewers }
+				}
+				""";
+
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql")
+				.body(Map.of("query", queryValue));
+		ResponseEntity<Map<String, Object>> response = restTemplate.exchange(request,
+				new ParameterizedTypeReference<>() {
+				});
+
+		Map<Integer, Integer> reviewersPerBook = Map.of(1, 2, 2, 1, 3, 2, 4, 0, 5, 1);
+		List<Map<String, Object>> books = List.of(getGraphQLQueryResult(response, "findBookByIds", Map[].class));
+		assertThat(books).hasSize(5);
+		for (Map<String, Object> book : books) {
+			int reviewers = reviewersPerBook.get(Integer.valueOf((String) book.get("id")));
+			assertThat(book).containsEntry("quotesCount", 3).containsEntry("hasQuotes", true)
+					.containsEntry("reviewersCount", reviewers).containsEntry("hasReviewers", reviewers > 0);
+		}
+		// counted, not loaded
+		assertThat(meterRegistry.find("graphql2jpa.operation.entities").tags("operation", "aggregatesTest")
+				.summaries()).extracting(summary -> summary.getId().getTag("entity")).doesNotContain("Quote", "Person");
+		assertThat(meterRegistry.find("graphql2jpa.operation.collections").tags("operation", "aggregatesTest")
+				.summary().totalAmount()).isZero();
+
+		// collections selected as well are counted as loaded
+		request = RequestEntity.post(localUrl + "/graphql")
+				.body(Map.of("query", "{ findBookById(id: 4) { reviewers { id } reviewersCount hasReviewers } }"));
+		response = restTemplate.exchange(request, new ParameterizedTypeReference<>() {
+		});
+		assertThat(getGraphQLQueryResult(response, "findBookById", Map.class)).containsEntry("reviewersCount", 0)
+				.containsEntry("hasReviewers", false);
+	}
+
+	@Test
+	void operationMetricsTest() {
+		String queryValue = "query metricsTest { findBookById(id:1) { id quotes {id} author {name} } }";
+
+		Map<String, Object> requestBody = Map.of("query", queryValue);
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql").body(requestBody);
+		ResponseEntity<Map<String, Object>> response = restTemplate.exchange(request,
+				new ParameterizedTypeReference<>() {
+				});
+		getGraphQLQueryResult(response, "findBookById", Book.class);
+
+		DistributionSummary statements = meterRegistry.find("graphql2jpa.field.sql.statements")
+				.tags("operation", "metricsTest", "field", "findBookById").summary();
+		assertThat(statements).isNotNull();
+		assertThat(statements.totalAmount()).isPositive();
+		assertThat(meterRegistry.find("graphql2jpa.operation.duration").tags("operation", "metricsTest").timer())
+				.isNotNull().extracting(Timer::count).isEqualTo(1L);
+		assertThat(meterRegistry.find("graphql2jpa.field.db").tags("field", "findBookById").timer()).isNotNull();
+	}
+
+	@Test
+	void aliasedFieldMetricsTest() {
+		String queryValue = "query aliasMetricsTest "
+				+ "{ first: findBookById(id:1) { id } second: findBookById(id:2) { id } }";
+
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql")
+				.body(Map.of("query", queryValue));
+		ResponseEntity<Map<String, Object>> response = restTemplate.exchange(request,
+				new ParameterizedTypeReference<>() {
+				});
+		getGraphQLQueryResult(response, "first", Book.class);
+
+		assertThat(meterRegistry.find("graphql2jpa.field.sql.statements").tags("operation", "aliasMetricsTest")
+				.summaries()).isNotEmpty().allSatisfy(summary -> assertThat(summary.getId().getTag("field"))
+						.isEqualTo("findBookById"));
+	}
+
+	@Test
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	void booksConnectionTest() {
+		String queryTemplate = """
+				{
+				  books(first: %d %s) {
+						edges { cursor node { id quotes {id} } }
+						pageInfo { hasNextPage endCursor }
+				  }
+				}
+				""";
+
+		List<Integer> ids = new ArrayList<>();
+		String after = "";
+		boolean hasNextPage = true;
+		while (hasNextPage) {
+			Map<String, Object> requestBody = Map.of("query", queryTemplate.formatted(2, after));
+			RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql").body(requestBody);
+
+			ResponseEntity<Map<String, Object>> response = restTemplate.exchange(request,
+					new ParameterizedTypeReference<>() {
+					});
+			Map connection = getGraphQLQueryResult(response, "books", Map.class);
+
+			List<Map> edges = (List<Map>) connection.get("edges");
+			assertThat(edges).hasSizeBetween(1, 2);
+			for (Map edge : edges) {
+				Book book = objectMapper.convertValue(edge.get("node"), Book.class);
+				assertThat(book.getQuotes()).hasSize(3);
+				ids.add(book.getId());
+			}
+
+			Map pageInfo = (Map) connection.get("pageInfo");
+			hasNextPage = (Boolean) pageInfo.get("hasNextPage");
+			after = "after: \"" + pageInfo.get("endCursor") + "\"";
+		}
+
+		assertThat(ids).containsExactly(1, 2, 3, 4, 5);
+	}
+
+	@Test
+	void booksConnectionPageSizeTest() {
+		Map<String, Object> requestBody = Map.of("query", "{ books(first: 1000) { edges { node { id } } } }");
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql").body(requestBody);
+
+		ResponseEntity<Map<String, Object>> response = restTemplate.exchange(request,
+				new ParameterizedTypeReference<>() {
+				});
+		assertThat(response.getBody()).containsKey("errors");
+	}
+
+	@Test
+	void booksFilterTest() {
+		assertThat(filterBooks("{ name: { eq: \"IT\" } }", 10)).containsExactly(1);
+		assertThat(filterBooks("{ isbn: { anyOf: [\"9783257691955\", \"9789510459959\"] } }", 10))
+				.containsExactly(4, 5);
+		assertThat(filterBooks("{ name: { startsWith: \"The\" } }", 10)).containsExactly(2);
+		// like wildcards are matched literally
+		assertThat(filterBooks("{ name: { startsWith: \"%\" } }", 10)).isEmpty();
+		assertThat(filterBooks("{ author: { country: { name: { eq: \"India\" } } } }", 10)).containsExactly(4, 5);
+		// collections are semi-joins, book 1 has two argentinian reviewers and is returned once
+		assertThat(filterBooks("{ reviewers: { country: { name: { eq: \"Argentina\" } } } }", 10))
+				.containsExactly(1, 2, 3, 5);
+		assertThat(filterBooks("{ reviewers: { country: { name: { eq: \"Argentina\" } } } }", 1)).containsExactly(1);
+		assertThat(filterBooks("{ quotes: { text: { startsWith: \"True\" } } }", 10)).containsExactly(3);
+		assertThat(filterBooks("{ author: { name: { startsWith: \"Stephen\" } }, reviewers: { id: { eq: \"2\" } } }",
+				10)).containsExactly(1, 3);
+	}
+
+	@Test
+	void booksInvalidFilterTest() {
+		Map<String, Object> requestBody = Map.of("query",
+				"{ books(filter: { id: { eq: \"one\" } }) { edges { node { id } } } }");
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql").body(requestBody);
+
+		ResponseEntity<Map<String, Object>> response = restTemplate.exchange(request,
+				new ParameterizedTypeReference<>() {
+				});
+		assertThat(response.getBody()).containsKey("errors");
+		assertThat(response.getBody().get("errors").toString()).contains("BAD_REQUEST");
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private List<Integer> filterBooks(String filter, int first) {
+		String queryValue = "{ books(first: %d, filter: %s) { edges { node { id author { name } reviewers { id } } } } }"
+				.formatted(first, filter);
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql")
+				.body(Map.of("query", queryValue));
+		ResponseEntity<Map<String, Object>> response = restTemplate.exchange(request,
+				new ParameterizedTypeReference<>() {
+				});
+
+		List<Map> edges = (List<Map>) getGraphQLQueryResult(response, "books", Map.class).get("edges");
+		return edges.stream().map(edge -> objectMapper.convertValue(edge.get("node"), Book.class).getId()).toList();
+	}
+
 	@Test
 	void parallelTest() {
 		String queryPrefix = "{ findBookById(id: 1) { ";
@@ -217,6 +492,54 @@ class BookGraphQLControllerTests {
 		});
 	}
 
+	@Test
+	void fetchPlanCacheTest() {
+		String queryValue = "{ findBookById(id: 2) { isbn author {name} reviewers {id} } }";
+		String sameShapeQueryValue = "{ findBookById(id: 3) { isbn reviewers {id} author {name} } }";
+
+		for (String query : List.of(queryValue, sameShapeQueryValue)) {
+			RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql")
+					.body(Map.of("query", query));
+			ResponseEntity<Map<String, Object>> response = restTemplate.exchange(request,
+					new ParameterizedTypeReference<>() {
+					});
+			getGraphQLQueryResult(response, "findBookById", Book.class);
+		}
+
+		long hits = fetchPlanCache.getHitCount();
+		long misses = fetchPlanCache.getMissCount();
+
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql")
+				.body(Map.of("query", queryValue));
+		ResponseEntity<Map<String, Object>> response = restTemplate.exchange(request,
+				new ParameterizedTypeReference<>() {
+				});
+		getGraphQLQueryResult(response, "findBookById", Book.class);
+
+		assertThat(fetchPlanCache.getHitCount()).isGreaterThan(hits);
+		assertThat(fetchPlanCache.getMissCount()).isEqualTo(misses);
+	}
+
+	@Test
+	void documentCacheTest() {
+		String queryValue = "query documentCacheTest($id: ID) { findBookById(id: $id) { name } }";
+		long misses = documentCache.getMissCount();
+		long hits = documentCache.getHitCount();
+
+		for (int id : List.of(1, 2, 3)) {
+			RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql")
+					.body(Map.of("query", queryValue, "variables", Map.of("id", id)));
+			ResponseEntity<Map<String, Object>> response = restTemplate.exchange(request,
+					new ParameterizedTypeReference<>() {
+					});
+			assertThat(getGraphQLQueryResult(response, "findBookById", Book.class).getName()).isNotNull();
+		}
+
+		// parsed and validated once, whatever the variables
+		assertThat(documentCache.getMissCount()).isEqualTo(misses + 1);
+		assertThat(documentCache.getHitCount()).isEqualTo(hits + 2);
+	}
+
 	@Test
 	void enumTest() {
 		String queryValue = """
@@ -281,7 +604,7 @@ class BookGraphQLControllerTests {
 	}
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
-	private <T> T getGraphQLQueryResult(ResponseEntity<Map<String, Object>> response, String query, Class<T> type) {
+	protected <T> T getGraphQLQueryResult(ResponseEntity<Map<String, Object>> response, String query, Class<T> type) {
 		assertThat(response).isNotNull().extracting(ResponseEntity::getStatusCode).isEqualTo(HttpStatus.OK);
 		assertThat(response.getBody()).isNotNull().containsKey("data").extracting(m -> m.get("data"))
 				.isInstanceOf(Map.class);
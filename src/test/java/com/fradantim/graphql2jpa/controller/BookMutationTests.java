@@ -0,0 +1,134 @@
+package com.fradantim.graphql2jpa.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fradantim.graphql2jpa.entity.Book;
+import com.fradantim.graphql2jpa.entity.Person;
+import com.fradantim.graphql2jpa.entity.Quote;
+import com.fradantim.graphql2jpa.repository.BookRepository;
+import com.fradantim.graphql2jpa.repository.QuoteRepository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/** Own database (writes), with small batches. */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "graphql2jpa.mutation.batch-size=4")
+class BookMutationTests {
+
+	@Value("http://localhost:${local.server.port}")
+	private String localUrl;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private QuoteRepository quoteRepository;
+
+	@Test
+	void createBooksTest() {
+		String books = IntStream.range(100, 110)
+				.mapToObj(id -> "{ id: %d, name: \"Book %d\", isbn: \"%d\", authorId: 3, reviewerIds: [2, 4] }"
+						.formatted(id, id, id))
+				.collect(Collectors.joining(", "));
+		String mutation = """
+				mutation importBooks {
+					createBooks(books: [%s]) { id name author { name } reviewers { id name } quotes { id } }
+				}""".formatted(books);
+
+		List<Book> created = List.of(getResult(execute(mutation), "createBooks", Book[].class));
+		assertThat(created).extracting(Book::getId)
+				.containsExactlyElementsOf(IntStream.range(100, 110).boxed().toList());
+		assertThat(created).allSatisfy(book -> {
+			assertThat(book.getName()).isEqualTo("Book " + book.getId());
+			assertThat(book.getAuthor().getName()).isEqualTo("George Orwell");
+			assertThat(book.getReviewers()).extracting(Person::getId).containsExactlyInAnyOrder(2, 4);
+			assertThat(book.getQuotes()).isEmpty();
+		});
+
+		// people loaded at once, 10 books and 20 reviewers flushed every 4 books: one statement per table and flush
+		// (30 unbatched), nothing read back: the author and reviewers returned are the people loaded
+		DistributionSummary statements = meterRegistry.find("graphql2jpa.field.sql.statements")
+				.tags("operation", "importBooks", "field", "createBooks").summary();
+		assertThat(statements.totalAmount()).isEqualTo(1 + 3 * 2);
+
+		Book stored = bookRepository.findById(105).orElseThrow();
+		assertThat(stored.getIsbn()).isEqualTo("105");
+		assertThat(stored.getAuthor().getId()).isEqualTo(3);
+	}
+
+	@Test
+	void addQuotesTest() {
+		String quotes = IntStream.range(100, 103)
+				.mapToObj(id -> "{ id: %d, bookId: 4, text: \"Quote %d\" }".formatted(id, id))
+				.collect(Collectors.joining(", "));
+		List<Quote> added = List.of(getResult(
+				execute("mutation { addQuotes(quotes: [%s]) { id text } }".formatted(quotes)), "addQuotes",
+				Quote[].class));
+		assertThat(added).extracting(Quote::getText).containsExactly("Quote 100", "Quote 101", "Quote 102");
+		assertThat(quoteRepository.findById(101).orElseThrow().getBookId()).isEqualTo(4);
+	}
+
+	@Test
+	void duplicateIdTest() {
+		ResponseEntity<Map<String, Object>> response = execute(
+				"mutation { addQuotes(quotes: [{ id: 200, text: \"new\" }, { id: 1, text: \"taken\" }]) { id } }");
+		assertThat(response.getBody().get("errors").toString()).contains("BAD_REQUEST");
+		// rolled back as a whole
+		assertThat(quoteRepository.findById(200)).isEmpty();
+
+		response = execute("mutation { createBooks(books: [{ name: \"no id\" }]) { id } }");
+		assertThat(response.getBody().get("errors").toString()).contains("BAD_REQUEST");
+	}
+
+	@Test
+	void missingReferenceTest() {
+		ResponseEntity<Map<String, Object>> response = execute(
+				"mutation { createBooks(books: [{ id: 300, name: \"orphan\", authorId: 3, reviewerIds: [98, 2, 99] }]) "
+						+ "{ id } }");
+		assertThat(response.getBody().get("errors").toString()).contains("BAD_REQUEST")
+				.contains("No Person found for ids [98, 99]");
+		assertThat(bookRepository.findById(300)).isEmpty();
+
+		response = execute("mutation { addQuotes(quotes: [{ id: 300, bookId: 99, text: \"orphan\" }]) { id } }");
+		assertThat(response.getBody().get("errors").toString()).contains("No Book found for ids [99]");
+		assertThat(quoteRepository.findById(300)).isEmpty();
+	}
+
+	private ResponseEntity<Map<String, Object>> execute(String document) {
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql")
+				.body(Map.of("query", document));
+		return restTemplate.exchange(request, new ParameterizedTypeReference<>() {
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T getResult(ResponseEntity<Map<String, Object>> response, String field, Class<T> type) {
+		assertThat(response.getBody()).doesNotContainKey("errors");
+		return objectMapper.convertValue(((Map<String, Object>) response.getBody().get("data")).get(field), type);
+	}
+}
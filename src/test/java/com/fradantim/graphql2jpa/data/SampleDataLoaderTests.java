@@ -0,0 +1,84 @@
+package com.fradantim.graphql2jpa.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+class SampleDataLoaderTests {
+
+	/* a database per test */
+	private final JdbcTemplate jdbcTemplate = new JdbcTemplate(
+			new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1"));
+
+	@Test
+	void generatedUpToSizesTest() {
+		SampleDataLoader sampleDataLoader = new SampleDataLoader(jdbcTemplate, 10, 200, 1000, 3, 2, 1.0, 42, 64);
+		sampleDataLoader.load();
+
+		assertThat(count("country")).isEqualTo(10);
+		assertThat(count("person")).isEqualTo(200);
+		assertThat(count("book")).isEqualTo(1000);
+		// seed rows untouched
+		assertThat(jdbcTemplate.queryForObject("select name from book where id = 4", String.class)).isEqualTo("1984");
+		// about 3 quotes and 2 reviewers per generated book
+		assertThat(count("quote")).isBetween(2500, 3500);
+		assertThat(count("book_reviewer")).isBetween(1500, 2500);
+		assertThat(jdbcTemplate.queryForObject(
+				"select count(*) from book b left join person p on p.id = b.author_id where p.id is null",
+				Integer.class)).isZero();
+
+		// restarting over the same data adds nothing nor overwrites edits
+		jdbcTemplate.update("update book set name = 'Nineteen Eighty-Four' where id = 4");
+		sampleDataLoader.load();
+		assertThat(count("book")).isEqualTo(1000);
+		assertThat(jdbcTemplate.queryForObject("select name from book where id = 4", String.class))
+				.isEqualTo("Nineteen Eighty-Four");
+	}
+
+	@Test
+	void zipfSkewTest() {
+		new SampleDataLoader(jdbcTemplate, 0, 1000, 5000, 0, 0, 1.0, 7, 1000).load();
+
+		List<Integer> booksByAuthor = jdbcTemplate.queryForList(
+				"select count(*) c from book group by author_id order by c desc", Integer.class);
+		// the most prolific author writes way more than the median one
+		assertThat(booksByAuthor.get(0)).isGreaterThan(20 * booksByAuthor.get(booksByAuthor.size() / 2));
+	}
+
+	@Test
+	void zipfSamplerTest() {
+		SampleDataLoader.ZipfSampler uniform = new SampleDataLoader.ZipfSampler(4, 0);
+		Random random = new Random(1);
+		int[] counts = new int[5];
+		for (int i = 0; i < 4000; i++)
+			counts[uniform.sample(random)]++;
+		assertThat(counts[0]).isZero();
+		for (int k = 1; k <= 4; k++)
+			assertThat(counts[k]).isBetween(850, 1150);
+	}
+
+	@Test
+	void zipfSamplerDistinctTest() {
+		// all but the first rank next to never drawn
+		SampleDataLoader.ZipfSampler skewed = new SampleDataLoader.ZipfSampler(1000, 10);
+		Random random = new Random(1);
+		assertThat(skewed.sampleDistinct(random, 1000)).doesNotHaveDuplicates().hasSize(1000);
+
+		// later draws follow the weights left: rank 2 is the most likely once rank 1 is drawn
+		int seconds = 0;
+		for (int i = 0; i < 1000; i++)
+			if (skewed.sampleDistinct(random, 2)[1] == 2)
+				seconds++;
+		assertThat(seconds).isGreaterThan(900);
+	}
+
+	private int count(String table) {
+		return jdbcTemplate.queryForObject("select count(*) from " + table, Integer.class);
+	}
+}
@@ -0,0 +1,209 @@
+package com.fradantim.graphql2jpa.incremental;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class IncrementalDeliveryTests {
+
+	@Value("http://localhost:${local.server.port}")
+	private String localUrl;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Test
+	void deferTest() {
+		List<Map<String, Object>> payloads = multipart("""
+				{ findBookById(id: 1) { name author { name } ... @defer(label: "heavy") { quotes { id } reviewers { id } } } }""");
+
+		assertThat(payloads).hasSize(2);
+		assertThat(payloads.get(0)).containsEntry("hasNext", true).containsEntry("data",
+				Map.of("findBookById", Map.of("name", "IT", "author", Map.of("name", "Stephen King"))));
+		// a light initial query, joining the author only
+		assertThat(payloads.get(0).get("extensions"))
+				.extracting("cost.findBookById.joins", "cost.findBookById.collections").containsExactly(1, 0);
+
+		assertThat(payloads.get(1)).containsEntry("hasNext", false);
+		Map<String, Object> incremental = getIncremental(payloads.get(1)).get(0);
+		assertThat(incremental).containsEntry("path", List.of("findBookById")).containsEntry("label", "heavy");
+		@SuppressWarnings("unchecked")
+		Map<String, Object> deferred = (Map<String, Object>) incremental.get("data");
+		assertThat(deferred.keySet()).containsExactly("quotes", "reviewers");
+		assertThat(ids(deferred.get("quotes"))).containsExactlyInAnyOrder("1", "2", "3");
+		assertThat(ids(deferred.get("reviewers"))).containsExactlyInAnyOrder("2", "4");
+	}
+
+	@Test
+	void deferInCollectionsTest() {
+		List<Map<String, Object>> payloads = multipart("""
+				{ findBookByIds(ids: [3, 1, 99]) { name reviewers { id ... @defer { name country { name } } } } }""");
+
+		assertThat(payloads).hasSize(2);
+		List<?> books = (List<?>) ((Map<?, ?>) payloads.get(0).get("data")).get("findBookByIds");
+		assertThat(books).hasSize(2);
+
+		List<Map<String, Object>> incremental = getIncremental(payloads.get(1));
+		// one entry per reviewer of each book, at the position of the initial payload
+		assertThat(incremental).hasSize(4);
+		for (Map<String, Object> entry : incremental) {
+			List<?> path = (List<?>) entry.get("path");
+			Map<?, ?> book = (Map<?, ?>) books.get((Integer) path.get(1));
+			Map<?, ?> reviewer = (Map<?, ?>) ((List<?>) book.get("reviewers")).get((Integer) path.get(3));
+			Map<?, ?> data = (Map<?, ?>) entry.get("data");
+			assertThat(data.get("name")).isEqualTo("2".equals(reviewer.get("id")) ? "Not Fradantim, he does not read"
+					: "Also not Fradantim");
+			assertThat(data.get("country")).isEqualTo(Map.of("name", "Argentina"));
+		}
+	}
+
+	@Test
+	void streamTest() {
+		List<Map<String, Object>> payloads = multipart("""
+				{ findBookById(id: 2) { name quotes @stream(label: "quotes") { id } reviewers @stream(initialCount: 1) { id } } }""");
+
+		assertThat(payloads).hasSize(2);
+		Map<?, ?> book = (Map<?, ?>) ((Map<?, ?>) payloads.get(0).get("data")).get("findBookById");
+		assertThat(book.get("quotes")).isEqualTo(List.of());
+		assertThat(book.get("reviewers")).isEqualTo(List.of(Map.of("id", "4")));
+		assertThat(getIncremental(payloads.get(1))).singleElement().satisfies(incremental -> {
+			assertThat(incremental).containsEntry("path", List.of("findBookById", "quotes", 0))
+					.containsEntry("label", "quotes");
+			assertThat(ids(incremental.get("items"))).containsExactlyInAnyOrder("4", "5", "6");
+		});
+
+		// more items than the initial count
+		payloads = multipart("{ findBookById(id: 1) { reviewers @stream(initialCount: 1) { id } } }");
+		assertThat(payloads).hasSize(2);
+		assertThat(getIncremental(payloads.get(1))).singleElement().satisfies(incremental -> {
+			assertThat(incremental).containsEntry("path", List.of("findBookById", "reviewers", 1));
+			assertThat((List<?>) incremental.get("items")).hasSize(1);
+		});
+	}
+
+	@Test
+	void singlePayloadTest() {
+		assertThat(multipart("{ findBookById(id: 4) { name } }")).singleElement()
+				.satisfies(payload -> assertThat(payload).containsEntry("hasNext", false)
+						.containsEntry("data", Map.of("findBookById", Map.of("name", "1984"))));
+
+		List<Map<String, Object>> notFound = multipart("{ findBookById(id: 99) { name ... @defer { isbn } } }");
+		assertThat(notFound).singleElement().satisfies(payload -> {
+			assertThat(payload).containsEntry("hasNext", false);
+			assertThat(payload.get("errors")).asList().hasSize(1);
+		});
+
+		assertThat(multipart("{ findBookById(id: 1) { title } }")).singleElement()
+				.satisfies(payload -> assertThat(payload.get("errors")).asList().hasSize(1));
+	}
+
+	@Test
+	void serverSentEventsTest() {
+		ResponseEntity<String> response = post(MediaType.TEXT_EVENT_STREAM,
+				"{ findBookById(id: 5) { name ... @defer { isbn } } }");
+
+		assertThat(response.getHeaders().getContentType().isCompatibleWith(MediaType.TEXT_EVENT_STREAM)).isTrue();
+		assertThat(response.getBody()).startsWith("""
+				event: next
+				data: {"data":{"findBookById":{"name":"Animal Farm"}},""").endsWith("""
+				"hasNext":true}
+
+				event: next
+				data: {"incremental":[{"data":{"isbn":"9783257691955"},"path":["findBookById"]}],"hasNext":false}
+
+				event: complete
+				data:
+
+				""");
+	}
+
+	@Test
+	void regularRequestsTest() {
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql")
+				.accept(MediaType.APPLICATION_JSON)
+				.body(Map.of("query", "{ findBookById(id: 5) { name ... @defer { isbn } } }"));
+		ResponseEntity<Map<String, Object>> response = restTemplate.exchange(request,
+				new ParameterizedTypeReference<>() {
+				});
+		// directives ignored, everything in a single response
+		assertThat(response.getBody()).containsEntry("data",
+				Map.of("findBookById", Map.of("name", "Animal Farm", "isbn", "9783257691955")));
+	}
+
+	@Test
+	void preferredJsonTest() {
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql")
+				.header(HttpHeaders.ACCEPT, "application/json, multipart/mixed;deferSpec=20220824;q=0.1")
+				.body(Map.of("query", "{ findBookById(id: 5) { name ... @defer { isbn } } }"));
+		ResponseEntity<String> response = restTemplate.exchange(request, String.class);
+		assertThat(response.getHeaders().getContentType().isCompatibleWith(MediaType.APPLICATION_JSON)).isTrue();
+		assertThat(read(response.getBody())).containsEntry("data",
+				Map.of("findBookById", Map.of("name", "Animal Farm", "isbn", "9783257691955")));
+	}
+
+	@Test
+	void malformedBodyTest() {
+		RequestEntity<String> request = RequestEntity.post(localUrl + "/graphql")
+				.header(HttpHeaders.ACCEPT, "multipart/mixed;deferSpec=20220824")
+				.contentType(MediaType.APPLICATION_JSON).body("{\"query\": ");
+		ResponseEntity<String> response = restTemplate.exchange(request, String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+		assertThat(read(response.getBody())).extracting("errors").asList().singleElement()
+				.extracting("extensions").isEqualTo(Map.of("code", "BAD_REQUEST"));
+	}
+
+	private List<Map<String, Object>> multipart(String query) {
+		ResponseEntity<String> response = post(MediaType.parseMediaType("multipart/mixed;deferSpec=20220824"), query);
+		assertThat(response.getHeaders().getContentType().toString()).startsWith("multipart/mixed");
+		assertThat(response.getBody()).endsWith("\r\n-----\r\n");
+		return Stream.of(response.getBody().split("\r\n---")).filter(part -> part.contains("\r\n\r\n"))
+				.map(part -> read(part.substring(part.indexOf("\r\n\r\n") + 4))).toList();
+	}
+
+	private ResponseEntity<String> post(MediaType accept, String query) {
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql")
+				.header(HttpHeaders.ACCEPT, accept + ", application/json").body(Map.of("query", query));
+		return restTemplate.exchange(request, String.class);
+	}
+
+	private Map<String, Object> read(String json) {
+		try {
+			return objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {
+			});
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Map<String, Object>> getIncremental(Map<String, Object> payload) {
+		return (List<Map<String, Object>>) payload.get("incremental");
+	}
+
+	private static List<Object> ids(Object list) {
+		return ((List<?>) list).stream().map(item -> (Object) ((Map<?, ?>) item).get("id")).toList();
+	}
+}
@@ -0,0 +1,84 @@
+package com.fradantim.graphql2jpa.incremental;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fradantim.graphql2jpa.config.GraphQLConfig;
+import com.fradantim.graphql2jpa.incremental.IncrementalPlanner.Part;
+import com.fradantim.graphql2jpa.incremental.IncrementalPlanner.Plan;
+
+import graphql.parser.Parser;
+import graphql.schema.GraphQLSchema;
+
+class IncrementalPlannerTests {
+
+	private static final GraphQLSchema schema = new GraphQLConfig().generateSchema();
+
+	@Test
+	void deferredFragmentsTest() {
+		Plan plan = plan("""
+				query q($id: ID, $label: String) { findBookById(id: $id) { name author { name }
+				  ... @defer(label: $label) { quotes { text } reviewers { name } } } }""",
+				Map.of("id", 1, "label", "heavy"));
+
+		assertThat(plan.initialQuery()).isEqualTo(
+				"query q($id:ID){findBookById(id:$id){name author{name}_incrementalKey:id}}");
+		assertThat(plan.parts()).containsExactly(new Part(List.of("findBookById"), "heavy",
+				"query q($id:ID){findBookById(id:$id){...{quotes{text}reviewers{name}}_incrementalKey:id}}",
+				null, 0));
+	}
+
+	@Test
+	void nestedAndNamedFragmentsTest() {
+		Plan plan = plan("""
+				{ findBookByIds(ids: [1, 2]) { ...book } }
+				fragment book on Book { name reviewers { ...reviewer @defer } }
+				fragment reviewer on Person { country { name } }""", Map.of());
+
+		assertThat(plan.initialQuery()).isEqualTo(
+				"{findBookByIds(ids:[1,2]){...on Book{name reviewers{_incrementalKey:id}}_incrementalKey:id}}");
+		assertThat(plan.parts()).extracting(Part::path).containsExactly(List.of("findBookByIds", "reviewers"));
+		assertThat(plan.parts().get(0).query()).isEqualTo(
+				"{findBookByIds(ids:[1,2]){reviewers{...on Person{country{name}}_incrementalKey:id}_incrementalKey:id}}");
+	}
+
+	@Test
+	void streamsTest() {
+		Plan plan = plan("""
+				{ findBookById(id: 1) { name quotes @stream { text } reviewers @stream(initialCount: 1) { name } } }""",
+				Map.of());
+
+		assertThat(plan.initialQuery())
+				.isEqualTo("{findBookById(id:1){name reviewers @stream(initialCount:1){name}_incrementalKey:id}}");
+		assertThat(plan.parts()).containsExactly(
+				new Part(List.of("findBookById"), null, "{findBookById(id:1){quotes{text}_incrementalKey:id}}",
+						"quotes", 0),
+				new Part(List.of("findBookById"), null, null, "reviewers", 1));
+	}
+
+	@Test
+	void disabledTest() {
+		String query = "query q($defer: Boolean!) { findBookById(id: 1) { name ... @defer(if: $defer) { isbn } } }";
+		assertThat(plan(query, Map.of("defer", false)).parts()).isEmpty();
+		assertThat(plan(query, Map.of("defer", true)).parts()).hasSize(1);
+		assertThat(IncrementalPlanner.plan(schema, Parser.parse("mutation { addQuotes(quotes: []) { id } }"), null,
+				Map.of())).isNull();
+	}
+
+	@Test
+	void everythingDeferredTest() {
+		Plan plan = plan("{ ... @defer { findBookById(id: 1) { name } } }", Map.of());
+
+		assertThat(plan.initialQuery()).isEqualTo("{_incrementalKey:__typename}");
+		assertThat(plan.parts()).containsExactly(
+				new Part(List.of(), null, "{...{findBookById(id:1){name}}}", null, 0));
+	}
+
+	private static Plan plan(String query, Map<String, Object> variables) {
+		return IncrementalPlanner.plan(schema, Parser.parse(query), null, variables);
+	}
+}
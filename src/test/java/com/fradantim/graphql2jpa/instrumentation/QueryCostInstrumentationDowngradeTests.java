@@ -0,0 +1,46 @@
+package com.fradantim.graphql2jpa.instrumentation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.RequestEntity;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = { "graphql2jpa.cost.max-rows=50",
+		"graphql2jpa.cost.on-exceeded=DOWNGRADE" })
+class QueryCostInstrumentationDowngradeTests {
+
+	@Value("http://localhost:${local.server.port}")
+	private String localUrl;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void overBudgetDowngradedTest() {
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql")
+				.body(Map.of("query", QueryCostInstrumentationTests.FULL_QUERY));
+		Map<String, Object> body = restTemplate.exchange(request, new ParameterizedTypeReference<Map<String, Object>>() {
+		}).getBody();
+		assertThat(body).doesNotContainKey("errors");
+
+		Map<String, Object> book = (Map<String, Object>) ((Map<String, Object>) body.get("data")).get("findBookById");
+		assertThat((List<?>) book.get("quotes")).hasSize(3);
+		assertThat((List<?>) book.get("reviewers")).hasSize(2);
+
+		// root query plus one batched query per collection: 1 + 10 + 10 rows estimated
+		Map<String, Object> cost = (Map<String, Object>) ((Map<String, Object>) ((Map<String, Object>) body
+				.get("extensions")).get("cost")).get("findBookById");
+		assertThat(cost).containsEntry("collectionStrategy", "BATCH").containsEntry("queries", 3)
+				.containsEntry("estimatedRows", 21);
+	}
+}
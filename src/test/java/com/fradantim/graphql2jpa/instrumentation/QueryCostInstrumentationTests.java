@@ -0,0 +1,72 @@
+package com.fradantim.graphql2jpa.instrumentation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.RequestEntity;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = { "graphql2jpa.cost.max-rows=50",
+		"graphql2jpa.cost.on-exceeded=REJECT" })
+class QueryCostInstrumentationTests {
+
+	static final String FULL_QUERY = """
+			{
+				findBookById(id:1) {
+					id name isbn
+					author { id name country {id name} }
+					quotes {id text}
+					reviewers { id name country {id name} }
+				}
+			}
+			""";
+
+	@Value("http://localhost:${local.server.port}")
+	private String localUrl;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void costExtensionTest() {
+		Map<String, Object> body = execute("{ findBookById(id:1) { id quotes {id} author {name} } }");
+		assertThat(body).doesNotContainKey("errors");
+
+		Map<String, Object> cost = (Map<String, Object>) ((Map<String, Object>) ((Map<String, Object>) body
+				.get("extensions")).get("cost")).get("findBookById");
+		assertThat(cost).containsEntry("collectionStrategy", "JOIN").containsEntry("joins", 2)
+				.containsEntry("collections", 1).containsEntry("collectionDepth", 1)
+				.containsEntry("estimatedRows", 10);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void overBudgetRejectedTest() {
+		// quotes x reviewers joined in a single query: 10 * 10 rows estimated
+		Map<String, Object> body = execute(FULL_QUERY);
+		assertThat(body.get("data")).isNull();
+
+		List<Map<String, Object>> errors = (List<Map<String, Object>>) body.get("errors");
+		assertThat(errors).hasSize(1);
+		assertThat(errors.get(0).get("path")).isEqualTo(List.of("findBookById"));
+		Map<String, Object> extensions = (Map<String, Object>) errors.get(0).get("extensions");
+		assertThat(extensions).containsEntry("classification", "BAD_REQUEST").containsKeys("cost", "budget");
+		assertThat((Map<String, Object>) extensions.get("cost")).containsEntry("estimatedRows", 100);
+	}
+
+	Map<String, Object> execute(String query) {
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql")
+				.body(Map.of("query", query));
+		return restTemplate.exchange(request, new ParameterizedTypeReference<Map<String, Object>>() {
+		}).getBody();
+	}
+}
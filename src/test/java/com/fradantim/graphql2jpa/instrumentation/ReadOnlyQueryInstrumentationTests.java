@@ -0,0 +1,93 @@
+package com.fradantim.graphql2jpa.instrumentation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.graphql.ExecutionGraphQlResponse;
+import org.springframework.graphql.ExecutionGraphQlService;
+import org.springframework.graphql.support.DefaultExecutionGraphQlRequest;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.schema.DataFetcher;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/** Executes as the http requests do, in the entity manager bound to the thread. */
+@SpringBootTest
+class ReadOnlyQueryInstrumentationTests {
+
+	/** Whether the root entities were read-only, as seen from the data fetchers. */
+	static final List<Boolean> readOnlyRoots = new ArrayList<>();
+
+	@TestConfiguration
+	static class ReadOnlyProbe {
+
+		@Bean
+		SimplePerformantInstrumentation readOnlyProbe(EntityManagerFactory entityManagerFactory) {
+			return new SimplePerformantInstrumentation() {
+				@Override
+				public DataFetcher<?> instrumentDataFetcher(DataFetcher<?> dataFetcher,
+						InstrumentationFieldFetchParameters parameters, InstrumentationState state) {
+					if (parameters.getExecutionStepInfo().getPath().getLevel() != 1)
+						return dataFetcher;
+					return env -> {
+						Object result = dataFetcher.get(env);
+						Session session = ((EntityManagerHolder) TransactionSynchronizationManager
+								.getResource(entityManagerFactory)).getEntityManager().unwrap(Session.class);
+						if (result instanceof Collection<?> entities)
+							entities.forEach(entity -> readOnlyRoots.add(session.isReadOnly(entity)));
+						return result;
+					};
+				}
+			};
+		}
+	}
+
+	@Autowired
+	private ExecutionGraphQlService executionGraphQlService;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private EntityManager entityManager;
+
+	@BeforeEach
+	void bindEntityManager() {
+		readOnlyRoots.clear();
+		entityManager = entityManagerFactory.createEntityManager();
+		TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+	}
+
+	@AfterEach
+	void unbindEntityManager() {
+		TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+		entityManager.close();
+	}
+
+	@Test
+	void readOnlySessionTest() {
+		ExecutionGraphQlResponse response = executionGraphQlService.execute(new DefaultExecutionGraphQlRequest(
+				"{ findBookByIds(ids: [1, 2, 3]) { name author { name } } }", null, null, null, "1", null)).block();
+		assertThat(response.getErrors()).isEmpty();
+
+		assertThat(readOnlyRoots).hasSize(3).containsOnly(true);
+		Session session = entityManager.unwrap(Session.class);
+		assertThat(session.getStatistics().getEntityCount()).isZero();
+		assertThat(session.isDefaultReadOnly()).isFalse();
+	}
+}
@@ -0,0 +1,72 @@
+package com.fradantim.graphql2jpa.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import graphql.GraphQL;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class OperationMetricsInstrumentationTests {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final GraphQL graphQL = GraphQL.newGraphQL(schema())
+			.instrumentation(new OperationMetricsInstrumentation(meterRegistry, 2)).build();
+
+	private static GraphQLSchema schema() {
+		return new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse("type Query { hello: String }"),
+				RuntimeWiring.newRuntimeWiring()
+						.type("Query", type -> type.dataFetcher("hello", env -> "world")).build());
+	}
+
+	@Test
+	void operationNamesBoundedTest() {
+		for (String operation : new String[] { "first", "second", "third", "fourth", "first" })
+			assertThat(graphQL.execute("query " + operation + " { hello }").getErrors()).isEmpty();
+
+		assertThat(meterRegistry.find("graphql2jpa.operation.duration").timers())
+				.extracting(timer -> timer.getId().getTag("operation"))
+				.containsExactlyInAnyOrder("first", "second", OperationMetricsInstrumentation.OTHER_OPERATION);
+		assertThat(meterRegistry.find("graphql2jpa.operation.duration")
+				.tags("operation", OperationMetricsInstrumentation.OTHER_OPERATION).timer().count()).isEqualTo(2);
+		assertThat(meterRegistry.find("graphql2jpa.operation.duration").tags("operation", "first").timer().count())
+				.isEqualTo(2);
+	}
+
+	@Test
+	void propagatedToOtherThreadsTest() {
+		GraphQL graphQL = GraphQL.newGraphQL(new SchemaGenerator().makeExecutableSchema(
+				new SchemaParser().parse("type Query { hello: String }"),
+				RuntimeWiring.newRuntimeWiring().type("Query", type -> type.dataFetcher("hello", env -> {
+					OperationStatistics.recordStatement();
+					return CompletableFuture.supplyAsync(OperationStatistics.propagate(() -> {
+						OperationStatistics.recordStatement();
+						return "world";
+					})).join();
+				})).build())).instrumentation(new OperationMetricsInstrumentation(meterRegistry, 2)).build();
+
+		assertThat(graphQL.execute("query propagated { hello }").getErrors()).isEmpty();
+		assertThat(OperationStatistics.current()).isNull();
+		assertThat(meterRegistry.find("graphql2jpa.operation.sql.statements").tags("operation", "propagated")
+				.summary().totalAmount()).isEqualTo(2);
+		assertThat(meterRegistry.find("graphql2jpa.field.sql.statements").tags("field", "hello").summary()
+				.totalAmount()).isEqualTo(2);
+	}
+
+	@Test
+	void aliasesNotTaggedTest() {
+		graphQL.execute("query aliased { a: hello b: hello }");
+		graphQL.execute("query aliased { c: hello }");
+
+		assertThat(meterRegistry.find("graphql2jpa.field.query.results").meters()).extracting(Meter::getId)
+				.extracting(id -> id.getTag("field")).containsOnly("hello");
+	}
+}
@@ -0,0 +1,118 @@
+package com.fradantim.graphql2jpa.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTests {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final AtomicInteger loads = new AtomicInteger();
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final List<Thread> waiting = new CopyOnWriteArrayList<>();
+
+	@AfterEach
+	void shutdown() {
+		release.countDown();
+		executor.shutdownNow();
+	}
+
+	/* blocked until released */
+	private Supplier<String> loader(String value) {
+		return () -> {
+			loads.incrementAndGet();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return value;
+		};
+	}
+
+	private CompletableFuture<String> execute(SingleFlight singleFlight, Object key, Supplier<String> loader) {
+		return CompletableFuture.supplyAsync(() -> {
+			waiting.add(Thread.currentThread());
+			return singleFlight.execute(key, loader);
+		}, executor);
+	}
+
+	/* callers blocked, in the loader or waiting for it */
+	private void awaitBlocked(int callers) {
+		await().atMost(5, TimeUnit.SECONDS).until(() -> waiting.size() == callers && waiting.stream()
+				.allMatch(t -> t.getState() == Thread.State.WAITING || t.getState() == Thread.State.TIMED_WAITING));
+	}
+
+	@Test
+	void coalescedTest() {
+		SingleFlight singleFlight = new SingleFlight(Duration.ofSeconds(10));
+		List<CompletableFuture<String>> callers = IntStream.range(0, 5)
+				.mapToObj(i -> execute(singleFlight, "book 1", loader("loaded " + i))).toList();
+		CompletableFuture<String> other = execute(singleFlight, "book 2", loader("other"));
+		awaitBlocked(6);
+		assertThat(singleFlight.getInFlightCount()).isEqualTo(2);
+
+		release.countDown();
+		String leaderValue = callers.get(0).join();
+		assertThat(callers).allSatisfy(caller -> assertThat(caller.join()).isEqualTo(leaderValue));
+		assertThat(other.join()).isEqualTo("other");
+		assertThat(loads).hasValue(2);
+		assertThat(singleFlight.getLoadCount()).isEqualTo(2);
+		assertThat(singleFlight.getCoalescedCount()).isEqualTo(4);
+		assertThat(singleFlight.getInFlightCount()).isZero();
+
+		// nothing kept once loaded
+		assertThat(singleFlight.execute("book 1", () -> "reloaded")).isEqualTo("reloaded");
+		assertThat(singleFlight.getLoadCount()).isEqualTo(3);
+	}
+
+	@Test
+	void timeoutTest() {
+		SingleFlight singleFlight = new SingleFlight(Duration.ofMillis(50));
+		CompletableFuture<String> leader = execute(singleFlight, "book 1", loader("slow"));
+		awaitBlocked(1);
+
+		assertThat(singleFlight.execute("book 1", () -> "own")).isEqualTo("own");
+		assertThat(singleFlight.getTimeoutCount()).isEqualTo(1);
+		assertThat(singleFlight.getCoalescedCount()).isZero();
+
+		release.countDown();
+		assertThat(leader.join()).isEqualTo("slow");
+		assertThat(singleFlight.getLoadCount()).isEqualTo(2);
+	}
+
+	@Test
+	void failureSharedTest() {
+		SingleFlight singleFlight = new SingleFlight(Duration.ofSeconds(10));
+		Supplier<String> failing = () -> {
+			loader("never").get();
+			throw new IllegalStateException("database down");
+		};
+		CompletableFuture<String> leader = execute(singleFlight, "book 1", failing);
+		CompletableFuture<String> follower = execute(singleFlight, "book 1", failing);
+		awaitBlocked(2);
+
+		release.countDown();
+		assertThatThrownBy(leader::join).hasCauseInstanceOf(IllegalStateException.class)
+				.hasRootCauseMessage("database down");
+		assertThatThrownBy(follower::join).hasCauseInstanceOf(IllegalStateException.class)
+				.hasRootCauseMessage("database down");
+		assertThat(loads).hasValue(1);
+		assertThat(singleFlight.getInFlightCount()).isZero();
+	}
+}
@@ -0,0 +1,190 @@
+package com.fradantim.graphql2jpa.sqljson;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.graphql.ExecutionGraphQlResponse;
+import org.springframework.graphql.ExecutionGraphQlService;
+import org.springframework.graphql.support.DefaultExecutionGraphQlRequest;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.fradantim.graphql2jpa.cache.ResponseCache;
+import com.fradantim.graphql2jpa.cache.ResponseCacheInterceptor;
+import com.fradantim.graphql2jpa.entity.Book;
+import com.fradantim.graphql2jpa.entity.Person;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Compares the data built by the database with the one of the regular resolvers, executed without the web
+ * interceptors. Collections are sets on the entities, so their order is not compared.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = { "graphql2jpa.sql-json.enabled=true",
+		"graphql2jpa.sql-json.max-ids=5", "graphql2jpa.cost.max-rows=200", "graphql2jpa.response-cache.enabled=true" })
+class SqlJsonInterceptorTests {
+
+	@Value("http://localhost:${local.server.port}")
+	private String localUrl;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private ExecutionGraphQlService executionGraphQlService;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private ResponseCache responseCache;
+
+	@Test
+	void byIdTest() {
+		assertSameData("""
+				{ findBookById(id: 1) { id name isbn author { id name country { id name } }
+				  quotes { id bookId text } reviewers { id name country { name } } } }""", Map.of());
+	}
+
+	@Test
+	void byIdsTest() {
+		assertSameData("{ findBookByIds(ids: [3, 1, 3, 99, 2]) { id name author { name } reviewers { name } } }",
+				Map.of());
+		assertSameData("{ findPersonByIds(ids: []) { id } }", Map.of());
+	}
+
+	@Test
+	void collectionAggregatesTest() {
+		assertSameData("""
+				{ findBookByIds(ids: [1, 4, 5]) { id quotesCount hasQuotes reviewersCount hasReviewers }
+				  findBookById(id: 4) { quotes { id } count: quotesCount hasReviewers } }""", Map.of());
+	}
+
+	@Test
+	void aliasesFragmentsAndVariablesTest() {
+		assertSameData("""
+				query q($ids: [ID], $book: ID, $withCountry: Boolean!) {
+				  people: findPersonByIds(ids: $ids) { ...person country @include(if: $withCountry) { name } }
+				  book: findBookById(id: $book) { __typename title: name author { ...person } reviewers { id } }
+				}
+				fragment person on Person { key: id name }""",
+				Map.of("ids", List.of(4, 2, 1), "book", "4", "withCountry", true));
+		assertSameData("""
+				query q($ids: [ID], $withCountry: Boolean!) {
+				  findPersonByIds(ids: $ids) { name country @include(if: $withCountry) { name } }
+				}""", Map.of("ids", List.of(3), "withCountry", false));
+	}
+
+	@Test
+	void fallbackTest() {
+		ResponseEntity<Map<String, Object>> notFound = query("{ findBookById(id: 99) { id } }", Map.of());
+		assertThat(notFound.getHeaders().containsKey(SqlJsonInterceptor.ENGINE_HEADER)).isFalse();
+		assertThat(notFound.getBody().get("errors")).asList().hasSize(1);
+
+		ResponseEntity<Map<String, Object>> connection = query("{ books(first: 2) { edges { node { name } } } }",
+				Map.of());
+		assertThat(connection.getHeaders().containsKey(SqlJsonInterceptor.ENGINE_HEADER)).isFalse();
+		assertThat(connection.getBody().get("data")).isNotNull();
+
+		ResponseEntity<Map<String, Object>> invalid = query("{ findBookById(id: 1) { title } }", Map.of());
+		assertThat(invalid.getHeaders().containsKey(SqlJsonInterceptor.ENGINE_HEADER)).isFalse();
+		assertThat(invalid.getBody().get("errors")).asList().hasSize(1);
+	}
+
+	@Test
+	void budgetAndIdsLimitFallbackTest() {
+		// 3 books x 10 quotes x 10 reviewers estimated, downgraded to batched collections by the regular execution
+		ResponseEntity<Map<String, Object>> overBudget = query(
+				"{ findBookByIds(ids: [1, 2, 3]) { id quotes { id } reviewers { id } } }", Map.of());
+		assertThat(overBudget.getHeaders().containsKey(SqlJsonInterceptor.ENGINE_HEADER)).isFalse();
+		assertThat(overBudget.getBody()).doesNotContainKey("errors");
+
+		ResponseEntity<Map<String, Object>> tooManyIds = query("{ findBookByIds(ids: [1, 2, 3, 4, 5, 1]) { id } }",
+				Map.of());
+		assertThat(tooManyIds.getHeaders().containsKey(SqlJsonInterceptor.ENGINE_HEADER)).isFalse();
+		assertThat(tooManyIds.getBody()).doesNotContainKey("errors");
+	}
+
+	@Test
+	void responseCacheTaggedTest() {
+		String document = "{ findBookById(id: 2) { id author { name } } }";
+		assertThat(query(document, Map.of()).getHeaders().getFirst(ResponseCacheInterceptor.CACHE_HEADER))
+				.isEqualTo("MISS");
+		assertThat(query(document, Map.of()).getHeaders().getFirst(ResponseCacheInterceptor.CACHE_HEADER))
+				.isEqualTo("HIT");
+
+		// any person may be the author
+		assertThat(responseCache.invalidate(Person.class, 99)).isPositive();
+		ResponseEntity<Map<String, Object>> refilled = query(document, Map.of());
+		assertThat(refilled.getHeaders().getFirst(ResponseCacheInterceptor.CACHE_HEADER)).isEqualTo("MISS");
+		assertThat(refilled.getHeaders().getFirst(SqlJsonInterceptor.ENGINE_HEADER)).isEqualTo("sql-json");
+
+		assertThat(responseCache.invalidate(Book.class, 2)).isPositive();
+		assertThat(query(document, Map.of()).getHeaders().getFirst(ResponseCacheInterceptor.CACHE_HEADER))
+				.isEqualTo("MISS");
+	}
+
+	private void assertSameData(String document, Map<String, Object> variables) {
+		ResponseEntity<Map<String, Object>> response = query(document, variables);
+		assertThat(response.getHeaders().getFirst(SqlJsonInterceptor.ENGINE_HEADER)).isEqualTo("sql-json");
+		assertThat(response.getBody()).doesNotContainKey("errors");
+
+		assertThat(normalizeData(response.getBody().get("data")))
+				.isEqualTo(normalizeData(execute(document, variables)));
+	}
+
+	private Object execute(String document, Map<String, Object> variables) {
+		EntityManager entityManager = entityManagerFactory.createEntityManager();
+		TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+		try {
+			ExecutionGraphQlResponse response = executionGraphQlService
+					.execute(new DefaultExecutionGraphQlRequest(document, null, variables, null, "1", null)).block();
+			assertThat(response.getErrors()).isEmpty();
+			return response.getData();
+		} finally {
+			TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+			entityManager.close();
+		}
+	}
+
+	/* root lists keep their order, nested ones are sorted */
+	private static Map<Object, Object> normalizeData(Object data) {
+		Map<Object, Object> normalized = new LinkedHashMap<>();
+		((Map<?, ?>) data).forEach((k, v) -> normalized.put(k, normalize(v, false)));
+		return normalized;
+	}
+
+	private static Object normalize(Object value, boolean sortLists) {
+		if (value instanceof Map<?, ?> map) {
+			Map<Object, Object> normalized = new LinkedHashMap<>();
+			map.forEach((k, v) -> normalized.put(k, normalize(v, true)));
+			return normalized;
+		}
+		if (value instanceof List<?> list) {
+			List<Object> normalized = list.stream().map(v -> normalize(v, true)).toList();
+			return sortLists ? normalized.stream().sorted(Comparator.comparing(String::valueOf)).toList() : normalized;
+		}
+		return value;
+	}
+
+	private ResponseEntity<Map<String, Object>> query(String query, Map<String, Object> variables) {
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql")
+				.body(Map.of("query", query, "variables", variables));
+		return restTemplate.exchange(request, new ParameterizedTypeReference<>() {
+		});
+	}
+}
@@ -0,0 +1,135 @@
+package com.fradantim.graphql2jpa.subscription;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/** Own database (writes), subscriptions over the graphql-transport-ws protocol. */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "graphql2jpa.subscription.buffer-size=16")
+class BookSubscriptionTests {
+
+	@Value("http://localhost:${local.server.port}")
+	private String localUrl;
+
+	@Value("ws://localhost:${local.server.port}/graphql")
+	private String webSocketUrl;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private SubscriptionFanOut fanOut;
+
+	@Test
+	void fanOutTest() throws Exception {
+		List<Subscriber> bookSubscribers = new ArrayList<>();
+		for (int i = 0; i < 3; i++)
+			bookSubscribers.add(subscribe("subscription { bookChanged(id: 2) { name quotes { text } } }"));
+		// same shape, aliases aside
+		bookSubscribers.add(subscribe("subscription { book: bookChanged(id: 2) { title: name quotes { text } } }"));
+		Subscriber quoteSubscriber = subscribe("subscription { quoteAdded(bookId: 2) { id bookId text } }");
+		Subscriber otherSubscriber = subscribe("subscription { quoteAdded(bookId: 3) { id } }");
+		await().atMost(Duration.ofSeconds(10)).until(() -> fanOut.getSubscriberCount() == 6);
+		assertThat(fanOut.getTopicCount()).isEqualTo(3);
+
+		long loads = fanOut.getLoadCount();
+		mutate("mutation { addQuotes(quotes: [{ id: 200, bookId: 2, text: \"Heeere's Johnny!\" }]) { id } }");
+
+		for (Subscriber subscriber : bookSubscribers) {
+			@SuppressWarnings("unchecked")
+			Map<String, Object> book = (Map<String, Object>) subscriber.next().values().iterator().next();
+			assertThat(book).containsValue("The Shinning");
+			assertThat(book.get("quotes")).asList().hasSize(4).contains(Map.of("text", "Heeere's Johnny!"));
+		}
+		assertThat(quoteSubscriber.next()).isEqualTo(
+				Map.of("quoteAdded", Map.of("id", "200", "bookId", "2", "text", "Heeere's Johnny!")));
+		// one query per topic, whatever the number of subscribers
+		assertThat(fanOut.getLoadCount() - loads).isEqualTo(2);
+		assertThat(otherSubscriber.messages.poll(200, TimeUnit.MILLISECONDS)).isNull();
+
+		for (Subscriber subscriber : bookSubscribers)
+			subscriber.session.close();
+		quoteSubscriber.session.close();
+		otherSubscriber.session.close();
+		await().atMost(Duration.ofSeconds(10)).until(() -> fanOut.getSubscriberCount() == 0);
+		assertThat(fanOut.getTopicCount()).isZero();
+	}
+
+	private void mutate(String mutation) {
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(localUrl + "/graphql")
+				.body(Map.of("query", mutation));
+		ResponseEntity<Map<String, Object>> response = restTemplate.exchange(request,
+				new ParameterizedTypeReference<>() {
+				});
+		assertThat(response.getBody()).doesNotContainKey("errors");
+	}
+
+	private Subscriber subscribe(String query) throws Exception {
+		Subscriber subscriber = new Subscriber();
+		WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+		headers.setSecWebSocketProtocol("graphql-transport-ws");
+		subscriber.session = new StandardWebSocketClient().execute(subscriber, headers, URI.create(webSocketUrl))
+				.get(10, TimeUnit.SECONDS);
+		subscriber.send(Map.of("type", "connection_init"));
+		assertThat(subscriber.messages.poll(10, TimeUnit.SECONDS)).containsEntry("type", "connection_ack");
+		subscriber.send(Map.of("id", "1", "type", "subscribe", "payload", Map.of("query", query)));
+		return subscriber;
+	}
+
+	private class Subscriber extends TextWebSocketHandler {
+
+		private final BlockingQueue<Map<String, Object>> messages = new LinkedBlockingQueue<>();
+		private WebSocketSession session;
+
+		private void send(Map<String, Object> message) throws Exception {
+			session.sendMessage(new TextMessage(objectMapper.writeValueAsString(message)));
+		}
+
+		/** Data of the next {@code next} message. */
+		private Map<?, ?> next() throws InterruptedException {
+			Map<String, Object> message = messages.poll(10, TimeUnit.SECONDS);
+			assertThat(message).containsEntry("type", "next");
+			return (Map<?, ?>) ((Map<?, ?>) message.get("payload")).get("data");
+		}
+
+		@Override
+		protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+			messages.add(objectMapper.readValue(message.getPayload(), new TypeReference<Map<String, Object>>() {
+			}));
+		}
+
+		@Override
+		public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package com.fradantim.graphql2jpa.subscription;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+
+import com.fradantim.graphql2jpa.config.GraphQLConfig;
+
+import graphql.Scalars;
+import graphql.schema.DataFetchingFieldSelectionSet;
+import graphql.schema.DataFetchingFieldSelectionSetImpl;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.scheduler.Schedulers;
+
+class SubscriptionFanOutTests {
+
+	private static final DataFetchingFieldSelectionSet selection = DataFetchingFieldSelectionSetImpl
+			.newCollector(new GraphQLConfig().generateSchema(), Scalars.GraphQLID, () -> null);
+
+	/* loads on the publishing thread */
+	private final SubscriptionFanOut fanOut = new SubscriptionFanOut(2, Schedulers.immediate());
+	private final AtomicInteger queries = new AtomicInteger();
+	private final Function<List<Integer>, List<String>> loader = ids -> {
+		queries.incrementAndGet();
+		return ids.stream().map(id -> "value " + id).toList();
+	};
+
+	@Test
+	void sharedLoadTest() {
+		List<String> first = new ArrayList<>();
+		List<String> second = new ArrayList<>();
+		List<String> other = new ArrayList<>();
+		Disposable firstSubscription = fanOut.subscribe("changed", 1, selection, loader).subscribe(first::add);
+		Disposable secondSubscription = fanOut.subscribe("changed", 1, selection, loader).subscribe(second::add);
+		Disposable otherSubscription = fanOut.subscribe("changed", 2, selection, loader).subscribe(other::add);
+		assertThat(fanOut.getTopicCount()).isEqualTo(2);
+		assertThat(fanOut.getSubscriberCount()).isEqualTo(3);
+
+		fanOut.publish("changed", 1, 10);
+		assertThat(queries).hasValue(1);
+		assertThat(fanOut.getLoadCount()).isEqualTo(1);
+		assertThat(first).containsExactly("value 10");
+		assertThat(second).containsExactly("value 10");
+		assertThat(other).isEmpty();
+
+		firstSubscription.dispose();
+		secondSubscription.dispose();
+		assertThat(fanOut.getTopicCount()).isEqualTo(1);
+		// nobody listening
+		fanOut.publish("changed", 1, 11);
+		assertThat(queries).hasValue(1);
+		otherSubscription.dispose();
+		assertThat(fanOut.getSubscriberCount()).isZero();
+	}
+
+	@Test
+	void slowConsumerTest() {
+		List<String> fast = new ArrayList<>();
+		fanOut.subscribe("changed", 1, selection, loader).subscribe(fast::add);
+		List<String> slow = new ArrayList<>();
+		BaseSubscriber<String> slowSubscriber = new BaseSubscriber<>() {
+			@Override
+			protected void hookOnSubscribe(Subscription subscription) {
+				request(1);
+			}
+
+			@Override
+			protected void hookOnNext(String value) {
+				slow.add(value);
+			}
+		};
+		fanOut.subscribe("changed", 1, selection, loader).subscribe(slowSubscriber);
+
+		for (int id = 1; id <= 5; id++)
+			fanOut.publish("changed", 1, id);
+		assertThat(fast).hasSize(5);
+		assertThat(slow).containsExactly("value 1");
+
+		// the two latest values are kept
+		slowSubscriber.request(10);
+		assertThat(slow).containsExactly("value 1", "value 4", "value 5");
+		assertThat(fanOut.getDroppedCount()).isEqualTo(2);
+		slowSubscriber.dispose();
+	}
+}